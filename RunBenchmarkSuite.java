@@ -13,27 +13,179 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-import java.lang.System;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Script to run the benchmark on multiple git versions of the project.
  * With Java < 10, do {@code javac RunBenchmarkSuite.java && java RunBenchmarkSuite commit1 commit2 ...}.
  * With Java >= 10 do {@code java RunBenchmarkSuite.java commit1 commit2 ...}, e.g. {@code java RunBenchmarkSuite.java master henri}.
+ * <p>
+ * The JMH results of each commit are saved as JSON in the output directory ({@code benchmark-results} by default).
+ * The first commit is the baseline. Each other commit is compared to it and the script exits with 2 when a benchmark
+ * got worse than the baseline by more than the threshold (10% by default) with confidence intervals that don't
+ * overlap. Options:
+ * <ul>
+ *     <li>{@code --threshold=5}: regression threshold in percent</li>
+ *     <li>{@code --output=dir}: directory where the JSON results are written</li>
+ *     <li>{@code --jmh="-f 1 PhaseBenchmark"}: arguments passed to JMH</li>
+ * </ul>
+ * The branch (or commit) checked out at the start is restored at the end.
  */
 public class RunBenchmarkSuite {
+
+    private static final int REGRESSION_EXIT_CODE = 2;
+
     public static void main(String[] args) throws Exception {
-        if (args.length == 0) {
-            System.out.println("Usage: RunBenchmarkSuite.java commit1 commit2 ...");
+        double threshold = 10.0;
+        Path output = Paths.get("benchmark-results");
+        List<String> jmhArgs = new ArrayList<>();
+        List<String> commits = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--threshold=")) {
+                threshold = Double.parseDouble(arg.substring("--threshold=".length()));
+            } else if (arg.startsWith("--output=")) {
+                output = Paths.get(arg.substring("--output=".length()));
+            } else if (arg.startsWith("--jmh=")) {
+                jmhArgs.addAll(Arrays.asList(arg.substring("--jmh=".length()).trim().split("\\s+")));
+            } else {
+                commits.add(arg);
+            }
+        }
+        if (commits.isEmpty()) {
+            System.out.println("Usage: RunBenchmarkSuite.java [--threshold=10] [--output=dir] [--jmh=\"jmh args\"] commit1 commit2 ...");
             System.exit(1);
         }
-        for (String commit : args) {
-            System.out.println("################# " + commit + " #################");
-            command("git", "checkout", commit);
-            command("mvn", "clean", "package", "-DskipTests");
-            command("java", "-jar", "benchmark/target/benchmarks.jar");
+
+        Files.createDirectories(output);
+
+        String original = originalRef();
+        // Resolve everything first since a relative reference like HEAD~1 changes meaning after a checkout
+        Map<String, String> hashes = new LinkedHashMap<>();
+        for (String commit : commits) {
+            hashes.put(commit, commandOutput("git", "rev-parse", "--verify", commit + "^{commit}"));
+        }
+
+        Map<String, Path> results = new LinkedHashMap<>();
+        try {
+            for (String commit : commits) {
+                System.out.println("################# " + commit + " #################");
+                Path result = output.resolve(commit.replaceAll("[^A-Za-z0-9._-]", "_") + ".json").toAbsolutePath();
+                command("git", "checkout", hashes.get(commit));
+                command("mvn", "clean", "package", "-DskipTests");
+
+                List<String> run = new ArrayList<>(Arrays.asList("java", "-jar", "benchmark/target/benchmarks.jar", "-rf", "json", "-rff", result.toString()));
+                run.addAll(jmhArgs);
+                command(run.toArray(new String[0]));
+                results.put(commit, result);
+            }
+        } finally {
+            command("git", "checkout", original);
+        }
+
+        if (results.size() < 2) {
+            return;
+        }
+        if (compare(results, threshold)) {
+            System.exit(REGRESSION_EXIT_CODE);
+        }
+    }
+
+    /**
+     * Print a table comparing each commit with the first one.
+     *
+     * @return if a regression was found
+     */
+    private static boolean compare(Map<String, Path> results, double threshold) throws IOException {
+        Map<String, Map<String, Score>> scores = new LinkedHashMap<>();
+        for (Map.Entry<String, Path> result : results.entrySet()) {
+            scores.put(result.getKey(), readScores(result.getValue()));
+        }
+
+        List<String> commits = new ArrayList<>(scores.keySet());
+        String baselineCommit = commits.get(0);
+        Map<String, Score> baseline = scores.get(baselineCommit);
+
+        boolean regression = false;
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-80s %-12s %30s %30s %9s%n", "Benchmark", "Commit", "Score", "Confidence (99.9%)", "Change");
+        for (Map.Entry<String, Score> entry : baseline.entrySet()) {
+            String benchmark = entry.getKey();
+            Score base = entry.getValue();
+            System.out.printf(Locale.ROOT, "%-80s %-12s %30s %30s %9s%n", benchmark, abbreviate(baselineCommit), base.format(), base.formatConfidence(), "");
+            for (String commit : commits.subList(1, commits.size())) {
+                Score score = scores.get(commit).get(benchmark);
+                if (score == null) {
+                    System.out.printf(Locale.ROOT, "%-80s %-12s %30s%n", "", abbreviate(commit), "missing");
+                    continue;
+                }
+                boolean regressed = score.worseningPercent(base) > threshold && !score.overlaps(base);
+                regression |= regressed;
+                System.out.printf(Locale.ROOT, "%-80s %-12s %30s %30s %+8.1f%%%s%n", "", abbreviate(commit), score.format(), score.formatConfidence(), score.changePercent(base),
+                    regressed ? "  REGRESSION" : "");
+            }
+        }
+
+        System.out.println();
+        if (regression) {
+            System.out.printf(Locale.ROOT, "Regression of more than %.1f%% compared to %s%n", threshold, baselineCommit);
+        } else {
+            System.out.printf(Locale.ROOT, "No regression of more than %.1f%% compared to %s%n", threshold, baselineCommit);
         }
+        return regression;
+    }
+
+    private static String abbreviate(String commit) {
+        return commit.length() > 12 ? commit.substring(0, 12) : commit;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Score> readScores(Path file) throws IOException {
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        List<Object> runs = (List<Object>) new Json(content).parse();
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (Object o : runs) {
+            Map<String, Object> run = (Map<String, Object>) o;
+            StringBuilder name = new StringBuilder((String) run.get("benchmark"));
+            Map<String, Object> params = (Map<String, Object>) run.get("params");
+            if (params != null) {
+                name.append(params);
+            }
+            String mode = (String) run.get("mode");
+            name.append(" (").append(mode).append(')');
+
+            Map<String, Object> metric = (Map<String, Object>) run.get("primaryMetric");
+            List<Object> confidence = (List<Object>) metric.get("scoreConfidence");
+            scores.put(name.toString(), new Score(
+                mode.equals("thrpt"),
+                number(metric.get("score")),
+                number(confidence.get(0)),
+                number(confidence.get(1)),
+                (String) metric.get("scoreUnit")));
+        }
+        return scores;
+    }
 
-        command("git", "checkout", "master");
+    /** JMH writes NaN and infinity as strings */
+    private static double number(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble((String) value);
+    }
+
+    private static String originalRef() throws Exception {
+        String branch = commandOutput("git", "rev-parse", "--abbrev-ref", "HEAD");
+        // Detached head, come back to the same commit
+        return branch.equals("HEAD") ? commandOutput("git", "rev-parse", "HEAD") : branch;
     }
 
     private static void command(String... args) throws Exception {
@@ -42,6 +194,192 @@ public class RunBenchmarkSuite {
             .redirectOutput(ProcessBuilder.Redirect.INHERIT);
         Process process = builder.start();
 
-        process.waitFor();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException(String.join(" ", args) + " failed with exit code " + exitCode);
+        }
+    }
+
+    private static String commandOutput(String... args) throws Exception {
+        Process process = new ProcessBuilder(args).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line);
+            }
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException(String.join(" ", args) + " failed with exit code " + exitCode);
+        }
+        return output.toString().trim();
+    }
+
+    private static final class Score {
+        private final boolean higherIsBetter;
+        private final double score;
+        private final double low;
+        private final double high;
+        private final String unit;
+
+        Score(boolean higherIsBetter, double score, double low, double high, String unit) {
+            this.higherIsBetter = higherIsBetter;
+            this.score = score;
+            this.low = low;
+            this.high = high;
+            this.unit = unit;
+        }
+
+        double changePercent(Score baseline) {
+            return (score - baseline.score) / baseline.score * 100;
+        }
+
+        /** How much worse than the baseline this score is in percent, negative if it's better */
+        double worseningPercent(Score baseline) {
+            double change = changePercent(baseline);
+            return higherIsBetter ? -change : change;
+        }
+
+        boolean overlaps(Score other) {
+            // A NaN interval (single iteration) can't tell anything, only the threshold is used
+            if (Double.isNaN(low) || Double.isNaN(other.low)) {
+                return false;
+            }
+            return low <= other.high && other.low <= high;
+        }
+
+        String format() {
+            return String.format(Locale.ROOT, "%.3f %s", score, unit);
+        }
+
+        String formatConfidence() {
+            return String.format(Locale.ROOT, "[%.3f, %.3f]", low, high);
+        }
+    }
+
+    /** Minimal JSON parser, enough to read JMH results without any dependency */
+    private static final class Json {
+        private final String text;
+        private int pos;
+
+        Json(String text) {
+            this.text = text;
+        }
+
+        Object parse() {
+            skipWhitespace();
+            char c = text.charAt(pos);
+            switch (c) {
+                case '{':
+                    return parseObject();
+                case '[':
+                    return parseArray();
+                case '"':
+                    return parseString();
+                case 't':
+                    return literal("true", Boolean.TRUE);
+                case 'f':
+                    return literal("false", Boolean.FALSE);
+                case 'n':
+                    return literal("null", null);
+                default:
+                    return parseNumber();
+            }
+        }
+
+        private Map<String, Object> parseObject() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            pos++; // {
+            skipWhitespace();
+            if (text.charAt(pos) == '}') {
+                pos++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = parseString();
+                skipWhitespace();
+                expect(':');
+                object.put(key, parse());
+                skipWhitespace();
+                if (text.charAt(pos++) == '}') {
+                    return object;
+                }
+            }
+        }
+
+        private List<Object> parseArray() {
+            List<Object> array = new ArrayList<>();
+            pos++; // [
+            skipWhitespace();
+            if (text.charAt(pos) == ']') {
+                pos++;
+                return array;
+            }
+            while (true) {
+                array.add(parse());
+                skipWhitespace();
+                if (text.charAt(pos++) == ']') {
+                    return array;
+                }
+            }
+        }
+
+        private String parseString() {
+            expect('"');
+            StringBuilder result = new StringBuilder();
+            while (true) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return result.toString();
+                }
+                if (c != '\\') {
+                    result.append(c);
+                    continue;
+                }
+                char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case 'n': result.append('\n'); break;
+                    case 't': result.append('\t'); break;
+                    case 'r': result.append('\r'); break;
+                    case 'b': result.append('\b'); break;
+                    case 'f': result.append('\f'); break;
+                    case 'u':
+                        result.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: result.append(escaped);
+                }
+            }
+        }
+
+        private Double parseNumber() {
+            int start = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+            return Double.valueOf(text.substring(start, pos));
+        }
+
+        private Object literal(String literal, Object value) {
+            if (!text.startsWith(literal, pos)) {
+                throw new IllegalArgumentException("Unexpected character at " + pos);
+            }
+            pos += literal.length();
+            return value;
+        }
+
+        private void expect(char c) {
+            if (text.charAt(pos++) != c) {
+                throw new IllegalArgumentException("Expected " + c + " at " + (pos - 1));
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Price store receiving the prices one day at a time, from a daily feed for instance. The prices of a day are a row
+ * indexed by {@link Security#getId()}, so a lookup is two array reads.
+ * <p>
+ * Appending a day doesn't block the readers. They see it once {@link #append(long[])} returned.
+ */
+@ThreadSafe
+public final class AppendablePriceStore implements PriceStore {
+
+    private final long firstEpochDay;
+    /** Prices of each day, only the first {@link #days} rows are set */
+    private volatile long[][] rows = new long[16][];
+    /** Written after {@link #rows}, so a reader reading it first sees the rows up to it */
+    private volatile int days;
+
+    /**
+     * @param firstDay day of the first prices to be appended
+     */
+    public AppendablePriceStore(@Nonnull LocalDate firstDay) {
+        this.firstEpochDay = firstDay.toEpochDay();
+    }
+
+    /**
+     * Add the prices of the day following the last one.
+     *
+     * @param prices prices in cents indexed by {@link Security#getId()}, they are not copied. The securities with a
+     *               higher id have no price on this day
+     */
+    public synchronized void append(@Nonnull long[] prices) {
+        long[][] currentRows = rows;
+        if (days == currentRows.length) {
+            currentRows = rows = Arrays.copyOf(currentRows, days * 2);
+        }
+        currentRows[days] = prices;
+        days++;
+    }
+
+    @Override
+    public long getPrice(long epochDay, @Nonnull Security security) {
+        int dayCount = days;
+        long[][] currentRows = rows;
+        long index = epochDay - firstEpochDay;
+        if (index < 0 || index >= dayCount || security.getId() >= currentRows[(int) index].length) {
+            throw new IllegalArgumentException("No price for " + security + " on " + LocalDate.ofEpochDay(epochDay));
+        }
+        return currentRows[(int) index][security.getId()];
+    }
+
+    @Nonnull
+    @Override
+    public LocalDate getFirstDay() {
+        return LocalDate.ofEpochDay(firstEpochDay);
+    }
+
+    /**
+     * @return last day having prices, the day before the first one if nothing was appended yet
+     */
+    @Nonnull
+    @Override
+    public LocalDate getLastDay() {
+        return LocalDate.ofEpochDay(firstEpochDay + days - 1);
+    }
+}
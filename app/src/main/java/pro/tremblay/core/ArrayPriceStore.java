@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.LocalDate;
+
+/**
+ * Price store keeping the prices of a continuous range of days in one array per security. The price of a day is at
+ * index {@code epochDay - firstEpochDay} of the array of the security at index {@link Security#getId()}. So a
+ * lookup is two array reads.
+ */
+@ThreadSafe
+public final class ArrayPriceStore implements PriceStore {
+
+    private final long firstEpochDay;
+    private final long[][] prices;
+
+    /**
+     * @param firstDay day of the first price of each security
+     * @param prices prices in cents indexed by {@link Security#getId()} and then by day, they are not copied. The
+     *               securities with a higher id have no price
+     */
+    public ArrayPriceStore(@Nonnull LocalDate firstDay, @Nonnull long[][] prices) {
+        if (prices.length == 0) {
+            throw new IllegalArgumentException("Expected prices for at least one security");
+        }
+        for (long[] securityPrices : prices) {
+            if (securityPrices.length != prices[0].length) {
+                throw new IllegalArgumentException("All securities should have prices for the same days");
+            }
+        }
+        this.firstEpochDay = firstDay.toEpochDay();
+        this.prices = prices;
+    }
+
+    @Override
+    public long getPrice(long epochDay, @Nonnull Security security) {
+        long index = epochDay - firstEpochDay;
+        if (security.getId() >= prices.length || index < 0 || index >= prices[0].length) {
+            throw new IllegalArgumentException("No price for " + security + " on " + LocalDate.ofEpochDay(epochDay));
+        }
+        return prices[security.getId()][(int) index];
+    }
+
+    @Nonnull
+    @Override
+    public LocalDate getFirstDay() {
+        return LocalDate.ofEpochDay(firstEpochDay);
+    }
+
+    @Nonnull
+    @Override
+    public LocalDate getLastDay() {
+        return LocalDate.ofEpochDay(firstEpochDay + prices[0].length - 1);
+    }
+}
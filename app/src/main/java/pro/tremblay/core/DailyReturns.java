@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.LocalDate;
+
+/**
+ * Value and time-weighted return of a position at the end of each day of a period. Returns are fractions, so
+ * {@code 0.05} is 5%. They aren't annualized.
+ * <p>
+ * Deposits and withdrawals are external cash flows. They are considered to happen at the end of the day so they don't
+ * count as a gain or a loss. Buying or selling a security is internal to the position. So the daily return is
+ * {@code (value - flows) / previous_value - 1} and the cumulative return chains the daily ones. The value before the
+ * first day is the position at the beginning of the period valued at the prices of the first day, as done by
+ * {@link ReportingService#calculateReturnOnInvestmentYTD(Position, java.util.Collection)}.
+ * <p>
+ * The values are doubles, precise enough to draw a chart. The series are returned as copies of primitive arrays
+ * indexed by day, index 0 being the first day of the period.
+ */
+@ThreadSafe
+public final class DailyReturns {
+
+    private final LocalDate start;
+    private final double initialValue;
+    private final double[] values;
+    private final double[] flows;
+    private final double[] dailyReturns;
+    private final double[] cumulativeReturns;
+
+    /**
+     * @param start first day of the period
+     * @param initialValue value of the position at the beginning of the first day
+     * @param values value at the end of each day, not copied
+     * @param flows net external cash flow of each day, not copied
+     */
+    DailyReturns(@Nonnull LocalDate start, double initialValue, @Nonnull double[] values, @Nonnull double[] flows) {
+        this.start = start;
+        this.initialValue = initialValue;
+        this.values = values;
+        this.flows = flows;
+        this.dailyReturns = new double[values.length];
+        this.cumulativeReturns = new double[values.length];
+
+        double previousValue = initialValue;
+        double cumulative = 1;
+        for (int day = 0; day < values.length; day++) {
+            // Nothing invested means nothing gained
+            dailyReturns[day] = previousValue == 0 ? 0 : (values[day] - flows[day]) / previousValue - 1;
+            cumulative *= 1 + dailyReturns[day];
+            cumulativeReturns[day] = cumulative - 1;
+            previousValue = values[day];
+        }
+    }
+
+    /**
+     * @return number of days in the period
+     */
+    public int size() {
+        return values.length;
+    }
+
+    @Nonnull
+    public LocalDate getStart() {
+        return start;
+    }
+
+    @Nonnull
+    public LocalDate getDate(int day) {
+        return start.plusDays(day);
+    }
+
+    public double getInitialValue() {
+        return initialValue;
+    }
+
+    @Nonnull
+    public double[] getValues() {
+        return values.clone();
+    }
+
+    @Nonnull
+    public double[] getFlows() {
+        return flows.clone();
+    }
+
+    @Nonnull
+    public double[] getDailyReturns() {
+        return dailyReturns.clone();
+    }
+
+    @Nonnull
+    public double[] getCumulativeReturns() {
+        return cumulativeReturns.clone();
+    }
+
+    /**
+     * @return time-weighted return over the whole period
+     */
+    public double getTotalReturn() {
+        return cumulativeReturns.length == 0 ? 0 : cumulativeReturns[cumulativeReturns.length - 1];
+    }
+}
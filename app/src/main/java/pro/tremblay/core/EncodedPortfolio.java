@@ -0,0 +1,528 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A position and its transactions in a compact binary format, read straight from a buffer. Nothing is decoded when the
+ * buffer is wrapped except the position and the security symbols. The securities are only created once the whole
+ * header is known to be valid, so a corrupted buffer doesn't fill the registry of securities. Each transaction is then read from the buffer when
+ * asked for, so a mapped file can be calculated without creating a {@link Transaction} per transaction.
+ * <p>
+ * The format is in little endian. Varints are unsigned LEB128, signed ones are zigzag encoded first. A decimal is its
+ * scale as a signed varint followed by its unscaled value as a varint length and the two's complement bytes.
+ * <ul>
+ *     <li>Magic number: int, {@code PTFL}</li>
+ *     <li>Version: int, currently 2. Version 1 had no marker for a missing quantity, it can still be read</li>
+ *     <li>Securities: varint count then, for each one, its symbol as a varint length followed by the UTF-8 bytes, at
+ *         most {@value #MAX_SYMBOL_LENGTH} bytes without control or whitespace characters</li>
+ *     <li>Cash of the position: decimal</li>
+ *     <li>Security positions: varint count then, for each one, the varint index of its security and its quantity as a decimal</li>
+ *     <li>Transactions: int count then a fixed-width record of {@value #RECORD_SIZE} bytes per transaction
+ *         <ul>
+ *             <li>Type: byte, {@link TransactionType#ordinal()}, with the highest bit set if the quantity is null</li>
+ *             <li>Date: int, epoch day</li>
+ *             <li>Cash: long, {@link FixedDecimal}</li>
+ *             <li>Security: int, index of the security or -1 if none</li>
+ *             <li>Quantity: long, {@link FixedDecimal}, 0 if null</li>
+ *         </ul>
+ *     </li>
+ * </ul>
+ * The records are fixed-width so any transaction can be read directly and a history can be split in parts.
+ * <p>
+ * The buffer must not be modified while in use. Reads don't change its position, so the same instance can be read by
+ * many threads.
+ */
+@ThreadSafe
+public final class EncodedPortfolio {
+
+    private static final int MAGIC = 0x5054464C; // PTFL
+    private static final int VERSION = 2;
+    private static final TransactionType[] TYPES = TransactionType.values();
+    /** Bit of the type byte set when the quantity is null */
+    private static final int NO_QUANTITY = 0x80;
+    private static final int NO_SECURITY = -1;
+    /** Maximum length of a symbol in UTF-8 bytes */
+    static final int MAX_SYMBOL_LENGTH = 255;
+
+    /** Size in bytes of a transaction */
+    static final int RECORD_SIZE = 25;
+    private static final int DATE_OFFSET = 1;
+    private static final int CASH_OFFSET = 5;
+    private static final int SECURITY_OFFSET = 13;
+    private static final int QUANTITY_OFFSET = 17;
+
+    private final ByteBuffer buffer;
+    private final Security[] securities;
+    private final Position position;
+    private final int transactionCount;
+    /** Position of the first transaction in the buffer */
+    private final int firstRecord;
+
+    private EncodedPortfolio(ByteBuffer buffer, Security[] securities, Position position, int transactionCount, int firstRecord) {
+        this.buffer = buffer;
+        this.securities = securities;
+        this.position = position;
+        this.transactionCount = transactionCount;
+        this.firstRecord = firstRecord;
+    }
+
+    /**
+     * Read a portfolio from a buffer. The content from the position to the limit of the buffer is used without being
+     * copied, the buffer itself isn't modified.
+     *
+     * @param buffer buffer containing what was written by {@link #write(WritableByteChannel, Position, Collection)}
+     * @return the portfolio reading from this buffer
+     * @throws IllegalArgumentException if the buffer doesn't contain a valid portfolio
+     */
+    @Nonnull
+    public static EncodedPortfolio wrap(@Nonnull ByteBuffer buffer) {
+        ByteBuffer content = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (content.remaining() < 8 || content.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not an encoded portfolio");
+            }
+            int version = content.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IllegalArgumentException("Unsupported encoded portfolio version " + version);
+            }
+
+            int securityCount = readVarint(content);
+            if (securityCount > content.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            String[] symbols = new String[securityCount];
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = readSymbol(content);
+            }
+
+            BigDecimal cash = readDecimal(content);
+            int securityPositionCount = readVarint(content);
+            if (securityPositionCount > content.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            int[] securityIndexes = new int[securityPositionCount];
+            BigDecimal[] quantities = new BigDecimal[securityPositionCount];
+            for (int i = 0; i < securityPositionCount; i++) {
+                securityIndexes[i] = checkSecurityIndex(readVarint(content), securityCount);
+                quantities[i] = readDecimal(content);
+            }
+
+            int transactionCount = content.getInt();
+            int firstRecord = content.position();
+            if (transactionCount < 0 || (long) transactionCount * RECORD_SIZE > content.limit() - firstRecord) {
+                throw new IllegalArgumentException("Encoded portfolio is truncated");
+            }
+
+            // The header is valid, the securities of the portfolio are created if they don't exist yet
+            Security[] securities = new Security[securityCount];
+            for (int i = 0; i < securities.length; i++) {
+                securities[i] = Security.of(symbols[i]);
+            }
+            List<SecurityPosition> securityPositions = new ArrayList<>(securityPositionCount);
+            for (int i = 0; i < securityPositionCount; i++) {
+                securityPositions.add(new SecurityPosition().security(securities[securityIndexes[i]]).quantity(quantities[i]));
+            }
+            Position position = new Position().cash(cash).securityPositions(securityPositions);
+            return new EncodedPortfolio(content, securities, position, transactionCount, firstRecord);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Encoded portfolio is truncated", e);
+        }
+    }
+
+    /**
+     * Map a file written by {@link #write(Path, Position, Collection)} in memory. Only the header is read, the
+     * transactions are read from the disk when needed.
+     *
+     * @param file file to map
+     * @return the portfolio reading from this file
+     * @throws IOException if the file can't be read or isn't a valid portfolio
+     */
+    @Nonnull
+    public static EncodedPortfolio open(@Nonnull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be mapped");
+            }
+            try {
+                return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage() + " in " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Write a position and its transactions in a file that can then be mapped by {@link #open(Path)}.
+     *
+     * @param file file to write, replaced if it exists
+     * @param position the position
+     * @param transactions all transactions on this position
+     * @throws IOException if the file can't be written
+     * @throws ArithmeticException if an amount or a quantity of a transaction doesn't fit in a {@link FixedDecimal}
+     * @throws IllegalArgumentException if a symbol is longer than {@value #MAX_SYMBOL_LENGTH} UTF-8 bytes
+     */
+    public static void write(@Nonnull Path file, @Nonnull Position position, @Nonnull Collection<Transaction> transactions) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, position, transactions);
+        }
+    }
+
+    /**
+     * Write a position and its transactions in a channel. The channel isn't closed.
+     *
+     * @param channel where to write
+     * @param position the position
+     * @param transactions all transactions on this position
+     * @throws IOException if the channel can't be written
+     * @throws ArithmeticException if an amount or a quantity of a transaction doesn't fit in a {@link FixedDecimal}
+     * @throws IllegalArgumentException if a symbol is longer than {@value #MAX_SYMBOL_LENGTH} UTF-8 bytes
+     */
+    public static void write(@Nonnull WritableByteChannel channel, @Nonnull Position position, @Nonnull Collection<Transaction> transactions) throws IOException {
+        SecurityTable table = new SecurityTable();
+        for (SecurityPosition securityPosition : position.getSecurityPositions()) {
+            table.index(securityPosition.getSecurity());
+        }
+        for (Transaction transaction : transactions) {
+            if (transaction.getSecurity() != null) {
+                table.index(transaction.getSecurity());
+            }
+        }
+
+        Output output = new Output(channel);
+        output.ensure(8).putInt(MAGIC).putInt(VERSION);
+        output.putVarint(table.size);
+        for (int i = 0; i < table.size; i++) {
+            byte[] symbol = table.securities[i].getSymbol().getBytes(StandardCharsets.UTF_8);
+            if (symbol.length > MAX_SYMBOL_LENGTH) {
+                throw new IllegalArgumentException("Can't encode " + table.securities[i] + ", the symbol is longer than " + MAX_SYMBOL_LENGTH + " bytes");
+            }
+            output.putVarint(symbol.length);
+            output.put(symbol);
+        }
+
+        output.putDecimal(position.getCash());
+        output.putVarint(position.getSecurityPositions().size());
+        for (SecurityPosition securityPosition : position.getSecurityPositions()) {
+            output.putVarint(table.index(securityPosition.getSecurity()));
+            output.putDecimal(securityPosition.getQuantity());
+        }
+
+        output.ensure(Integer.BYTES).putInt(transactions.size());
+        for (Transaction transaction : transactions) {
+            long cash = FixedDecimal.of(transaction.getCash());
+            long quantity = transaction.getQuantity() == null ? 0 : FixedDecimal.of(transaction.getQuantity());
+            if (cash == FixedDecimal.OVERFLOW || quantity == FixedDecimal.OVERFLOW) {
+                throw new ArithmeticException("Can't encode " + transaction + ", an amount has too many digits");
+            }
+            int type = transaction.getType().ordinal() | (transaction.getQuantity() == null ? NO_QUANTITY : 0);
+            output.ensure(RECORD_SIZE)
+                .put((byte) type)
+                .putInt(Math.toIntExact(transaction.getDate().toEpochDay()))
+                .putLong(cash)
+                .putInt(transaction.getSecurity() == null ? NO_SECURITY : table.index(transaction.getSecurity()))
+                .putLong(quantity);
+        }
+        output.flush();
+    }
+
+    /**
+     * @return a new position with the content of the encoded one
+     */
+    @Nonnull
+    public Position getPosition() {
+        List<SecurityPosition> securityPositions = new ArrayList<>(position.getSecurityPositions().size());
+        for (SecurityPosition securityPosition : position.getSecurityPositions()) {
+            securityPositions.add(new SecurityPosition().security(securityPosition.getSecurity()).quantity(securityPosition.getQuantity()));
+        }
+        return new Position().cash(position.getCash()).securityPositions(securityPositions);
+    }
+
+    /**
+     * The decoded position, shared by all the calculations. It must not be modified.
+     */
+    @Nonnull
+    Position position() {
+        return position;
+    }
+
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * @param index index of the transaction
+     * @return the type of the transaction
+     * @throws IllegalArgumentException if the type in the buffer isn't a valid one
+     */
+    @Nonnull
+    public TransactionType getType(int index) {
+        int type = (buffer.get(record(index)) & 0xFF) & ~NO_QUANTITY;
+        if (type >= TYPES.length) {
+            throw new IllegalArgumentException("Invalid transaction type " + type + " in an encoded portfolio");
+        }
+        return TYPES[type];
+    }
+
+    public long getEpochDay(int index) {
+        return buffer.getInt(record(index) + DATE_OFFSET);
+    }
+
+    @Nonnull
+    public LocalDate getDate(int index) {
+        return LocalDate.ofEpochDay(getEpochDay(index));
+    }
+
+    /**
+     * @param index index of the transaction
+     * @return the cash as a {@link FixedDecimal}
+     */
+    public long getCash(int index) {
+        return buffer.getLong(record(index) + CASH_OFFSET);
+    }
+
+    @Nullable
+    public Security getSecurity(int index) {
+        int security = buffer.getInt(record(index) + SECURITY_OFFSET);
+        return security == NO_SECURITY ? null : security(securities, security);
+    }
+
+    /**
+     * @param index index of the transaction
+     * @return the quantity as a {@link FixedDecimal}, 0 if it is null
+     */
+    public long getQuantity(int index) {
+        return buffer.getLong(record(index) + QUANTITY_OFFSET);
+    }
+
+    /**
+     * @param index index of the transaction
+     * @return false if the quantity of the transaction is null
+     */
+    public boolean hasQuantity(int index) {
+        return (buffer.get(record(index)) & NO_QUANTITY) == 0;
+    }
+
+    /**
+     * Create a new {@link Transaction} from one of the portfolio.
+     *
+     * @param index index of the transaction
+     * @return a transaction with the same values as the one written
+     */
+    @Nonnull
+    public Transaction toTransaction(int index) {
+        return new Transaction()
+            .type(getType(index))
+            .date(getDate(index))
+            .cash(FixedDecimal.toBigDecimal(getCash(index)))
+            .security(getSecurity(index))
+            .quantity(hasQuantity(index) ? FixedDecimal.toBigDecimal(getQuantity(index)) : null);
+    }
+
+    /**
+     * Create a new {@link Transaction} for each transaction of the portfolio.
+     *
+     * @return the transactions in the order they were written
+     */
+    @Nonnull
+    public List<Transaction> toTransactions() {
+        List<Transaction> transactions = new ArrayList<>(transactionCount);
+        for (int i = 0; i < transactionCount; i++) {
+            transactions.add(toTransaction(i));
+        }
+        return transactions;
+    }
+
+    private int record(int index) {
+        if (index < 0 || index >= transactionCount) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + transactionCount);
+        }
+        return firstRecord + index * RECORD_SIZE;
+    }
+
+    private static Security security(Security[] securities, int index) {
+        return securities[checkSecurityIndex(index, securities.length)];
+    }
+
+    private static int checkSecurityIndex(int index, int securityCount) {
+        if (index < 0 || index >= securityCount) {
+            throw new IllegalArgumentException("Invalid security index " + index + " in an encoded portfolio");
+        }
+        return index;
+    }
+
+    /**
+     * Read a symbol, checking it is one before anything is created for it.
+     */
+    private static String readSymbol(ByteBuffer buffer) {
+        int length = readVarint(buffer);
+        if (length == 0 || length > MAX_SYMBOL_LENGTH) {
+            throw new IllegalArgumentException("Invalid symbol length " + length + " in an encoded portfolio");
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        ByteBuffer bytes = buffer.slice().limit(length);
+        buffer.position(buffer.position() + length);
+        String symbol;
+        try {
+            // Unlike new String(), malformed bytes are reported instead of replaced
+            symbol = StandardCharsets.UTF_8.newDecoder().decode(bytes).toString();
+        } catch (CharacterCodingException e) {
+            throw new IllegalArgumentException("Invalid symbol in an encoded portfolio", e);
+        }
+        for (int i = 0; i < symbol.length(); i++) {
+            char c = symbol.charAt(i);
+            if (Character.isISOControl(c) || Character.isWhitespace(c)) {
+                throw new IllegalArgumentException("Invalid symbol in an encoded portfolio");
+            }
+        }
+        return symbol;
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Negative varint in an encoded portfolio");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long in an encoded portfolio");
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer buffer) {
+        int zigzagScale = readVarint(buffer);
+        int scale = (zigzagScale >>> 1) ^ -(zigzagScale & 1);
+        return new BigDecimal(new BigInteger(readBytes(buffer)), scale);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        int length = readVarint(buffer);
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /** Index of each security written, in the order they are met */
+    private static final class SecurityTable {
+        /** Index + 1 of each security by {@link Security#getId()}, 0 if not indexed yet */
+        private int[] indexById = new int[Security.count()];
+        private Security[] securities = new Security[8];
+        private int size;
+
+        int index(Security security) {
+            int id = security.getId();
+            if (id >= indexById.length) {
+                indexById = Arrays.copyOf(indexById, Math.max(id + 1, Security.count()));
+            }
+            int index = indexById[id] - 1;
+            if (index < 0) {
+                if (size == securities.length) {
+                    securities = Arrays.copyOf(securities, size * 2);
+                }
+                index = size++;
+                securities[index] = security;
+                indexById[id] = index + 1;
+            }
+            return index;
+        }
+    }
+
+    /** Buffer flushed to a channel when full */
+    @NotThreadSafe
+    private static final class Output {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * @param size number of bytes about to be written, at most the size of the buffer
+         * @return the buffer with at least this number of bytes remaining
+         */
+        ByteBuffer ensure(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                flush();
+            }
+            return buffer;
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int length = Math.min(bytes.length - offset, ensure(1).remaining());
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void putVarint(int value) throws IOException {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void putDecimal(BigDecimal value) throws IOException {
+            int scale = value.scale();
+            putVarint((scale << 1) ^ (scale >> 31));
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            putVarint(unscaled.length);
+            put(unscaled);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
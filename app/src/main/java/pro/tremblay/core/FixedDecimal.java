@@ -0,0 +1,239 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.math.BigDecimal;
+
+/**
+ * Helper class to calculate amounts and quantities as a {@code long} with a fixed number of decimals instead of a
+ * {@code BigDecimal}. For instance, with a scale of 4, {@code 12.5} is stored as {@code 125000}.
+ * <p>
+ * No operation ever throws or allocates. When a value can't be represented exactly, or when an operation overflows,
+ * {@link #OVERFLOW} is returned instead. Every operation returns {@link #OVERFLOW} when one of its arguments is
+ * {@link #OVERFLOW}, so the check can be done once at the end of a calculation to fall back to {@code BigDecimal}.
+ */
+@ThreadSafe
+public final class FixedDecimal {
+
+    /** Number of decimals of a fixed decimal */
+    public static final int SCALE = 4;
+
+    /** Value returned when the result can't be represented exactly */
+    public static final long OVERFLOW = Long.MIN_VALUE;
+
+    private static final long[] POWERS_OF_TEN = {
+        1L,
+        10L,
+        100L,
+        1_000L,
+        10_000L,
+        100_000L,
+        1_000_000L,
+        10_000_000L,
+        100_000_000L,
+        1_000_000_000L,
+        10_000_000_000L,
+        100_000_000_000L,
+        1_000_000_000_000L,
+        10_000_000_000_000L,
+        100_000_000_000_000L,
+        1_000_000_000_000_000L,
+        10_000_000_000_000_000L,
+        100_000_000_000_000_000L,
+        1_000_000_000_000_000_000L
+    };
+
+    /**
+     * Convert a {@code BigDecimal} to a fixed decimal of {@link #SCALE} decimals.
+     *
+     * @param value value to convert
+     * @return the fixed decimal or {@link #OVERFLOW} if the value has too many decimals or is too large
+     */
+    public static long of(@Nonnull BigDecimal value) {
+        if (value.scale() > SCALE) {
+            value = value.stripTrailingZeros();
+            if (value.scale() > SCALE) {
+                return OVERFLOW;
+            }
+        }
+        if (value.precision() > 18) {
+            return OVERFLOW;
+        }
+        long unscaled = value.scale() == 0 ? value.longValue() : value.unscaledValue().longValue();
+        return rescale(unscaled, value.scale(), SCALE);
+    }
+
+    /**
+     * Convert a fixed decimal of {@link #SCALE} decimals to a {@code BigDecimal}.
+     *
+     * @param value value to convert, can't be {@link #OVERFLOW}
+     * @return the {@code BigDecimal} with a scale of {@link #SCALE}
+     */
+    @Nonnull
+    public static BigDecimal toBigDecimal(long value) {
+        return toBigDecimal(value, SCALE);
+    }
+
+    /**
+     * Convert a fixed decimal to a {@code BigDecimal}.
+     *
+     * @param value value to convert, can't be {@link #OVERFLOW}
+     * @param scale number of decimals of the value
+     * @return the {@code BigDecimal} with the same scale
+     */
+    @Nonnull
+    public static BigDecimal toBigDecimal(long value, int scale) {
+        if (value == OVERFLOW) {
+            throw new ArithmeticException("Overflowed fixed decimal can't be converted");
+        }
+        return BigDecimal.valueOf(value, scale);
+    }
+
+    /**
+     * Convert a fixed decimal of {@link #SCALE} decimals to the nearest double.
+     *
+     * @param value value to convert, can't be {@link #OVERFLOW}
+     * @return the value as a double
+     */
+    public static double toDouble(long value) {
+        if (value == OVERFLOW) {
+            throw new ArithmeticException("Overflowed fixed decimal can't be converted");
+        }
+        return (double) value / POWERS_OF_TEN[SCALE];
+    }
+
+    /**
+     * Change the number of decimals of a fixed decimal.
+     *
+     * @param value value to rescale
+     * @param fromScale current number of decimals of the value, can be negative
+     * @param toScale wanted number of decimals
+     * @return the rescaled value or {@link #OVERFLOW} if it overflows or if decimals would be lost
+     */
+    public static long rescale(long value, int fromScale, int toScale) {
+        if (value == OVERFLOW) {
+            return OVERFLOW;
+        }
+        int diff = toScale - fromScale;
+        if (diff == 0) {
+            return value;
+        }
+        if (diff > 0) {
+            if (diff >= POWERS_OF_TEN.length) {
+                return value == 0 ? 0 : OVERFLOW;
+            }
+            return multiply(value, POWERS_OF_TEN[diff]);
+        }
+        if (-diff >= POWERS_OF_TEN.length) {
+            return value == 0 ? 0 : OVERFLOW;
+        }
+        long power = POWERS_OF_TEN[-diff];
+        return value % power == 0 ? value / power : OVERFLOW;
+    }
+
+    public static long add(long a, long b) {
+        if (a == OVERFLOW || b == OVERFLOW) {
+            return OVERFLOW;
+        }
+        long result = a + b;
+        // Overflow if both operands have the same sign and the result has a different one
+        if (((a ^ result) & (b ^ result)) < 0) {
+            return OVERFLOW;
+        }
+        return result;
+    }
+
+    public static long subtract(long a, long b) {
+        if (b == OVERFLOW) {
+            return OVERFLOW;
+        }
+        return add(a, -b);
+    }
+
+    public static long negate(long a) {
+        return a == OVERFLOW ? OVERFLOW : -a;
+    }
+
+    /**
+     * Multiply two fixed decimals. The scale of the result is the sum of the scales of the operands. So multiplying two
+     * values of {@link #SCALE} decimals gives a value of {@code 2 * SCALE} decimals.
+     *
+     * @param a first operand
+     * @param b second operand
+     * @return the exact product or {@link #OVERFLOW}
+     */
+    public static long multiply(long a, long b) {
+        if (a == OVERFLOW || b == OVERFLOW) {
+            return OVERFLOW;
+        }
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        // The product fits in a long if the high part is only the sign extension of the low part
+        if (high != (low >> 63) || low == OVERFLOW) {
+            return OVERFLOW;
+        }
+        return low;
+    }
+
+    /**
+     * Divide two fixed decimals of the same scale and round the result {@link java.math.RoundingMode#HALF_UP} at the
+     * wanted number of decimals. It gives exactly the same result as
+     * {@code BigDecimal.divide(divisor, decimals, RoundingMode.HALF_UP)}.
+     *
+     * @param dividend the dividend
+     * @param divisor the divisor, can't be 0
+     * @param decimals number of decimals of the result
+     * @return the rounded quotient or {@link #OVERFLOW}
+     */
+    public static long divideHalfUp(long dividend, long divisor, int decimals) {
+        if (dividend == OVERFLOW || divisor == OVERFLOW) {
+            return OVERFLOW;
+        }
+        if (divisor == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        boolean negative = (dividend < 0) != (divisor < 0);
+        long a = Math.abs(dividend);
+        long b = Math.abs(divisor);
+
+        // Long division, one decimal at a time, to never overflow on the intermediate remainder
+        long quotient = a / b;
+        long remainder = a % b;
+        for (int i = 0; i < decimals; i++) {
+            if (remainder > Long.MAX_VALUE / 10) {
+                return OVERFLOW;
+            }
+            remainder *= 10;
+            long digit = remainder / b;
+            remainder = remainder % b;
+            if (quotient > (Long.MAX_VALUE - digit) / 10) {
+                return OVERFLOW;
+            }
+            quotient = quotient * 10 + digit;
+        }
+        if (remainder >= b - remainder) {
+            if (quotient == Long.MAX_VALUE) {
+                return OVERFLOW;
+            }
+            quotient++;
+        }
+        return negative ? -quotient : quotient;
+    }
+
+    private FixedDecimal() {}
+}
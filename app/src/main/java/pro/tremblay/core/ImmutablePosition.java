@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable counterpart of {@link Position}, safe to share between threads without copying it.
+ * <p>
+ * Updating a position returns a new one sharing everything that didn't change with the original: changing the cash
+ * keeps the same list of security positions and changing a security position only copies the path to it in a
+ * {@link SecurityPositionList}. Finding, changing, adding or removing a security position is O(log n), so replaying a
+ * long history on a position holding many securities stays linear.
+ *
+ * @param cash cash position
+ * @param securityPositions positions of each security, copied unless it comes from another immutable position
+ */
+@Immutable
+public record ImmutablePosition(@Nonnull BigDecimal cash, @Nonnull List<ImmutableSecurityPosition> securityPositions) {
+
+    public ImmutablePosition {
+        Objects.requireNonNull(cash, "cash");
+        // Doesn't copy the list of another immutable position
+        securityPositions = SecurityPositionList.of(securityPositions);
+    }
+
+    /**
+     * @param position position to copy
+     * @return an immutable copy of the position
+     */
+    @Nonnull
+    public static ImmutablePosition of(@Nonnull Position position) {
+        List<ImmutableSecurityPosition> securityPositions = new ArrayList<>(position.getSecurityPositions().size());
+        for (SecurityPosition securityPosition : position.getSecurityPositions()) {
+            securityPositions.add(ImmutableSecurityPosition.of(securityPosition));
+        }
+        return new ImmutablePosition(position.getCash(), securityPositions);
+    }
+
+    /**
+     * @return a new mutable position with the same content
+     */
+    @Nonnull
+    public Position toPosition() {
+        List<SecurityPosition> positions = new ArrayList<>(securityPositions.size());
+        for (ImmutableSecurityPosition securityPosition : securityPositions) {
+            positions.add(securityPosition.toSecurityPosition());
+        }
+        return new Position().cash(cash).securityPositions(positions);
+    }
+
+    /**
+     * Find the position of a security. If the security appears more than once, the first one is returned.
+     *
+     * @param security the security
+     * @return the position of the security or null if there is none
+     */
+    @Nullable
+    public ImmutableSecurityPosition getSecurityPosition(@Nonnull Security security) {
+        return positions().find(security);
+    }
+
+    /**
+     * @param cash the new cash position
+     * @return a position with this cash and the same security positions
+     */
+    @Nonnull
+    public ImmutablePosition withCash(@Nonnull BigDecimal cash) {
+        return new ImmutablePosition(cash, securityPositions);
+    }
+
+    /**
+     * Change the quantity of a security, or add it at the end if the position doesn't have it.
+     *
+     * @param security the security
+     * @param quantity its new quantity
+     * @return a position with this quantity of the security and the same other security positions
+     */
+    @Nonnull
+    public ImmutablePosition withQuantity(@Nonnull Security security, @Nonnull BigDecimal quantity) {
+        return new ImmutablePosition(cash, positions().with(new ImmutableSecurityPosition(security, quantity)));
+    }
+
+    /**
+     * @param security the security
+     * @return a position without this security and with the same other security positions
+     */
+    @Nonnull
+    public ImmutablePosition without(@Nonnull Security security) {
+        SecurityPositionList positions = positions().without(security);
+        return positions == securityPositions ? this : new ImmutablePosition(cash, positions);
+    }
+
+    private SecurityPositionList positions() {
+        // Always one, see the constructor
+        return (SecurityPositionList) securityPositions;
+    }
+}
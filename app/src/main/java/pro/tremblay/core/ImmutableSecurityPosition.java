@@ -0,0 +1,65 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Immutable counterpart of {@link SecurityPosition}, safe to share between threads.
+ *
+ * @param security the security
+ * @param quantity quantity possessed
+ */
+@Immutable
+public record ImmutableSecurityPosition(@Nonnull Security security, @Nonnull BigDecimal quantity) implements SecurityQuantity {
+
+    public ImmutableSecurityPosition {
+        Objects.requireNonNull(security, "security");
+        Objects.requireNonNull(quantity, "quantity");
+    }
+
+    /**
+     * @param securityPosition security position to copy
+     * @return an immutable copy of the security position
+     */
+    @Nonnull
+    public static ImmutableSecurityPosition of(@Nonnull SecurityPosition securityPosition) {
+        return new ImmutableSecurityPosition(securityPosition.getSecurity(), securityPosition.getQuantity());
+    }
+
+    /**
+     * @return a new mutable security position with the same content
+     */
+    @Nonnull
+    public SecurityPosition toSecurityPosition() {
+        return new SecurityPosition().security(security).quantity(quantity);
+    }
+
+    /** Same as {@link #security()} */
+    @Override
+    public Security getSecurity() {
+        return security;
+    }
+
+    /** Same as {@link #quantity()} */
+    @Override
+    public BigDecimal getQuantity() {
+        return quantity;
+    }
+}
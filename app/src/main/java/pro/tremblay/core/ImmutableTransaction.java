@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Immutable counterpart of {@link Transaction}, safe to share between threads.
+ *
+ * @param type type of transaction
+ * @param date date at which the transaction occurred
+ * @param cash amount of cash exchanged during the transaction, always positive
+ * @param security securities bought or sold, null if the type has no quantity
+ * @param quantity quantity of securities exchanged during the transaction, always positive and zero if the type has
+ *                 no quantity
+ */
+@Immutable
+public record ImmutableTransaction(@Nonnull TransactionType type, @Nonnull LocalDate date, @Nonnull BigDecimal cash,
+                                   @Nullable Security security, @Nonnull BigDecimal quantity) {
+
+    public ImmutableTransaction {
+        Objects.requireNonNull(type, "type");
+        Objects.requireNonNull(date, "date");
+        Objects.requireNonNull(cash, "cash");
+        if (type.hasQuantity()) {
+            Objects.requireNonNull(security, "security");
+            Objects.requireNonNull(quantity, "quantity");
+        } else if (quantity == null) {
+            quantity = BigDecimal.ZERO;
+        }
+    }
+
+    /**
+     * @param transaction transaction to copy
+     * @return an immutable copy of the transaction
+     */
+    @Nonnull
+    public static ImmutableTransaction of(@Nonnull Transaction transaction) {
+        return new ImmutableTransaction(transaction.getType(), transaction.getDate(), transaction.getCash(),
+            transaction.getSecurity(), transaction.getQuantity());
+    }
+
+    /**
+     * @return a new mutable transaction with the same content
+     */
+    @Nonnull
+    public Transaction toTransaction() {
+        return new Transaction()
+            .type(type)
+            .date(date)
+            .cash(cash)
+            .security(security)
+            .quantity(quantity);
+    }
+}
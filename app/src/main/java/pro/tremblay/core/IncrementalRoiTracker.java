@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Keeps track of the return on investment since the beginning of the year of a single account. Instead of rewinding
+ * all the transactions at each calculation, like {@link ReportingService#calculateReturnOnInvestmentYTD(Position, Collection)},
+ * it remembers what needs to be reverted to get the position at the beginning of the year and updates it as new
+ * transactions arrive. So a calculation only costs the new transactions and the number of securities.
+ * <p>
+ * The tracker also maintains the current position by applying the new transactions to it. The results are the same
+ * as calling {@link ReportingService#calculateReturnOnInvestmentYTD(Position, Collection)} with this current position
+ * and every transaction seen so far. When the year changes, the tracker starts over from the new beginning of the year.
+ * It expects the clock to move forward.
+ */
+@NotThreadSafe
+public class IncrementalRoiTracker {
+
+    private final ReportingService reportingService;
+
+    /** Copy of the current position maintained by applying each new transaction */
+    private final Position current;
+
+    /** Day of the last calculation */
+    private LocalDate today;
+    /** What to revert from the current position to get the one at the beginning of the year of {@link #today} */
+    private PositionRewind rewind;
+    /** Transactions after {@link #today}, they will be reverted once their day is reached */
+    private final List<Transaction> pending = new ArrayList<>();
+
+    /**
+     * @param reportingService service giving the current date and calculating the return on investment
+     * @param current the current position of today, won't be modified by the tracker
+     * @param transactions all transactions on this position, they are not sorted and might be before the beginning of the year
+     */
+    public IncrementalRoiTracker(@Nonnull ReportingService reportingService, @Nonnull Position current, @Nonnull Collection<Transaction> transactions) {
+        this.reportingService = reportingService;
+        this.current = new Position()
+            .cash(current.getCash())
+            .securityPositions(new ArrayList<>(current.getSecurityPositions().size()));
+        for (SecurityPosition securityPosition : current.getSecurityPositions()) {
+            this.current.addSecurityPosition(new SecurityPosition()
+                .security(securityPosition.getSecurity())
+                .quantity(securityPosition.getQuantity()));
+        }
+
+        startYear(LocalDate.now(reportingService.clock()));
+        for (Transaction transaction : transactions) {
+            revert(transaction);
+        }
+    }
+
+    /**
+     * Add a transaction that just happened. It is applied to the current position.
+     *
+     * @param transaction the new transaction
+     */
+    public void add(@Nonnull Transaction transaction) {
+        apply(transaction);
+        revert(transaction);
+    }
+
+    /**
+     * Calculate the annualized return on investment since the beginning of the year. It gives the same result as
+     * {@link ReportingService#calculateReturnOnInvestmentYTD(Position, Collection)}.
+     *
+     * @return annualized return on investment since beginning of the year
+     */
+    @Nonnull
+    public BigDecimal calculateReturnOnInvestmentYTD() {
+        LocalDate now = LocalDate.now(reportingService.clock());
+        if (now.getYear() != today.getYear()) {
+            startYear(now);
+        }
+        else {
+            today = now;
+        }
+        revertPending();
+
+        PositionRewind effectiveRewind = rewind;
+        if (!pending.isEmpty()) {
+            // Like ReportingService, a transaction after today prevents any transaction from being reverted
+            effectiveRewind = new PositionRewind(today, today);
+        }
+        return reportingService.calculateReturnOnInvestment(new ValuationContext(today), current, effectiveRewind);
+    }
+
+    /**
+     * Get the current position, with all the transactions applied. It shouldn't be modified.
+     *
+     * @return the current position
+     */
+    @Nonnull
+    public Position getPosition() {
+        return current;
+    }
+
+    private void startYear(LocalDate now) {
+        today = now;
+        // Transactions after today are kept aside in pending, so the rewind can stay open ended
+        rewind = new PositionRewind(now.withDayOfYear(1), LocalDate.MAX);
+    }
+
+    private void revert(Transaction transaction) {
+        if (transaction.getDate().isAfter(today)) {
+            pending.add(transaction);
+        }
+        else {
+            rewind.revert(transaction);
+        }
+    }
+
+    private void revertPending() {
+        for (Iterator<Transaction> it = pending.iterator(); it.hasNext(); ) {
+            Transaction transaction = it.next();
+            if (!transaction.getDate().isAfter(today)) {
+                rewind.revert(transaction);
+                it.remove();
+            }
+        }
+    }
+
+    private void apply(Transaction transaction) {
+        switch (transaction.getType()) {
+            case BUY: {
+                current.cash(current.getCash().subtract(transaction.getCash()));
+                SecurityPosition pos = securityPosition(transaction.getSecurity());
+                pos.quantity(pos.getQuantity().add(transaction.getQuantity()));
+                break;
+            }
+            case SELL: {
+                current.cash(current.getCash().add(transaction.getCash()));
+                SecurityPosition pos = securityPosition(transaction.getSecurity());
+                pos.quantity(pos.getQuantity().subtract(transaction.getQuantity()));
+                break;
+            }
+            case DEPOSIT:
+                current.cash(current.getCash().add(transaction.getCash()));
+                break;
+            case WITHDRAWAL:
+                current.cash(current.getCash().subtract(transaction.getCash()));
+                break;
+        }
+    }
+
+    private SecurityPosition securityPosition(Security security) {
+        SecurityPosition securityPosition = current.getSecurityPosition(security);
+        if (securityPosition == null) {
+            securityPosition = new SecurityPosition()
+                .security(security)
+                .quantity(BigDecimal.ZERO);
+            current.addSecurityPosition(securityPosition);
+        }
+        return securityPosition;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Price store reading the prices from a file mapped in memory. Nothing is loaded at opening, only the pages of the
+ * prices looked up are read from the disk.
+ * <p>
+ * The file is in little endian and is made of a header followed by one column of prices per security.
+ * <ul>
+ *     <li>Magic number: int, {@code PRIC}</li>
+ *     <li>Version: int, currently 1</li>
+ *     <li>First day: long, epoch day of the first price of each column</li>
+ *     <li>Days: int, number of prices in each column</li>
+ *     <li>Securities: int, number of columns</li>
+ *     <li>For each column, the security symbol: short length followed by the UTF-8 bytes</li>
+ *     <li>For each column, in the same order, the daily prices in cents: long</li>
+ * </ul>
+ */
+@ThreadSafe
+public final class MappedPriceStore implements PriceStore {
+
+    private static final int MAGIC = 0x50524943; // PRIC
+    private static final int VERSION = 1;
+    /** Size of the header before the symbols */
+    private static final int PREFIX_SIZE = 24;
+
+    private final long firstEpochDay;
+    private final int days;
+    /** Prices of each security indexed by {@link Security#getId()}, null if the file has no prices for it */
+    private final LongBuffer[] columns;
+
+    private MappedPriceStore(long firstEpochDay, int days, LongBuffer[] columns) {
+        this.firstEpochDay = firstEpochDay;
+        this.days = days;
+        this.columns = columns;
+    }
+
+    /**
+     * Map a price file in memory.
+     *
+     * @param file file written by {@link #write(Path, PriceStore)}
+     * @return the store reading from this file
+     * @throws IOException if the file can't be read or isn't a price file
+     */
+    @Nonnull
+    public static MappedPriceStore open(@Nonnull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer prefix = ByteBuffer.allocate(PREFIX_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (prefix.hasRemaining()) {
+                if (channel.read(prefix) < 0) {
+                    break;
+                }
+            }
+            prefix.flip();
+            if (prefix.remaining() < PREFIX_SIZE || prefix.getInt() != MAGIC) {
+                throw new IOException(file + " is not a price file");
+            }
+            int version = prefix.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported price file version " + version + " in " + file);
+            }
+            long firstEpochDay = prefix.getLong();
+            int days = prefix.getInt();
+            int securityCount = prefix.getInt();
+            if (days < 0 || securityCount < 0) {
+                throw new IOException(file + " is corrupted");
+            }
+
+            // The prices are at the end of the file, so the symbols are what remains before them
+            long columnSize = (long) days * Long.BYTES;
+            long headerSize = channel.size() - columnSize * securityCount;
+            if (headerSize < PREFIX_SIZE + (long) Short.BYTES * securityCount || headerSize > Integer.MAX_VALUE) {
+                throw new IOException(file + " is truncated");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerSize)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .position(PREFIX_SIZE);
+            String[] symbols = new String[securityCount];
+            try {
+                for (int i = 0; i < securityCount; i++) {
+                    byte[] symbol = new byte[header.getShort()];
+                    header.get(symbol);
+                    symbols[i] = new String(symbol, StandardCharsets.UTF_8);
+                }
+            } catch (BufferUnderflowException | NegativeArraySizeException e) {
+                throw new IOException(file + " is truncated", e);
+            }
+            if (header.hasRemaining()) {
+                throw new IOException(file + " is corrupted");
+            }
+            long offset = headerSize;
+
+            // The securities of the file are created if they don't exist yet
+            Security[] securities = new Security[securityCount];
+            int maxId = -1;
+            for (int i = 0; i < securityCount; i++) {
+                securities[i] = Security.of(symbols[i]);
+                maxId = Math.max(maxId, securities[i].getId());
+            }
+            // The columns are sliced from as few mappings as possible, a mapping can't exceed 2GB
+            int columnsPerRegion = (int) Math.max(1, Math.min(securityCount, Integer.MAX_VALUE / Math.max(columnSize, 1)));
+            LongBuffer[] columns = new LongBuffer[maxId + 1];
+            for (int first = 0; first < securityCount; first += columnsPerRegion) {
+                int regionColumns = Math.min(columnsPerRegion, securityCount - first);
+                ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, offset, columnSize * regionColumns);
+                for (int i = 0; i < regionColumns; i++) {
+                    columns[securities[first + i].getId()] = region.slice((int) (columnSize * i), (int) columnSize)
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .asLongBuffer();
+                }
+                offset += columnSize * regionColumns;
+            }
+            return new MappedPriceStore(firstEpochDay, days, columns);
+        }
+    }
+
+    /**
+     * Write all the prices of a store in a file that can then be mapped by {@link #open(Path)}. Only the securities
+     * having a price on the first day of the store are written. The file is written next to the target and then moved
+     * in place, so the target is never left half written.
+     *
+     * @param file file to write, replaced if it exists
+     * @param source store containing the prices to write
+     * @throws IOException if the file can't be written
+     * @throws IllegalArgumentException if a symbol is longer than 32767 bytes in UTF-8
+     */
+    public static void write(@Nonnull Path file, @Nonnull PriceStore source) throws IOException {
+        long firstEpochDay = source.getFirstDay().toEpochDay();
+        int days = (int) (source.getLastDay().toEpochDay() - firstEpochDay + 1);
+        List<Security> securities = securitiesOf(source, firstEpochDay);
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            write(temporary, source, firstEpochDay, days, securities);
+            try {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * The securities of the registry the store has prices for. Securities are interned by other means (an import for
+     * instance), so the registry may have securities the store knows nothing about.
+     */
+    private static List<Security> securitiesOf(PriceStore source, long firstEpochDay) {
+        List<Security> securities = new ArrayList<>();
+        for (int id = 0, count = Security.count(); id < count; id++) {
+            Security security = Security.byId(id);
+            try {
+                source.getPrice(firstEpochDay, security);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (security.getSymbol().getBytes(StandardCharsets.UTF_8).length > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Symbol of " + Short.MAX_VALUE + " bytes at most expected: " + security.getSymbol());
+            }
+            securities.add(security);
+        }
+        return securities;
+    }
+
+    private static void write(Path file, PriceStore source, long firstEpochDay, int days, List<Security> securities) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(firstEpochDay)
+                .putInt(days)
+                .putInt(securities.size());
+            for (Security security : securities) {
+                byte[] symbol = security.getSymbol().getBytes(StandardCharsets.UTF_8);
+                if (buffer.remaining() < Short.BYTES + symbol.length) {
+                    flush(channel, buffer);
+                }
+                buffer.putShort((short) symbol.length).put(symbol);
+            }
+            for (Security security : securities) {
+                for (int day = 0; day < days; day++) {
+                    if (buffer.remaining() < Long.BYTES) {
+                        flush(channel, buffer);
+                    }
+                    buffer.putLong(source.getPrice(firstEpochDay + day, security));
+                }
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public long getPrice(long epochDay, @Nonnull Security security) {
+        LongBuffer column = security.getId() < columns.length ? columns[security.getId()] : null;
+        long index = epochDay - firstEpochDay;
+        if (column == null || index < 0 || index >= days) {
+            throw new IllegalArgumentException("No price for " + security + " on " + LocalDate.ofEpochDay(epochDay));
+        }
+        return column.get((int) index);
+    }
+
+    @Nonnull
+    @Override
+    public LocalDate getFirstDay() {
+        return LocalDate.ofEpochDay(firstEpochDay);
+    }
+
+    @Nonnull
+    @Override
+    public LocalDate getLastDay() {
+        return LocalDate.ofEpochDay(firstEpochDay + days - 1);
+    }
+}
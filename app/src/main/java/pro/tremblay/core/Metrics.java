@@ -0,0 +1,294 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the return on investment calculations: the latency of each {@link Phase}, the number of transactions
+ * processed and how often prices were already resolved.
+ * <p>
+ * They are disabled by default, in which case recording costs a volatile read. They are enabled with the
+ * {@code METRICS_ENABLED} preference, at startup or when put later, by {@link #setEnabled(boolean)} or through JMX.
+ * The MBeans are registered automatically when enabled by the preference. Otherwise, {@link #registerMBeans()} needs to be called to be able to
+ * enable them through JMX.
+ */
+@ThreadSafe
+public final class Metrics {
+
+    /** JMX name of the main MBean, each phase has a {@code phase} key added to it */
+    public static final String OBJECT_NAME = "pro.tremblay.core:type=Metrics";
+
+    /** Steps of a return on investment calculation */
+    public enum Phase {
+        /** Revert the transactions of the year from the current position */
+        REWIND,
+        /** Get a price from the {@link PriceService}, once per security and date for a batch of calculations */
+        PRICE_LOOKUP,
+        /** Value the initial and current positions and calculate the return, including the price lookups */
+        VALUATION,
+        /** Whole calculation */
+        TOTAL
+    }
+
+    private static volatile boolean enabled = Preferences.preferences().getBoolean("METRICS_ENABLED");
+
+    private static final Map<Phase, Histogram> PHASES = new EnumMap<>(Phase.class);
+    private static final LongAdder CALLS = new LongAdder();
+    private static final LongAdder TRANSACTIONS = new LongAdder();
+    private static final Histogram TRANSACTIONS_PER_CALL = new Histogram();
+    private static final LongAdder PRICE_HITS = new LongAdder();
+    private static final LongAdder PRICE_MISSES = new LongAdder();
+
+    private static boolean registered;
+
+    static {
+        for (Phase phase : Phase.values()) {
+            PHASES.put(phase, new Histogram());
+        }
+        if (enabled) {
+            registerMBeans();
+        }
+        Preferences.preferences().addListener((key, value) -> {
+            if (key.equals("METRICS_ENABLED")) {
+                boolean enable = Boolean.parseBoolean(value);
+                if (enable) {
+                    registerMBeans();
+                }
+                setEnabled(enable);
+            }
+        });
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * Start timing a phase.
+     *
+     * @return the start time to give to {@link #record(Phase, long)}, 0 if metrics are disabled
+     */
+    static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the duration of a phase.
+     *
+     * @param phase the phase
+     * @param start value returned by {@link #start()} when the phase started
+     */
+    static void record(@Nonnull Phase phase, long start) {
+        if (start != 0) {
+            PHASES.get(phase).record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Record a completed calculation.
+     *
+     * @param transactions number of transactions given to the calculation
+     */
+    static void recordCall(long transactions) {
+        if (enabled) {
+            CALLS.increment();
+            TRANSACTIONS.add(transactions);
+            TRANSACTIONS_PER_CALL.record(transactions);
+        }
+    }
+
+    static void recordPriceHit() {
+        if (enabled) {
+            PRICE_HITS.increment();
+        }
+    }
+
+    static void recordPriceMiss() {
+        if (enabled) {
+            PRICE_MISSES.increment();
+        }
+    }
+
+    /**
+     * @param phase the phase
+     * @return durations of the phase in nanoseconds
+     */
+    @Nonnull
+    public static Histogram getLatency(@Nonnull Phase phase) {
+        return PHASES.get(phase);
+    }
+
+    public static long getCalls() {
+        return CALLS.sum();
+    }
+
+    public static long getTransactions() {
+        return TRANSACTIONS.sum();
+    }
+
+    @Nonnull
+    public static Histogram getTransactionsPerCall() {
+        return TRANSACTIONS_PER_CALL;
+    }
+
+    public static long getPriceHits() {
+        return PRICE_HITS.sum();
+    }
+
+    public static long getPriceMisses() {
+        return PRICE_MISSES.sum();
+    }
+
+    /**
+     * Forget everything recorded until now.
+     */
+    public static void reset() {
+        PHASES.values().forEach(Histogram::reset);
+        CALLS.reset();
+        TRANSACTIONS.reset();
+        TRANSACTIONS_PER_CALL.reset();
+        PRICE_HITS.reset();
+        PRICE_MISSES.reset();
+    }
+
+    /**
+     * Register the MBeans in the platform MBean server. Does nothing if they are already registered.
+     *
+     * @throws IllegalStateException if the registration fails
+     */
+    public static synchronized void registerMBeans() {
+        if (registered) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new MetricsBean(), new ObjectName(OBJECT_NAME));
+            for (Phase phase : Phase.values()) {
+                server.registerMBean(new PhaseMetricsBean(PHASES.get(phase)), new ObjectName(OBJECT_NAME + ",phase=" + phase));
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register the metrics MBeans", e);
+        }
+        registered = true;
+    }
+
+    private static final class MetricsBean implements MetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            Metrics.setEnabled(enabled);
+        }
+
+        @Override
+        public long getCalls() {
+            return Metrics.getCalls();
+        }
+
+        @Override
+        public long getTransactions() {
+            return Metrics.getTransactions();
+        }
+
+        @Override
+        public long getTransactionsPerCallMedian() {
+            return TRANSACTIONS_PER_CALL.getValueAtPercentile(50);
+        }
+
+        @Override
+        public long getTransactionsPerCallMax() {
+            return TRANSACTIONS_PER_CALL.getMax();
+        }
+
+        @Override
+        public long getPriceHits() {
+            return Metrics.getPriceHits();
+        }
+
+        @Override
+        public long getPriceMisses() {
+            return Metrics.getPriceMisses();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+
+    private static final class PhaseMetricsBean implements PhaseMetricsMXBean {
+
+        private final Histogram histogram;
+
+        PhaseMetricsBean(Histogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        @Override
+        public double getMean() {
+            return histogram.getMean();
+        }
+
+        @Override
+        public long getMax() {
+            return histogram.getMax();
+        }
+
+        @Override
+        public long get50thPercentile() {
+            return histogram.getValueAtPercentile(50);
+        }
+
+        @Override
+        public long get90thPercentile() {
+            return histogram.getValueAtPercentile(90);
+        }
+
+        @Override
+        public long get99thPercentile() {
+            return histogram.getValueAtPercentile(99);
+        }
+
+        @Override
+        public long get999thPercentile() {
+            return histogram.getValueAtPercentile(99.9);
+        }
+    }
+
+    private Metrics() {}
+}
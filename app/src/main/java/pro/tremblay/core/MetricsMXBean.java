@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+/**
+ * Management interface of {@link Metrics}, registered as {@value Metrics#OBJECT_NAME}.
+ */
+public interface MetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /** @return number of return on investment calculations */
+    long getCalls();
+
+    /** @return number of transactions given to all the calculations */
+    long getTransactions();
+
+    long getTransactionsPerCallMedian();
+
+    long getTransactionsPerCallMax();
+
+    /** @return number of prices found in the prices already resolved for the day */
+    long getPriceHits();
+
+    /** @return number of prices that had to be asked to the {@link PriceService} */
+    long getPriceMisses();
+
+    /** Forget everything recorded until now */
+    void reset();
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Reverts transactions once to know the position at the beginning of many periods ending at the latest today. The
+ * days the periods start, or end, are boundaries splitting the time until today in consecutive buckets. Each
+ * transaction is reverted in the bucket it falls in and the rewind since a boundary is the sum of the buckets after
+ * it. So the cost of reverting the transactions is the same whatever the number of periods.
+ * <p>
+ * As for {@link PositionRewind}, a transaction after today prevents every other transaction from being reverted.
+ */
+@NotThreadSafe
+final class MultiPeriodRewind {
+
+    private final LocalDate today;
+    /** Sorted days starting each bucket */
+    private final long[] boundaries;
+    /** Transactions reverted between each boundary and the next one, or today for the last one */
+    private final PositionRewind[] buckets;
+    private boolean transactionAfterToday;
+
+    /**
+     * @param today last day of all periods
+     * @param boundaries days where we want to know the position at the beginning of the day, none after today
+     */
+    MultiPeriodRewind(@Nonnull LocalDate today, @Nonnull LocalDate... boundaries) {
+        this.today = today;
+        this.boundaries = Arrays.stream(boundaries)
+            .mapToLong(LocalDate::toEpochDay)
+            .sorted()
+            .distinct()
+            .toArray();
+        if (this.boundaries.length == 0 || this.boundaries[this.boundaries.length - 1] > today.toEpochDay()) {
+            throw new IllegalArgumentException("Boundaries must be between the first day and today: " + Arrays.toString(boundaries));
+        }
+        this.buckets = new PositionRewind[this.boundaries.length];
+        for (int i = 0; i < buckets.length; i++) {
+            LocalDate end = i == buckets.length - 1 ? today : LocalDate.ofEpochDay(this.boundaries[i + 1] - 1);
+            buckets[i] = new PositionRewind(LocalDate.ofEpochDay(this.boundaries[i]), end);
+        }
+    }
+
+    /**
+     * Revert a transaction in the bucket it falls in.
+     *
+     * @param transaction the transaction
+     */
+    void revert(@Nonnull Transaction transaction) {
+        long epochDay = transaction.getDate().toEpochDay();
+        if (epochDay > today.toEpochDay()) {
+            transactionAfterToday = true;
+            return;
+        }
+        int index = Arrays.binarySearch(boundaries, epochDay);
+        if (index < 0) {
+            // Before the boundary where it would be inserted
+            index = -index - 2;
+            if (index < 0) {
+                return;
+            }
+        }
+        buckets[index].revert(transaction);
+    }
+
+    /**
+     * Transactions to revert from the current position to get the position at the beginning of a day.
+     *
+     * @param from one of the boundaries, or the day after today to revert nothing
+     * @return a new rewind of the transactions from this day until today
+     */
+    @Nonnull
+    PositionRewind since(@Nonnull LocalDate from) {
+        return between(from, today);
+    }
+
+    /**
+     * Transactions to revert from the position at the end of a day to get the position at the beginning of another one.
+     *
+     * @param from one of the boundaries
+     * @param to today or the day before one of the boundaries
+     * @return a new rewind of the transactions from the first day to the last one
+     */
+    @Nonnull
+    PositionRewind between(@Nonnull LocalDate from, @Nonnull LocalDate to) {
+        PositionRewind rewind = new PositionRewind(from, to);
+        if (transactionAfterToday || from.isAfter(to)) {
+            return rewind;
+        }
+        int first = boundaryIndex(from.toEpochDay());
+        int last = to.equals(today) ? buckets.length - 1 : boundaryIndex(to.toEpochDay() + 1) - 1;
+        for (int i = first; i <= last; i++) {
+            rewind.merge(buckets[i]);
+        }
+        return rewind;
+    }
+
+    private int boundaryIndex(long epochDay) {
+        int index = Arrays.binarySearch(boundaries, epochDay);
+        if (index < 0) {
+            throw new IllegalArgumentException(LocalDate.ofEpochDay(epochDay) + " is not a boundary");
+        }
+        return index;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Collection;
+
+/**
+ * The current position of an account with all the transactions that happened on it.
+ */
+@NotThreadSafe
+public class Portfolio {
+
+    private Position position;
+    private Collection<Transaction> transactions;
+
+    public Position getPosition() {
+        return position;
+    }
+
+    public Portfolio position(Position position) {
+        this.position = position;
+        return this;
+    }
+
+    public Collection<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    public Portfolio transactions(Collection<Transaction> transactions) {
+        this.transactions = transactions;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "Portfolio{" +
+            "position=" + position +
+            ", transactions=" + transactions +
+            '}';
+    }
+}
@@ -15,13 +15,23 @@
  */
 package pro.tremblay.core;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.math.BigDecimal;
+import java.util.AbstractCollection;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * All positions (cash and security) of a user. There is only one cash position since we are trading in only one
  * currency.
+ * <p>
+ * {@link #getSecurityPosition(Security)} uses an index kept up to date by the changes made through
+ * {@link #getSecurityPositions()}. Changes made directly to the collection given to
+ * {@link #securityPositions(Collection)} aren't seen.
  */
 @NotThreadSafe
 public class Position {
@@ -29,6 +39,9 @@ public class Position {
     private BigDecimal cash;
     private Collection<SecurityPosition> securityPositions;
 
+    /** First security position of each security, null until needed or after a change it can't follow */
+    private Map<Security, SecurityPosition> index;
+
     public BigDecimal getCash() {
         return cash;
     }
@@ -43,10 +56,44 @@ public class Position {
     }
 
     public Position securityPositions(Collection<SecurityPosition> securityPositions) {
-        this.securityPositions = securityPositions;
+        this.securityPositions = securityPositions == null ? null : new IndexedSecurityPositions(securityPositions);
+        this.index = null;
         return this;
     }
 
+    /**
+     * Add a security position and index it.
+     *
+     * @param securityPosition the security position to add
+     * @return this position
+     */
+    public Position addSecurityPosition(@Nonnull SecurityPosition securityPosition) {
+        securityPositions.add(securityPosition);
+        return this;
+    }
+
+    /**
+     * Find the position of a security. If the security appears more than once, the first one is returned.
+     *
+     * @param security the security
+     * @return the position of the security or null if there is none
+     */
+    @Nullable
+    public SecurityPosition getSecurityPosition(@Nonnull Security security) {
+        if (index == null) {
+            buildIndex();
+        }
+        return index.get(security);
+    }
+
+    private void buildIndex() {
+        Map<Security, SecurityPosition> newIndex = new HashMap<>();
+        for (SecurityPosition securityPosition : securityPositions) {
+            newIndex.putIfAbsent(securityPosition.getSecurity(), securityPosition);
+        }
+        index = newIndex;
+    }
+
     @Override
     public String toString() {
         return "Position{" +
@@ -54,4 +101,72 @@ public class Position {
             ", securityPositions=" + securityPositions +
             '}';
     }
+
+    /**
+     * View of the security positions updating the index when one is added and dropping it when one is removed.
+     */
+    private final class IndexedSecurityPositions extends AbstractCollection<SecurityPosition> {
+
+        private final Collection<SecurityPosition> delegate;
+
+        IndexedSecurityPositions(Collection<SecurityPosition> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int size() {
+            return delegate.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return delegate.contains(o);
+        }
+
+        @Override
+        public boolean add(SecurityPosition securityPosition) {
+            boolean added = delegate.add(securityPosition);
+            if (added && index != null) {
+                index.putIfAbsent(securityPosition.getSecurity(), securityPosition);
+            }
+            return added;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            boolean removed = delegate.remove(o);
+            if (removed) {
+                index = null;
+            }
+            return removed;
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+            index = null;
+        }
+
+        @Override
+        public Iterator<SecurityPosition> iterator() {
+            Iterator<SecurityPosition> iterator = delegate.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public SecurityPosition next() {
+                    return iterator.next();
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                    index = null;
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,490 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accumulates what needs to be reverted from a position to know what it was at the beginning of a period. The
+ * transactions can be given in any order. Only the ones in the period are kept and they are aggregated in a net
+ * cash amount and a net quantity per security.
+ * <p>
+ * Since the period ends today, a transaction after the end of the period is unexpected. Historically, having one
+ * prevented every other transaction from being reverted. This behavior is kept.
+ */
+@NotThreadSafe
+public final class PositionRewind {
+
+    /** Initial number of traded securities that can be stored before growing, a power of two */
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final long startEpochDay;
+    private final long endEpochDay;
+
+    /** Net cash to add as a {@link FixedDecimal} */
+    private long cash;
+
+    // Only the traded securities are stored, so the cost doesn't depend on the number of securities in existence. Each
+    // one has a slot, in the order they were first traded, and an open addressing table finds the slot of a security.
+
+    /** Number of traded securities */
+    private int slotCount;
+    /** Security of each slot */
+    private Security[] slotSecurities = new Security[INITIAL_CAPACITY];
+    /** Net quantity to add to the security of each slot as a {@link FixedDecimal} */
+    private long[] quantities = new long[INITIAL_CAPACITY];
+    /** Slot + 1 of the securities hashed by id, 0 if empty. Twice the capacity of the slots to keep probing short */
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+
+    /** Net cash to add once a value didn't fit in a {@link FixedDecimal}, null before that */
+    private BigDecimal bigCash;
+    /** Net quantity to add to the security of each slot once a value didn't fit in a {@link FixedDecimal}, null before that */
+    private BigDecimal[] bigQuantities;
+
+    private boolean transactionAfterEnd;
+
+    /** Number of transactions given to this rewind, reverted or not */
+    private long transactionCount;
+    /** Number of transactions in the period */
+    private long revertedCount;
+
+    /**
+     * @param start first day of the period, transactions before it are ignored
+     * @param end last day of the period
+     */
+    public PositionRewind(@Nonnull LocalDate start, @Nonnull LocalDate end) {
+        this.startEpochDay = start.toEpochDay();
+        this.endEpochDay = end.toEpochDay();
+    }
+
+    /**
+     * Revert a transaction if it happened during the period.
+     *
+     * @param transaction transaction to revert
+     */
+    public void revert(@Nonnull Transaction transaction) {
+        revert(transaction.getType(), transaction.getDate(), transaction.getCash(), transaction.getSecurity(), transaction.getQuantity());
+    }
+
+    /**
+     * Revert a transaction if it happened during the period.
+     *
+     * @param transaction transaction to revert
+     */
+    public void revert(@Nonnull ImmutableTransaction transaction) {
+        revert(transaction.type(), transaction.date(), transaction.cash(), transaction.security(), transaction.quantity());
+    }
+
+    private void revert(TransactionType type, LocalDate date, BigDecimal transactionCash, Security security, BigDecimal transactionQuantity) {
+        transactionCount++;
+        if (!inPeriod(date.toEpochDay())) {
+            return;
+        }
+        revertedCount++;
+        if (bigCash == null) {
+            long fixedCash = FixedDecimal.of(transactionCash);
+            long fixedQuantity = type.hasQuantity() ? FixedDecimal.of(transactionQuantity) : 0;
+            if (revertFixed(type, fixedCash, security, fixedQuantity)) {
+                return;
+            }
+        }
+        revertBig(type, transactionCash, security, transactionQuantity);
+    }
+
+    /**
+     * Revert all the transactions of a batch that happened during the period.
+     *
+     * @param transactions transactions to revert
+     */
+    public void revert(@Nonnull TransactionBatch transactions) {
+        revert(transactions, 0, transactions.size());
+    }
+
+    /**
+     * Revert the transactions of a part of a batch that happened during the period.
+     *
+     * @param transactions transactions to revert
+     * @param from index of the first transaction to revert
+     * @param to index after the last transaction to revert
+     */
+    public void revert(@Nonnull TransactionBatch transactions, int from, int to) {
+        if (from < 0 || to > transactions.size() || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for size " + transactions.size());
+        }
+        transactionCount += to - from;
+        for (int i = from; i < to; i++) {
+            if (!inPeriod(transactions.getEpochDay(i))) {
+                continue;
+            }
+            revertedCount++;
+            TransactionType type = transactions.getType(i);
+            Security security = transactions.getSecurity(i);
+            long transactionCash = transactions.getCash(i);
+            long transactionQuantity = transactions.getQuantity(i);
+            if (bigCash == null && revertFixed(type, transactionCash, security, transactionQuantity)) {
+                continue;
+            }
+            revertBig(type, FixedDecimal.toBigDecimal(transactionCash), security, FixedDecimal.toBigDecimal(transactionQuantity));
+        }
+    }
+
+    /**
+     * Revert the transactions of a part of an encoded portfolio that happened during the period. They are read from
+     * the buffer of the portfolio without creating any {@link Transaction}.
+     *
+     * @param transactions transactions to revert
+     * @param from index of the first transaction to revert
+     * @param to index after the last transaction to revert
+     */
+    public void revert(@Nonnull EncodedPortfolio transactions, int from, int to) {
+        if (from < 0 || to > transactions.getTransactionCount() || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for size " + transactions.getTransactionCount());
+        }
+        transactionCount += to - from;
+        for (int i = from; i < to; i++) {
+            if (!inPeriod(transactions.getEpochDay(i))) {
+                continue;
+            }
+            revertedCount++;
+            TransactionType type = transactions.getType(i);
+            Security security = transactions.getSecurity(i);
+            long transactionCash = transactions.getCash(i);
+            long transactionQuantity = transactions.getQuantity(i);
+            if (bigCash == null && revertFixed(type, transactionCash, security, transactionQuantity)) {
+                continue;
+            }
+            revertBig(type, FixedDecimal.toBigDecimal(transactionCash), security, FixedDecimal.toBigDecimal(transactionQuantity));
+        }
+    }
+
+    private boolean inPeriod(long epochDay) {
+        if (epochDay > endEpochDay) {
+            transactionAfterEnd = true;
+            return false;
+        }
+        return epochDay >= startEpochDay;
+    }
+
+    private boolean revertFixed(TransactionType type, long transactionCash, Security security, long transactionQuantity) {
+        long newCash;
+        switch (type) {
+            case BUY:
+            case WITHDRAWAL:
+                newCash = FixedDecimal.add(cash, transactionCash);
+                break;
+            case SELL:
+            case DEPOSIT:
+                newCash = FixedDecimal.subtract(cash, transactionCash);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown transaction type " + type);
+        }
+        if (newCash == FixedDecimal.OVERFLOW) {
+            switchToBigDecimal();
+            return false;
+        }
+        if (type.hasQuantity()) {
+            int slot = slot(security);
+            long newQuantity = type == TransactionType.BUY
+                ? FixedDecimal.subtract(quantities[slot], transactionQuantity)
+                : FixedDecimal.add(quantities[slot], transactionQuantity);
+            if (newQuantity == FixedDecimal.OVERFLOW) {
+                switchToBigDecimal();
+                return false;
+            }
+            quantities[slot] = newQuantity;
+        }
+        cash = newCash;
+        return true;
+    }
+
+    private void switchToBigDecimal() {
+        bigCash = FixedDecimal.toBigDecimal(cash);
+        bigQuantities = new BigDecimal[slotSecurities.length];
+        for (int i = 0; i < slotCount; i++) {
+            bigQuantities[i] = FixedDecimal.toBigDecimal(quantities[i]);
+        }
+    }
+
+    private void revertBig(TransactionType type, BigDecimal transactionCash, Security security, BigDecimal transactionQuantity) {
+        switch (type) {
+            case BUY:
+                bigCash = bigCash.add(transactionCash);
+                addQuantity(security, transactionQuantity.negate());
+                break;
+            case SELL:
+                bigCash = bigCash.subtract(transactionCash);
+                addQuantity(security, transactionQuantity);
+                break;
+            case DEPOSIT:
+                bigCash = bigCash.subtract(transactionCash);
+                break;
+            case WITHDRAWAL:
+                bigCash = bigCash.add(transactionCash);
+                break;
+        }
+    }
+
+    private void addQuantity(Security security, BigDecimal quantity) {
+        int slot = slot(security);
+        BigDecimal current = bigQuantities[slot];
+        bigQuantities[slot] = current == null ? quantity : current.add(quantity);
+    }
+
+    /**
+     * Find the slot of a security, or give it a new one.
+     */
+    private int slot(Security security) {
+        int mask = table.length - 1;
+        for (int i = hash(security) & mask; ; i = (i + 1) & mask) {
+            int slot = table[i] - 1;
+            if (slot < 0) {
+                break;
+            }
+            if (slotSecurities[slot] == security) {
+                return slot;
+            }
+        }
+        if (slotCount == slotSecurities.length) {
+            grow();
+        }
+        int slot = slotCount++;
+        slotSecurities[slot] = security;
+        insert(security, slot);
+        return slot;
+    }
+
+    /**
+     * Find the slot of a security.
+     *
+     * @return the slot or -1 if the security wasn't traded
+     */
+    private int findSlot(Security security) {
+        int mask = table.length - 1;
+        for (int i = hash(security) & mask; ; i = (i + 1) & mask) {
+            int slot = table[i] - 1;
+            if (slot < 0 || slotSecurities[slot] == security) {
+                return slot;
+            }
+        }
+    }
+
+    private void insert(Security security, int slot) {
+        int mask = table.length - 1;
+        int i = hash(security) & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot + 1;
+    }
+
+    private void grow() {
+        int capacity = slotSecurities.length * 2;
+        slotSecurities = Arrays.copyOf(slotSecurities, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        if (bigQuantities != null) {
+            bigQuantities = Arrays.copyOf(bigQuantities, capacity);
+        }
+        table = new int[capacity * 2];
+        for (int slot = 0; slot < slotCount; slot++) {
+            insert(slotSecurities[slot], slot);
+        }
+    }
+
+    private static int hash(Security security) {
+        // Ids are consecutive, spread them so neighbours don't cluster
+        return security.getId() * 0x9E3779B9;
+    }
+
+    /**
+     * Add what another rewind reverted to this one. It allows to revert parts of the transactions separately, or
+     * consecutive periods separately, and then combine them. The period of the other rewind isn't checked.
+     *
+     * @param other rewind to add to this one, it isn't modified
+     */
+    public void merge(@Nonnull PositionRewind other) {
+        transactionCount += other.transactionCount;
+        revertedCount += other.revertedCount;
+        transactionAfterEnd |= other.transactionAfterEnd;
+        if (bigCash == null && other.bigCash == null && mergeFixed(other)) {
+            return;
+        }
+        if (bigCash == null) {
+            switchToBigDecimal();
+        }
+        bigCash = bigCash.add(other.bigCash == null ? FixedDecimal.toBigDecimal(other.cash) : other.bigCash);
+        for (int i = 0; i < other.slotCount; i++) {
+            BigDecimal quantity = other.bigQuantities == null ? FixedDecimal.toBigDecimal(other.quantities[i]) : other.bigQuantities[i];
+            addQuantity(other.slotSecurities[i], quantity);
+        }
+    }
+
+    private boolean mergeFixed(PositionRewind other) {
+        // Check everything fits before modifying anything, so we can still fall back to BigDecimal
+        long newCash = FixedDecimal.add(cash, other.cash);
+        if (newCash == FixedDecimal.OVERFLOW) {
+            return false;
+        }
+        for (int i = 0; i < other.slotCount; i++) {
+            int slot = findSlot(other.slotSecurities[i]);
+            if (slot >= 0 && FixedDecimal.add(quantities[slot], other.quantities[i]) == FixedDecimal.OVERFLOW) {
+                return false;
+            }
+        }
+        cash = newCash;
+        for (int i = 0; i < other.slotCount; i++) {
+            int slot = slot(other.slotSecurities[i]);
+            quantities[slot] += other.quantities[i];
+        }
+        return true;
+    }
+
+    /**
+     * Apply the reverted values to a position to get the position at the beginning of the period.
+     *
+     * @param current position at the end of the period, it isn't modified
+     * @return a new position at the beginning of the period
+     */
+    @Nonnull
+    Position applyTo(@Nonnull Position current) {
+        List<SecurityPosition> securityPositions = new ArrayList<>(current.getSecurityPositions().size());
+        boolean[] applied = new boolean[slotCount];
+        for (SecurityPosition securityPosition : current.getSecurityPositions()) {
+            Security security = securityPosition.getSecurity();
+            BigDecimal quantity = securityPosition.getQuantity();
+            int slot = transactionAfterEnd ? -1 : findSlot(security);
+            if (slot >= 0 && !applied[slot]) {
+                quantity = quantity.add(slotQuantity(slot));
+                applied[slot] = true;
+            }
+            securityPositions.add(new SecurityPosition().security(security).quantity(quantity));
+        }
+        for (int slot = 0; slot < getTradedCount(); slot++) {
+            if (!applied[slot]) {
+                securityPositions.add(new SecurityPosition().security(slotSecurities[slot]).quantity(slotQuantity(slot)));
+            }
+        }
+        return new Position()
+            .cash(current.getCash().add(getCash()))
+            .securityPositions(securityPositions);
+    }
+
+    /**
+     * Tells if all the reverted values fit in a {@link FixedDecimal}. In that case, {@link #getFixedCash()} and
+     * {@link #getFixedQuantity(Security)} can be used instead of their {@code BigDecimal} counterparts.
+     *
+     * @return if the fixed decimal values are available
+     */
+    public boolean isFixed() {
+        return bigCash == null;
+    }
+
+    /**
+     * Tells if a security was traded during the period. If not, its quantity at the beginning of the period is the
+     * current one.
+     *
+     * @param security the security
+     * @return if some quantity of the security needs to be reverted
+     */
+    public boolean isTraded(@Nonnull Security security) {
+        return !transactionAfterEnd && findSlot(security) >= 0;
+    }
+
+    /**
+     * Number of securities traded during the period. They can be iterated with {@link #getTradedSecurity(int)}.
+     *
+     * @return number of securities with some quantity to revert
+     */
+    public int getTradedCount() {
+        return transactionAfterEnd ? 0 : slotCount;
+    }
+
+    /**
+     * @param index index of the traded security, from 0 to {@link #getTradedCount()} excluded
+     * @return the traded security, in the order they were first traded
+     */
+    @Nonnull
+    public Security getTradedSecurity(int index) {
+        if (index < 0 || index >= getTradedCount()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + getTradedCount());
+        }
+        return slotSecurities[index];
+    }
+
+    /**
+     * Cash to add to the current cash to get the cash at the beginning of the period.
+     *
+     * @return net cash to revert
+     */
+    @Nonnull
+    public BigDecimal getCash() {
+        if (transactionAfterEnd) {
+            return BigDecimal.ZERO;
+        }
+        return bigCash == null ? FixedDecimal.toBigDecimal(cash) : bigCash;
+    }
+
+    /**
+     * Same as {@link #getCash()} as a {@link FixedDecimal}. Only valid if {@link #isFixed()}.
+     *
+     * @return net cash to revert
+     */
+    public long getFixedCash() {
+        return transactionAfterEnd ? 0 : cash;
+    }
+
+    /**
+     * Quantity to add to the current quantity of a security to get its quantity at the beginning of the period.
+     *
+     * @param security the security
+     * @return net quantity to revert or null if the security wasn't traded during the period
+     */
+    @Nullable
+    public BigDecimal getQuantity(@Nonnull Security security) {
+        int slot = transactionAfterEnd ? -1 : findSlot(security);
+        return slot < 0 ? null : slotQuantity(slot);
+    }
+
+    private BigDecimal slotQuantity(int slot) {
+        return bigQuantities == null ? FixedDecimal.toBigDecimal(quantities[slot]) : bigQuantities[slot];
+    }
+
+    /**
+     * Same as {@link #getQuantity(Security)} as a {@link FixedDecimal}. Only valid if {@link #isFixed()}.
+     *
+     * @param security the security
+     * @return net quantity to revert, 0 if the security wasn't traded during the period
+     */
+    public long getFixedQuantity(@Nonnull Security security) {
+        int slot = transactionAfterEnd ? -1 : findSlot(security);
+        return slot < 0 ? 0 : quantities[slot];
+    }
+
+    long transactionCount() {
+        return transactionCount;
+    }
+
+    long revertedCount() {
+        return revertedCount;
+    }
+}
@@ -15,43 +15,205 @@
  */
 package pro.tremblay.core;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Global configuration of the application.
+ * Global configuration of the application. A preference is put explicitly or, if not, read from the system
+ * properties.
+ * <p>
+ * Preferences are read on every calculation, so reads don't lock nor allocate. The values are kept in an immutable
+ * snapshot, already parsed, replaced as a whole each time a value changes. The system properties are folded in the
+ * snapshot when the preferences are created and on {@link #reload()}, so changing a system property afterwards has no
+ * effect until the next reload.
  */
 @ThreadSafe
 public class Preferences {
 
+    /**
+     * Notified when a preference is put or removed, or when a reload changed it.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param key the preference that changed
+         * @param value its new value, null if it was removed
+         */
+        void preferenceChanged(@Nonnull String key, @Nullable String value);
+    }
+
     private static final Preferences INSTANCE = new Preferences();
 
     public static Preferences preferences() {
         return INSTANCE;
     }
 
-    private final ConcurrentMap<String, String> preferences = new ConcurrentHashMap<>();
+    /** A preference with its value parsed once for all */
+    private static final class Value {
+        final String text;
+        final boolean isInteger;
+        final int integer;
+
+        Value(String text) {
+            this.text = text;
+            int parsed = 0;
+            boolean valid = true;
+            try {
+                parsed = Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                valid = false;
+            }
+            this.isInteger = valid;
+            this.integer = parsed;
+        }
+    }
+
+    /** Preferences put explicitly, overriding the system properties. Only used by writers, holding the lock on this */
+    private final Map<String, Value> explicit = new HashMap<>();
+    /** System properties at the last reload. Only used by writers, holding the lock on this */
+    private Map<String, Value> properties = Map.of();
+
+    /** Current values, never modified once published. Writers replace it while holding the lock on this */
+    private volatile Map<String, Value> snapshot = Map.of();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private Preferences() {
+        reload();
+    }
+
+    public void put(@Nonnull String key, @Nonnull String value) {
+        synchronized (this) {
+            Value parsed = new Value(value);
+            explicit.put(key, parsed);
+            Map<String, Value> values = new HashMap<>(snapshot);
+            values.put(key, parsed);
+            snapshot = Map.copyOf(values);
+        }
+        notifyListeners(key, value);
+    }
+
+    /**
+     * Remove a preference put explicitly. The system property of the same name, if any, is used again.
+     *
+     * @param key the preference to remove
+     */
+    public void remove(@Nonnull String key) {
+        Value property;
+        synchronized (this) {
+            if (explicit.remove(key) == null) {
+                return;
+            }
+            property = properties.get(key);
+            Map<String, Value> values = new HashMap<>(snapshot);
+            if (property == null) {
+                values.remove(key);
+            } else {
+                values.put(key, property);
+            }
+            snapshot = Map.copyOf(values);
+        }
+        notifyListeners(key, property == null ? null : property.text);
+    }
+
+    /**
+     * Read the system properties again. The listeners are notified of each preference that changed, unless it was
+     * put explicitly.
+     */
+    public void reload() {
+        Map<String, String> changes = new HashMap<>();
+        synchronized (this) {
+            Map<String, Value> previous = properties;
+            Map<String, Value> current = new HashMap<>();
+            Properties system = System.getProperties();
+            for (String key : system.stringPropertyNames()) {
+                String text = system.getProperty(key);
+                if (text == null) {
+                    // Removed while we were iterating
+                    continue;
+                }
+                Value value = previous.get(key);
+                current.put(key, value != null && value.text.equals(text) ? value : new Value(text));
+            }
+            for (Map.Entry<String, Value> entry : current.entrySet()) {
+                Value value = previous.get(entry.getKey());
+                if (value == null || !value.text.equals(entry.getValue().text)) {
+                    changes.put(entry.getKey(), entry.getValue().text);
+                }
+            }
+            for (String key : previous.keySet()) {
+                if (!current.containsKey(key)) {
+                    changes.put(key, null);
+                }
+            }
+            changes.keySet().removeAll(explicit.keySet());
+
+            properties = Map.copyOf(current);
+            Map<String, Value> values = new HashMap<>(current);
+            values.putAll(explicit);
+            snapshot = Map.copyOf(values);
+        }
+        changes.forEach(this::notifyListeners);
+    }
 
-    private Preferences() {}
+    public void addListener(@Nonnull Listener listener) {
+        listeners.add(listener);
+    }
 
-    public void put(String key, String value) {
-        preferences.put(key, value);
+    public void removeListener(@Nonnull Listener listener) {
+        listeners.remove(listener);
     }
 
-    public String getString(String key) {
-        String value = preferences.get(key);
-        if (value != null) {
-            return value;
+    private void notifyListeners(String key, String value) {
+        for (Listener listener : listeners) {
+            listener.preferenceChanged(key, value);
         }
-        return System.getProperty(key);
     }
 
-    public int getInteger(String key) {
-        String value = getString(key);
+    @Nullable
+    public String getString(@Nonnull String key) {
+        Value value = snapshot.get(key);
+        return value == null ? null : value.text;
+    }
+
+    public int getInteger(@Nonnull String key) {
+        Value value = snapshot.get(key);
         if (value == null) {
             throw new IllegalArgumentException(key + " is not a known preference");
         }
-        return Integer.parseInt(value);
+        return integer(value);
+    }
+
+    /**
+     * @param key the preference
+     * @param defaultValue value if the preference isn't set
+     * @return the preference as an integer
+     */
+    public int getInteger(@Nonnull String key, int defaultValue) {
+        Value value = snapshot.get(key);
+        return value == null ? defaultValue : integer(value);
+    }
+
+    /**
+     * @param key the preference
+     * @return true if the preference is set to {@code true} ignoring case, as {@link Boolean#parseBoolean(String)}
+     */
+    public boolean getBoolean(@Nonnull String key) {
+        Value value = snapshot.get(key);
+        return value != null && Boolean.parseBoolean(value.text);
+    }
+
+    private static int integer(Value value) {
+        if (!value.isInteger) {
+            // Let it throw the usual exception
+            return Integer.parseInt(value.text);
+        }
+        return value.integer;
     }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of the generation of the random prices of a security by a {@link RandomPriceStore}. With a
+ * lazy generation, it explains why the first calculation using a security is slower.
+ */
+@Name("pro.tremblay.core.PriceGeneration")
+@Label("Price Generation")
+@Category("Reporting")
+@Description("Generation of the random prices of a security")
+final class PriceGenerationEvent extends Event {
+
+    @Label("Security")
+    String security;
+
+    @Label("Days")
+    int days;
+}
@@ -17,39 +17,67 @@ package pro.tremblay.core;
 
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Service returning security prices. This is actually a fake implementation using randomly generated prices.
+ * <p>
+ * The prices are generated lazily by default. The {@code PRICE_GENERATION} preference can change it to one of the
+ * {@link RandomPriceStore.Generation} and the {@code PRICE_SEED} preference can fix the seed to always get the same
+ * prices.
+ * <p>
+ * If the {@code PRICE_FILE} preference is set, the prices are instead read from this file, previously written by
+ * {@link #writePrices(Path)}. See {@link MappedPriceStore}.
+ * <p>
+ * Tables derived from the store (see {@link PriceTables}) give the price return between any two days and the prices
+ * at the boundaries of a period without going back to the store. They are replaced with the store.
  */
 @ThreadSafe
 public class PriceService {
 
-    private static final ConcurrentMap<String, BigDecimal> prices = new ConcurrentHashMap<>();
+    /** Number of decimals of a price */
+    public static final int PRICE_SCALE = 2;
 
-    private static final Random random = new Random();
+    private static volatile PriceTables tables = new PriceTables(initialStore());
 
-    static {
-        // Randomly generated price since the beginning of the year
-        LocalDate now = LocalDate.now();
-        for (Security security : Security.values()) {
-            LocalDate start = now.withDayOfYear(1);
-            BigDecimal price = BigDecimal.valueOf(100 + random.nextInt(200));
-            while(!start.isAfter(now)) {
-                BigDecimal tick = BigDecimal.valueOf(random.nextGaussian()).setScale(2, RoundingMode.HALF_UP);
-                prices.put(getKey(security, start), price.add(tick));
-                start = start.plusDays(1);
-            }
+    private static PriceStore initialStore() {
+        PriceStoreInitEvent event = new PriceStoreInitEvent();
+        event.begin();
+        PriceStore priceStore = createStore(event);
+        event.end();
+        if (event.shouldCommit()) {
+            event.store = priceStore.getClass().getSimpleName();
+            event.days = priceStore.getLastDay().toEpochDay() - priceStore.getFirstDay().toEpochDay() + 1;
+            event.commit();
         }
+        return priceStore;
     }
 
-    private static String getKey(Security security, LocalDate date) {
-        return date + "#" + security;
+    private static PriceStore createStore(PriceStoreInitEvent event) {
+        String file = Preferences.preferences().getString("PRICE_FILE");
+        if (file != null) {
+            event.file = file;
+            try {
+                return MappedPriceStore.open(Paths.get(file));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        // Randomly generated price since the start of the longest period, so every period can be calculated
+        String generation = Preferences.preferences().getString("PRICE_GENERATION");
+        String seed = Preferences.preferences().getString("PRICE_SEED");
+        LocalDate now = LocalDate.now();
+        RandomPriceStore.Generation strategy = generation == null ? RandomPriceStore.Generation.LAZY : RandomPriceStore.Generation.valueOf(generation);
+        event.generation = strategy.name();
+        return new RandomPriceStore(ReturnPeriod.earliestStart(now), now,
+            seed == null ? ThreadLocalRandom.current().nextLong() : Long.parseLong(seed),
+            strategy);
     }
 
     /**
@@ -63,11 +91,73 @@ public class PriceService {
      */
     @Nonnull
     public static BigDecimal getPrice(@Nonnull LocalDate date, @Nonnull Security security) {
-        BigDecimal price = prices.get(getKey(security, date));
-        if(price == null) {
-            throw new IllegalArgumentException("No price for " + security + " on " + date);
-        }
-        return price;
+        return BigDecimal.valueOf(tables.store().getPrice(date.toEpochDay(), security), PRICE_SCALE);
+    }
+
+    /**
+     * Same as {@link #getPrice(LocalDate, Security)} but returns a {@link FixedDecimal} without allocating anything.
+     *
+     * @param date date on which we want the price
+     * @param security security for which we want a price
+     * @throws IllegalArgumentException if no price is found at this date
+     * @return the price of the security at a given date
+     */
+    public static long getFixedPrice(@Nonnull LocalDate date, @Nonnull Security security) {
+        return FixedDecimal.rescale(tables.store().getPrice(date.toEpochDay(), security), PRICE_SCALE, FixedDecimal.SCALE);
+    }
+
+    /**
+     * Returns the relative change of the price of a security between two days, e.g. 0.05 when it went up by 5%. It
+     * is read from the cumulative returns of the security, so it costs the same whatever the distance between the
+     * days. It is a {@code double}, so it is meant for analytics, not for amounts.
+     *
+     * @param from day of the initial price
+     * @param to day of the final price
+     * @param security security for which we want the return
+     * @throws IllegalArgumentException if no price is found at one of the dates
+     * @return the price return of the security between the two days
+     */
+    public static double getPriceReturn(@Nonnull LocalDate from, @Nonnull LocalDate to, @Nonnull Security security) {
+        return tables.priceReturn(from.toEpochDay(), to.toEpochDay(), security);
+    }
+
+    /**
+     * @param date date on which we want the prices
+     * @return the prices of all securities at a given date, shared by all callers until the store is replaced
+     */
+    @Nonnull
+    static PriceTables.Snapshot getSnapshot(@Nonnull LocalDate date) {
+        return tables.snapshot(date);
+    }
+
+    /**
+     * @return version of the prices, changed each time the store is replaced
+     */
+    static long getPriceVersion() {
+        return tables.version();
+    }
+
+    /**
+     * Write all the current prices to a file that can then be used with the {@code PRICE_FILE} preference.
+     *
+     * @param file file to write, replaced if it exists
+     * @throws IOException if the file can't be written
+     */
+    public static void writePrices(@Nonnull Path file) throws IOException {
+        MappedPriceStore.write(file, tables.store());
+    }
+
+    /**
+     * Replace where the prices are coming from. The tables derived from the previous store are dropped.
+     *
+     * @param priceStore the new store to use
+     * @return the store used until now
+     */
+    @Nonnull
+    public static PriceStore usePriceStore(@Nonnull PriceStore priceStore) {
+        PriceTables previous = tables;
+        tables = new PriceTables(priceStore);
+        return previous.store();
     }
 
     private PriceService() {}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import java.time.LocalDate;
+
+/**
+ * Storage of the daily prices of every security. Prices are in cents, so with
+ * {@link PriceService#PRICE_SCALE} decimals, to be read without allocating anything.
+ */
+public interface PriceStore {
+
+    /**
+     * Returns the price at a given date for a security.
+     *
+     * @param epochDay day on which we want the price, as given by {@link LocalDate#toEpochDay()}
+     * @param security security for which we want a price
+     * @throws IllegalArgumentException if no price is found at this date
+     * @return the price in cents
+     */
+    long getPrice(long epochDay, @Nonnull Security security);
+
+    /**
+     * @return first day having prices
+     */
+    @Nonnull
+    LocalDate getFirstDay();
+
+    /**
+     * @return last day having prices
+     */
+    @Nonnull
+    LocalDate getLastDay();
+}
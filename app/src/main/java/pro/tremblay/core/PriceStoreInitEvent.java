@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of the creation of the price store used by the {@link PriceService} when it's first used.
+ */
+@Name("pro.tremblay.core.PriceStoreInit")
+@Label("Price Store Initialization")
+@Category("Reporting")
+@Description("Cold initialization of the prices of the PriceService")
+final class PriceStoreInitEvent extends Event {
+
+    @Label("Store")
+    String store;
+
+    @Label("File")
+    @Description("File the prices are read from, if any")
+    String file;
+
+    @Label("Generation")
+    @Description("When random prices are generated")
+    String generation;
+
+    @Label("Days")
+    long days;
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tables derived from a {@link PriceStore} so that valuing over a period costs an array read per security:
+ * <ul>
+ *     <li>the cumulative return of each security since the first day of the store, so the price return between any
+ *     two days is a division</li>
+ *     <li>a snapshot of the prices of all securities on a given day, shared by every valuation starting or ending on
+ *     that day</li>
+ * </ul>
+ * Both are filled lazily. The cumulative returns of a security are computed up to the last day of the store at that
+ * moment. When days are appended to the store later (see {@link AppendablePriceStore}), only the new days are computed.
+ */
+@ThreadSafe
+final class PriceTables {
+
+    /** Number of snapshots kept. The least recently used is dropped when a new one is needed */
+    static final int MAX_SNAPSHOTS = 64;
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    private final PriceStore store;
+    /** Different for each instance, so results derived from other tables can be told apart */
+    private final long version = VERSIONS.incrementAndGet();
+    private final long firstEpochDay;
+    /** Cumulative returns of each security indexed by {@link Security#getId()}, null until needed */
+    private volatile AtomicReferenceArray<CumulativeReturns> returns = new AtomicReferenceArray<>(0);
+    /** Snapshots by epoch day, in access order. Guarded by itself */
+    private final LinkedHashMap<Long, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Snapshot> eldest) {
+            return size() > MAX_SNAPSHOTS;
+        }
+    };
+
+    /**
+     * Ratio of the price of each day over the price on the first day of the store. The array is shared with the later
+     * versions, which only write past {@link #days}, so a version never changes once published.
+     */
+    private static final class CumulativeReturns {
+        final long firstPrice;
+        final double[] ratios;
+        final int days;
+
+        CumulativeReturns(long firstPrice, double[] ratios, int days) {
+            this.firstPrice = firstPrice;
+            this.ratios = ratios;
+            this.days = days;
+        }
+    }
+
+    PriceTables(@Nonnull PriceStore store) {
+        this.store = store;
+        this.firstEpochDay = store.getFirstDay().toEpochDay();
+    }
+
+    @Nonnull
+    PriceStore store() {
+        return store;
+    }
+
+    long version() {
+        return version;
+    }
+
+    /**
+     * Return of the price of a security between two days, e.g. 0.05 when it went up by 5%.
+     *
+     * @param fromEpochDay day of the initial price
+     * @param toEpochDay day of the final price
+     * @param security security of the prices
+     * @return the relative change of the price
+     * @throws IllegalArgumentException if one of the days has no price
+     */
+    double priceReturn(long fromEpochDay, long toEpochDay, @Nonnull Security security) {
+        CumulativeReturns securityReturns = cumulativeReturns(security, Math.max(fromEpochDay, toEpochDay));
+        return securityReturns.ratios[index(toEpochDay, security)] / securityReturns.ratios[index(fromEpochDay, security)] - 1;
+    }
+
+    private int index(long epochDay, Security security) {
+        long index = epochDay - firstEpochDay;
+        if (index < 0) {
+            throw noPrice(epochDay, security);
+        }
+        return (int) index;
+    }
+
+    private CumulativeReturns cumulativeReturns(Security security, long lastEpochDay) {
+        int id = security.getId();
+        AtomicReferenceArray<CumulativeReturns> currentReturns = returns;
+        CumulativeReturns securityReturns = id < currentReturns.length() ? currentReturns.get(id) : null;
+        if (securityReturns == null || lastEpochDay - firstEpochDay >= securityReturns.days) {
+            securityReturns = extend(security, lastEpochDay);
+        }
+        return securityReturns;
+    }
+
+    /**
+     * Compute the cumulative returns of the days added to the store since the last time. Rare enough to be
+     * synchronized.
+     */
+    private synchronized CumulativeReturns extend(Security security, long lastEpochDay) {
+        int id = security.getId();
+        if (id >= returns.length()) {
+            AtomicReferenceArray<CumulativeReturns> currentReturns = returns;
+            AtomicReferenceArray<CumulativeReturns> newReturns = new AtomicReferenceArray<>(Math.max(id + 1, Security.count()));
+            for (int i = 0; i < currentReturns.length(); i++) {
+                newReturns.set(i, currentReturns.get(i));
+            }
+            returns = newReturns;
+        }
+        CumulativeReturns current = returns.get(id);
+        if (current != null && lastEpochDay - firstEpochDay < current.days) {
+            return current;
+        }
+        int days = Math.toIntExact(store.getLastDay().toEpochDay() - firstEpochDay + 1);
+        if (lastEpochDay - firstEpochDay >= days) {
+            throw noPrice(lastEpochDay, security);
+        }
+
+        long firstPrice;
+        int from;
+        double[] ratios;
+        if (current == null) {
+            firstPrice = store.getPrice(firstEpochDay, security);
+            from = 1;
+            ratios = new double[days];
+            ratios[0] = 1;
+        } else {
+            firstPrice = current.firstPrice;
+            from = current.days;
+            ratios = current.ratios;
+        }
+        if (days > ratios.length) {
+            ratios = Arrays.copyOf(ratios, Math.max(days, ratios.length * 2));
+        }
+        for (int day = from; day < days; day++) {
+            ratios[day] = (double) store.getPrice(firstEpochDay + day, security) / firstPrice;
+        }
+        CumulativeReturns extended = new CumulativeReturns(firstPrice, ratios, days);
+        returns.set(id, extended);
+        return extended;
+    }
+
+    /**
+     * @param date day of the prices
+     * @return the prices of all securities on this day
+     */
+    @Nonnull
+    Snapshot snapshot(@Nonnull LocalDate date) {
+        // Only a lookup, the prices are read later out of the lock
+        synchronized (snapshots) {
+            return snapshots.computeIfAbsent(date.toEpochDay(), day -> new Snapshot(store, day));
+        }
+    }
+
+    private static IllegalArgumentException noPrice(long epochDay, Security security) {
+        return new IllegalArgumentException("No price for " + security + " on " + LocalDate.ofEpochDay(epochDay));
+    }
+
+    /**
+     * Prices of all securities on a given day, each read from the store the first time it is needed. Two threads might
+     * read the same price concurrently but will store the same value, so it doesn't matter. The snapshot grows when
+     * a security created after it is needed.
+     * <p>
+     * A price already in the snapshot is a {@link Metrics#recordPriceHit() hit}, a price read from the store a
+     * {@link Metrics#recordPriceMiss() miss}.
+     */
+    @ThreadSafe
+    static final class Snapshot {
+
+        /** Marker of a price not read yet. Not a usable price anyway since it overflows once rescaled to a {@link FixedDecimal} */
+        private static final long UNRESOLVED = Long.MIN_VALUE;
+
+        private final PriceStore store;
+        private final long epochDay;
+        /** Prices in cents indexed by {@link Security#getId()} */
+        private volatile AtomicLongArray prices;
+
+        private Snapshot(PriceStore store, long epochDay) {
+            this.store = store;
+            this.epochDay = epochDay;
+            this.prices = unresolved(Security.count());
+        }
+
+        private static AtomicLongArray unresolved(int length) {
+            long[] unresolved = new long[length];
+            Arrays.fill(unresolved, UNRESOLVED);
+            return new AtomicLongArray(unresolved);
+        }
+
+        /**
+         * @param security security for which we want a price
+         * @return the price in cents
+         * @throws IllegalArgumentException if the store has no price for this day
+         */
+        long getPrice(@Nonnull Security security) {
+            int id = security.getId();
+            AtomicLongArray currentPrices = prices;
+            if (id >= currentPrices.length()) {
+                currentPrices = grow(id);
+            }
+            // Opaque is enough, any thread reading the store gets the same price
+            long price = currentPrices.getOpaque(id);
+            if (price == UNRESOLVED) {
+                price = read(security);
+                currentPrices.setOpaque(id, price);
+            } else {
+                Metrics.recordPriceHit();
+            }
+            return price;
+        }
+
+        /**
+         * Make room for the securities created since the snapshot. A price stored concurrently in the previous array
+         * might be lost, it will just be read again.
+         */
+        private synchronized AtomicLongArray grow(int id) {
+            AtomicLongArray currentPrices = prices;
+            if (id < currentPrices.length()) {
+                return currentPrices;
+            }
+            AtomicLongArray newPrices = unresolved(Math.max(id + 1, Security.count()));
+            for (int i = 0; i < currentPrices.length(); i++) {
+                newPrices.set(i, currentPrices.getOpaque(i));
+            }
+            prices = newPrices;
+            return newPrices;
+        }
+
+        private long read(Security security) {
+            long start = Metrics.start();
+            long price = store.getPrice(epochDay, security);
+            Metrics.record(Metrics.Phase.PRICE_LOOKUP, start);
+            Metrics.recordPriceMiss();
+            return price;
+        }
+    }
+}
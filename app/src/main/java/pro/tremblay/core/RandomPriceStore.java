@@ -0,0 +1,167 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * Price store generating random prices. Each security has a random base price between 100 and 300 and each daily
+ * price moves around it by a gaussian tick of a few cents.
+ * <p>
+ * Each security has its own random generator, seeded from the seed of the store. So the prices of a security are
+ * always the same for a given seed, whatever the moment or the thread they are generated on. The prices of the
+ * securities existing when the store is created are generated according to a {@link Generation} strategy. The ones
+ * of securities created later are generated lazily.
+ */
+@ThreadSafe
+public final class RandomPriceStore implements PriceStore {
+
+    /**
+     * When to generate the prices.
+     */
+    public enum Generation {
+        /** All securities are generated one after the other when the store is created */
+        EAGER,
+        /** Each security is generated the first time one of its prices is needed */
+        LAZY,
+        /** All securities are generated in parallel when the store is created */
+        PARALLEL
+    }
+
+    private final long firstEpochDay;
+    private final int days;
+    /** Generator of the seed of each security, in id order */
+    private final SplittableRandom seedGenerator;
+    /** Seed of the generator of each security indexed by {@link Security#getId()}, grown with the securities */
+    private volatile long[] seeds;
+    /**
+     * Prices in cents of each security indexed by {@link Security#getId()}, null until generated. Grown with the
+     * securities, the prices generated in the old array while growing are lost and will be generated again.
+     */
+    private volatile AtomicReferenceArray<long[]> prices;
+
+    /**
+     * @param from first day to generate
+     * @param to last day to generate
+     * @param seed seed from which all prices are generated
+     * @param generation when to generate the prices
+     */
+    public RandomPriceStore(@Nonnull LocalDate from, @Nonnull LocalDate to, long seed, @Nonnull Generation generation) {
+        this.firstEpochDay = from.toEpochDay();
+        this.days = (int) (to.toEpochDay() - firstEpochDay + 1);
+
+        this.seedGenerator = new SplittableRandom(seed);
+        this.seeds = new long[0];
+        this.prices = new AtomicReferenceArray<>(0);
+        int count = Security.count();
+        grow(count);
+
+        switch (generation) {
+            case EAGER:
+                IntStream.range(0, count).forEach(this::generate);
+                break;
+            case PARALLEL:
+                IntStream.range(0, count).parallel().forEach(this::generate);
+                break;
+            case LAZY:
+                break;
+        }
+    }
+
+    /**
+     * Make room for the securities up to a given count. The seeds are always drawn in id order, so a security gets
+     * the same seed whenever the store grows.
+     */
+    private synchronized void grow(int count) {
+        long[] currentSeeds = seeds;
+        if (count <= currentSeeds.length) {
+            return;
+        }
+        long[] newSeeds = Arrays.copyOf(currentSeeds, count);
+        for (int i = currentSeeds.length; i < count; i++) {
+            newSeeds[i] = seedGenerator.nextLong();
+        }
+        AtomicReferenceArray<long[]> currentPrices = prices;
+        AtomicReferenceArray<long[]> newPrices = new AtomicReferenceArray<>(count);
+        for (int i = 0; i < currentPrices.length(); i++) {
+            newPrices.set(i, currentPrices.get(i));
+        }
+        prices = newPrices;
+        seeds = newSeeds;
+    }
+
+    private long[] generate(int index) {
+        PriceGenerationEvent event = new PriceGenerationEvent();
+        event.begin();
+        SplittableRandom random = new SplittableRandom(seeds[index]);
+        long[] securityPrices = new long[days];
+        long price = (100 + random.nextInt(200)) * 100L;
+        for (int day = 0; day < days; day++) {
+            securityPrices[day] = price + roundHalfUp(random.nextGaussian() * 100);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.security = Security.byId(index).getSymbol();
+            event.days = days;
+            event.commit();
+        }
+        // Another thread might have generated the same prices in the meantime, keep the first ones
+        AtomicReferenceArray<long[]> currentPrices = prices;
+        if (currentPrices.compareAndSet(index, null, securityPrices)) {
+            return securityPrices;
+        }
+        return currentPrices.get(index);
+    }
+
+    private static long roundHalfUp(double value) {
+        return value < 0 ? -Math.round(-value) : Math.round(value);
+    }
+
+    @Override
+    public long getPrice(long epochDay, @Nonnull Security security) {
+        long index = epochDay - firstEpochDay;
+        if (index < 0 || index >= days) {
+            throw new IllegalArgumentException("No price for " + security + " on " + LocalDate.ofEpochDay(epochDay));
+        }
+        int id = security.getId();
+        if (id >= seeds.length) {
+            grow(Security.count());
+        }
+        long[] securityPrices = prices.get(id);
+        if (securityPrices == null) {
+            securityPrices = generate(id);
+        }
+        return securityPrices[(int) index];
+    }
+
+    @Nonnull
+    @Override
+    public LocalDate getFirstDay() {
+        return LocalDate.ofEpochDay(firstEpochDay);
+    }
+
+    @Nonnull
+    @Override
+    public LocalDate getLastDay() {
+        return LocalDate.ofEpochDay(firstEpochDay + days - 1);
+    }
+}
@@ -16,21 +16,75 @@
 package pro.tremblay.core;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Clock;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Service reporting useful information on a position.
+ * <p>
+ * The {@code PARALLEL_REWIND_THRESHOLD} preference is the number of transactions from which they are reverted in
+ * parallel on the common fork-join pool, 100 000 by default. The result is the same, only faster on large histories. A
+ * change of the preference applies to the existing services.
  */
 @ThreadSafe
 public class ReportingService {
 
+    /** Number of decimals of a quantity multiplied by a price, both being {@link FixedDecimal} */
+    private static final int VALUE_SCALE = 2 * FixedDecimal.SCALE;
+
+    /** Number of transactions in each part of a batch reverted in parallel */
+    private static final int PARALLEL_CHUNK_SIZE = 1 << 16;
+
+    private static final String PARALLEL_REWIND_THRESHOLD = "PARALLEL_REWIND_THRESHOLD";
+    private static final int DEFAULT_PARALLEL_REWIND_THRESHOLD = 100_000;
+
+    private static volatile int parallelRewindThreshold = Preferences.preferences().getInteger(PARALLEL_REWIND_THRESHOLD, DEFAULT_PARALLEL_REWIND_THRESHOLD);
+
+    static {
+        Preferences.preferences().addListener((key, value) -> {
+            if (key.equals(PARALLEL_REWIND_THRESHOLD)) {
+                // Read back instead of parsing the value, so concurrent changes end with the last one
+                parallelRewindThreshold = Preferences.preferences().getInteger(PARALLEL_REWIND_THRESHOLD, DEFAULT_PARALLEL_REWIND_THRESHOLD);
+            }
+        });
+    }
+
+    private final Clock clock;
+
+    public ReportingService() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param clock clock giving the current date, to be used instead of the system one in tests
+     */
+    public ReportingService(@Nonnull Clock clock) {
+        this.clock = clock;
+    }
+
+    @Nonnull
+    Clock clock() {
+        return clock;
+    }
+
     /**
      * Calculate the annualized return on investment since the beginning of the year (Year To Date). We use the simplest method
      * possible. We have the following
@@ -50,55 +104,516 @@ public class ReportingService {
      */
     @Nonnull
     public BigDecimal calculateReturnOnInvestmentYTD(@Nonnull Position current, @Nonnull Collection<Transaction> transactions) {
-        LocalDate now = LocalDate.now();
-        LocalDate beginningOfYear = now.withDayOfYear(1);
-
-        Position working = new Position()
-                .cash(current.getCash());
-
-        List<SecurityPosition> positions = current.getSecurityPositions().stream()
-                .map(securityPosition -> new SecurityPosition()
-                        .quantity(securityPosition.getQuantity())
-                        .security(securityPosition.getSecurity())
-                )
-                .collect(Collectors.toList());
-        working.securityPositions(positions);
-
-        List<Transaction> orderedTransaction = transactions.stream()
-                .sorted(Comparator.comparing(Transaction::getDate).reversed())
-                .collect(Collectors.toList());
-
-        LocalDate today = now;
-        int transactionIndex = 0;
-        while (!today.isBefore(beginningOfYear)) {
-            if (transactionIndex >= orderedTransaction.size())  {
+        return calculateReturnOnInvestment(new ValuationContext(LocalDate.now(clock)), current, transactions, null);
+    }
+
+    /**
+     * Same as {@link #calculateReturnOnInvestmentYTD(Position, Collection)} but reading the transactions one by one.
+     * They are never all in memory at the same time, so they can be read from a large file for instance.
+     *
+     * @param current the current position of today, won't be modified by this call
+     * @param transactions all transactions on this position, they are not sorted and might be before the beginning of the year
+     * @return annualized return on investment since beginning of the year
+     */
+    @Nonnull
+    public BigDecimal calculateReturnOnInvestmentYTD(@Nonnull Position current, @Nonnull Iterator<Transaction> transactions) {
+        RoiCalculationEvent event = new RoiCalculationEvent();
+        event.begin();
+        long start = Metrics.start();
+        ValuationContext context = new ValuationContext(LocalDate.now(clock));
+        PositionRewind rewind = new PositionRewind(context.start(), context.end());
+        transactions.forEachRemaining(rewind::revert);
+        Metrics.record(Metrics.Phase.REWIND, start);
+        return calculateReturnOnInvestment(context, current, rewind, start, event);
+    }
+
+    /**
+     * Same as {@link #calculateReturnOnInvestmentYTD(Position, Iterator)} with a stream. The stream is consumed
+     * sequentially and isn't closed.
+     *
+     * @param current the current position of today, won't be modified by this call
+     * @param transactions all transactions on this position, they are not sorted and might be before the beginning of the year
+     * @return annualized return on investment since beginning of the year
+     */
+    @Nonnull
+    public BigDecimal calculateReturnOnInvestmentYTD(@Nonnull Position current, @Nonnull Stream<Transaction> transactions) {
+        return calculateReturnOnInvestmentYTD(current, transactions.sequential().iterator());
+    }
+
+    /**
+     * Same as {@link #calculateReturnOnInvestmentYTD(Position, Collection)} with transactions stored in a batch.
+     *
+     * @param current the current position of today, won't be modified by this call
+     * @param transactions all transactions on this position, they are not sorted and might be before the beginning of the year
+     * @return annualized return on investment since beginning of the year
+     */
+    @Nonnull
+    public BigDecimal calculateReturnOnInvestmentYTD(@Nonnull Position current, @Nonnull TransactionBatch transactions) {
+        RoiCalculationEvent event = new RoiCalculationEvent();
+        event.begin();
+        long start = Metrics.start();
+        ValuationContext context = new ValuationContext(LocalDate.now(clock));
+        PositionRewind rewind = rewind(context, transactions);
+        Metrics.record(Metrics.Phase.REWIND, start);
+        return calculateReturnOnInvestment(context, current, rewind, start, event);
+    }
+
+    /**
+     * Same as {@link #calculateReturnOnInvestmentYTD(Position, Collection)} on an encoded portfolio. The transactions
+     * are read straight from its buffer, so a mapped file is calculated without decoding it first.
+     *
+     * @param portfolio the current position of today and all its transactions
+     * @return annualized return on investment since beginning of the year
+     */
+    @Nonnull
+    public BigDecimal calculateReturnOnInvestmentYTD(@Nonnull EncodedPortfolio portfolio) {
+        RoiCalculationEvent event = new RoiCalculationEvent();
+        event.begin();
+        long start = Metrics.start();
+        ValuationContext context = new ValuationContext(LocalDate.now(clock));
+        PositionRewind rewind = new PositionRewind(context.start(), context.end());
+        rewind.revert(portfolio, 0, portfolio.getTransactionCount());
+        Metrics.record(Metrics.Phase.REWIND, start);
+        return calculateReturnOnInvestment(context, portfolio.position(), rewind, start, event);
+    }
+
+    /**
+     * Same as {@link #calculateReturnOnInvestmentYTD(Position, Collection)} with the transactions already reverted.
+     *
+     * @param current the current position of today, won't be modified by this call
+     * @param rewind all transactions on this position reverted from the beginning of the year until today
+     * @return annualized return on investment since beginning of the year
+     */
+    @Nonnull
+    public BigDecimal calculateReturnOnInvestmentYTD(@Nonnull Position current, @Nonnull PositionRewind rewind) {
+        return calculateReturnOnInvestment(new ValuationContext(LocalDate.now(clock)), current, rewind);
+    }
+
+    /**
+     * Same as {@link #calculateReturnOnInvestmentYTD(Position, Collection)} on immutable values. Nothing is copied,
+     * so the same position and transactions can be calculated by many threads at once.
+     *
+     * @param current the current position of today
+     * @param transactions all transactions on this position, they are not sorted and might be before the beginning of the year
+     * @return annualized return on investment since beginning of the year
+     */
+    @Nonnull
+    public BigDecimal calculateReturnOnInvestmentYTD(@Nonnull ImmutablePosition current, @Nonnull Collection<ImmutableTransaction> transactions) {
+        RoiCalculationEvent event = new RoiCalculationEvent();
+        event.begin();
+        long start = Metrics.start();
+        ValuationContext context = new ValuationContext(LocalDate.now(clock));
+        PositionRewind rewind = rewind(context, transactions, PositionRewind::revert);
+        Metrics.record(Metrics.Phase.REWIND, start);
+        return calculateReturnOnInvestment(context, current.cash(), current.securityPositions(), rewind, start, event);
+    }
+
+    /**
+     * Calculate the annualized return on investment since the beginning of the year of many portfolios at once. The
+     * result of each portfolio is the same as calling {@link #calculateReturnOnInvestmentYTD(Position, Collection)} on
+     * it. However, the date, the year length and the prices are resolved only once for all portfolios and the
+     * portfolios are calculated in parallel.
+     *
+     * @param portfolios portfolios to calculate keyed by account, they won't be modified by this call
+     * @param <K> type of the account key, null keys aren't supported
+     * @return annualized return on investment since beginning of the year of each account
+     */
+    @Nonnull
+    public <K> Map<K, BigDecimal> calculateReturnOnInvestmentYTD(@Nonnull Map<K, Portfolio> portfolios) {
+        ValuationContext context = new ValuationContext(LocalDate.now(clock));
+        return portfolios.entrySet()
+                .parallelStream()
+                .collect(Collectors.toConcurrentMap(
+                        Map.Entry::getKey,
+                        entry -> calculateReturnOnInvestment(context, entry.getValue().getPosition(), entry.getValue().getTransactions(), entry.getKey())));
+    }
+
+    /**
+     * Calculate the annualized return on investment over a period ending today. It's the same calculation as
+     * {@link #calculateReturnOnInvestmentYTD(Position, Collection)} from the start of the period instead of the
+     * beginning of the year. So {@link ReturnPeriod#YEAR_TO_DATE} gives the same result.
+     *
+     * @param current the current position of today, won't be modified by this call
+     * @param transactions all transactions on this position, they are not sorted and might be before the beginning of the period
+     * @param period the period
+     * @return annualized return on investment over the period
+     * @throws IllegalArgumentException if a price is missing at the start of the period
+     */
+    @Nonnull
+    public BigDecimal calculateReturnOnInvestment(@Nonnull Position current, @Nonnull Collection<Transaction> transactions, @Nonnull ReturnPeriod period) {
+        return calculateReturnOnInvestment(current, transactions, EnumSet.of(period)).get(period);
+    }
+
+    /**
+     * Same as {@link #calculateReturnOnInvestment(Position, Collection, ReturnPeriod)} for many periods at once. The
+     * transactions are reverted only once for all the periods.
+     *
+     * @param current the current position of today, won't be modified by this call
+     * @param transactions all transactions on this position, they are not sorted and might be before the beginning of the periods
+     * @param periods the periods
+     * @return annualized return on investment over each period
+     * @throws IllegalArgumentException if a price is missing at the start of a period
+     */
+    @Nonnull
+    public Map<ReturnPeriod, BigDecimal> calculateReturnOnInvestment(@Nonnull Position current, @Nonnull Collection<Transaction> transactions, @Nonnull Set<ReturnPeriod> periods) {
+        Map<ReturnPeriod, BigDecimal> result = new EnumMap<>(ReturnPeriod.class);
+        if (periods.isEmpty()) {
+            return result;
+        }
+        LocalDate today = LocalDate.now(clock);
+        ReturnPeriod[] orderedPeriods = periods.toArray(new ReturnPeriod[0]);
+        LocalDate[] starts = new LocalDate[orderedPeriods.length];
+        LocalDate[] ends = new LocalDate[orderedPeriods.length];
+        for (int i = 0; i < orderedPeriods.length; i++) {
+            starts[i] = orderedPeriods[i].start(today);
+            ends[i] = today;
+        }
+        BigDecimal[] rois = calculateReturnOnInvestment(today, current, transactions, starts, ends);
+        for (int i = 0; i < orderedPeriods.length; i++) {
+            result.put(orderedPeriods[i], rois[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Calculate the annualized return on investment over any period until today. The position at the end of the
+     * period is found by reverting the transactions made after it.
+     *
+     * @param current the current position of today, won't be modified by this call
+     * @param transactions all transactions on this position, they are not sorted and might be outside the period
+     * @param start first day of the period
+     * @param end last day of the period, today at the latest
+     * @return annualized return on investment over the period
+     * @throws IllegalArgumentException if the period ends before it starts or after today, or if a price is missing
+     */
+    @Nonnull
+    public BigDecimal calculateReturnOnInvestment(@Nonnull Position current, @Nonnull Collection<Transaction> transactions, @Nonnull LocalDate start, @Nonnull LocalDate end) {
+        LocalDate today = LocalDate.now(clock);
+        if (start.isAfter(end) || end.isAfter(today)) {
+            throw new IllegalArgumentException("Invalid period from " + start + " to " + end + " on " + today);
+        }
+        return calculateReturnOnInvestment(today, current, transactions, new LocalDate[] { start }, new LocalDate[] { end })[0];
+    }
+
+    @Nonnull
+    private BigDecimal[] calculateReturnOnInvestment(@Nonnull LocalDate today, @Nonnull Position current, @Nonnull Collection<Transaction> transactions,
+                                                     @Nonnull LocalDate[] starts, @Nonnull LocalDate[] ends) {
+        // The position is needed at the beginning of each period, and at the end of the ones ending before today
+        List<LocalDate> boundaries = new ArrayList<>(Arrays.asList(starts));
+        for (LocalDate end : ends) {
+            if (end.isBefore(today)) {
+                boundaries.add(end.plusDays(1));
+            }
+        }
+        MultiPeriodRewind rewind = new MultiPeriodRewind(today, boundaries.toArray(new LocalDate[0]));
+        for (Transaction transaction : transactions) {
+            rewind.revert(transaction);
+        }
+
+        BigDecimal[] rois = new BigDecimal[starts.length];
+        for (int i = 0; i < starts.length; i++) {
+            Position endPosition = ends[i].equals(today) ? current : rewind.since(ends[i].plusDays(1)).applyTo(current);
+            rois[i] = calculateReturnOnInvestment(new ValuationContext(starts[i], ends[i]), endPosition, rewind.between(starts[i], ends[i]));
+        }
+        return rois;
+    }
+
+    /**
+     * Calculate the value and the time-weighted return of a position at the end of each day of a period ending today.
+     * Transactions are read once and each price of each security held during the period is read once.
+     *
+     * @param current the current position of today, won't be modified by this call
+     * @param transactions all transactions on this position, they are not sorted and might be before the beginning of the period
+     * @param period the period
+     * @return the daily series
+     * @throws IllegalArgumentException if a price is missing during the period
+     */
+    @Nonnull
+    public DailyReturns calculateDailyReturns(@Nonnull Position current, @Nonnull Collection<Transaction> transactions, @Nonnull ReturnPeriod period) {
+        LocalDate today = LocalDate.now(clock);
+        return calculateDailyReturns(today, current, transactions, period.start(today));
+    }
+
+    /**
+     * Same as {@link #calculateDailyReturns(Position, Collection, ReturnPeriod)} from any day until today.
+     *
+     * @param current the current position of today, won't be modified by this call
+     * @param transactions all transactions on this position, they are not sorted and might be before the beginning of the period
+     * @param start first day of the period
+     * @return the daily series
+     * @throws IllegalArgumentException if the period starts after today or if a price is missing during the period
+     */
+    @Nonnull
+    public DailyReturns calculateDailyReturns(@Nonnull Position current, @Nonnull Collection<Transaction> transactions, @Nonnull LocalDate start) {
+        LocalDate today = LocalDate.now(clock);
+        if (start.isAfter(today)) {
+            throw new IllegalArgumentException("Invalid period from " + start + " to " + today);
+        }
+        return calculateDailyReturns(today, current, transactions, start);
+    }
+
+    @Nonnull
+    private DailyReturns calculateDailyReturns(@Nonnull LocalDate today, @Nonnull Position current, @Nonnull Collection<Transaction> transactions, @Nonnull LocalDate start) {
+        long firstEpochDay = start.toEpochDay();
+        int days = Math.toIntExact(today.toEpochDay() - firstEpochDay + 1);
+
+        // What changed during each day
+        double[] cashChanges = new double[days];
+        double[] flows = new double[days];
+        Map<Security, Holding> holdings = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            long day = transaction.getDate().toEpochDay() - firstEpochDay;
+            if (day >= days) {
+                // As for the return on investment, a transaction in the future prevents reverting anything
+                cashChanges = new double[days];
+                flows = new double[days];
+                holdings.clear();
                 break;
             }
-            Transaction transaction = orderedTransaction.get(transactionIndex);
-            while (transaction.getDate().equals(today)) {
-                // It's a transaction on the date, process it
-                revert(working, transaction);
-                transactionIndex++;
-                if (transactionIndex >= orderedTransaction.size())  {
+            if (day < 0) {
+                continue;
+            }
+            double cash = transaction.getCash().doubleValue();
+            switch (transaction.getType()) {
+                case BUY:
+                    cashChanges[(int) day] -= cash;
+                    holding(holdings, transaction.getSecurity()).changes(days)[(int) day] += transaction.getQuantity().doubleValue();
+                    break;
+                case SELL:
+                    cashChanges[(int) day] += cash;
+                    holding(holdings, transaction.getSecurity()).changes(days)[(int) day] -= transaction.getQuantity().doubleValue();
                     break;
+                case DEPOSIT:
+                    cashChanges[(int) day] += cash;
+                    flows[(int) day] += cash;
+                    break;
+                case WITHDRAWAL:
+                    cashChanges[(int) day] -= cash;
+                    flows[(int) day] -= cash;
+                    break;
+            }
+        }
+
+        double cash = current.getCash().doubleValue();
+        for (SecurityPosition securityPosition : current.getSecurityPositions()) {
+            holding(holdings, securityPosition.getSecurity()).quantity += securityPosition.getQuantity().doubleValue();
+        }
+
+        // Walk back from today, the position at the end of a day is the one of the next day minus its changes
+        double[] values = new double[days];
+        LocalDate date = today;
+        for (int day = days - 1; day >= 0; day--) {
+            values[day] = value(date, cash, holdings);
+            cash -= cashChanges[day];
+            for (Holding holding : holdings.values()) {
+                if (holding.changes != null) {
+                    holding.quantity -= holding.changes[day];
+                }
+            }
+            date = date.minusDays(1);
+        }
+        return new DailyReturns(start, value(start, cash, holdings), values, flows);
+    }
+
+    /** Quantity of a security held at the end of a day and how it changed during each day of the period */
+    private static final class Holding {
+        final Security security;
+        double quantity;
+        /** Null if the security wasn't traded during the period */
+        double[] changes;
+
+        Holding(Security security) {
+            this.security = security;
+        }
+
+        double[] changes(int days) {
+            if (changes == null) {
+                changes = new double[days];
+            }
+            return changes;
+        }
+    }
+
+    private static Holding holding(Map<Security, Holding> holdings, Security security) {
+        return holdings.computeIfAbsent(security, Holding::new);
+    }
+
+    private static double value(LocalDate date, double cash, Map<Security, Holding> holdings) {
+        double value = cash;
+        for (Holding holding : holdings.values()) {
+            // A security not held today might have been held earlier in the period
+            if (holding.quantity != 0 || holding.changes != null) {
+                value += holding.quantity * FixedDecimal.toDouble(PriceService.getFixedPrice(date, holding.security));
+            }
+        }
+        return value;
+    }
+
+    @Nonnull
+    private BigDecimal calculateReturnOnInvestment(@Nonnull ValuationContext context, @Nonnull Position current, @Nonnull Collection<Transaction> transactions, @Nullable Object account) {
+        RoiCalculationEvent event = new RoiCalculationEvent();
+        event.begin();
+        if (account != null && event.isEnabled()) {
+            event.account = account.toString();
+        }
+        long start = Metrics.start();
+        PositionRewind rewind = rewind(context, transactions, PositionRewind::revert);
+        Metrics.record(Metrics.Phase.REWIND, start);
+        return calculateReturnOnInvestment(context, current, rewind, start, event);
+    }
+
+    /**
+     * Revert the transactions in one pass, or in parallel if there are many of them. Each part is reverted on its own
+     * and the parts are then merged. Since the reverted values are sums, the result is the same.
+     */
+    @Nonnull
+    private static <T> PositionRewind rewind(@Nonnull ValuationContext context, @Nonnull Collection<T> transactions, @Nonnull BiConsumer<PositionRewind, T> revert) {
+        if (transactions.size() < parallelRewindThreshold) {
+            PositionRewind rewind = new PositionRewind(context.start(), context.end());
+            for (T transaction : transactions) {
+                revert.accept(rewind, transaction);
+            }
+            return rewind;
+        }
+        return transactions.parallelStream()
+            .collect(() -> new PositionRewind(context.start(), context.end()), revert, PositionRewind::merge);
+    }
+
+    @Nonnull
+    private PositionRewind rewind(@Nonnull ValuationContext context, @Nonnull TransactionBatch transactions) {
+        if (transactions.size() < parallelRewindThreshold || transactions.size() <= PARALLEL_CHUNK_SIZE) {
+            PositionRewind rewind = new PositionRewind(context.start(), context.end());
+            rewind.revert(transactions);
+            return rewind;
+        }
+        int chunks = (transactions.size() + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+        return IntStream.range(0, chunks)
+            .parallel()
+            .mapToObj(chunk -> {
+                PositionRewind rewind = new PositionRewind(context.start(), context.end());
+                rewind.revert(transactions, chunk * PARALLEL_CHUNK_SIZE, Math.min(transactions.size(), (chunk + 1) * PARALLEL_CHUNK_SIZE));
+                return rewind;
+            })
+            .reduce((a, b) -> {
+                a.merge(b);
+                return a;
+            })
+            .orElseThrow();
+    }
+
+    @Nonnull
+    BigDecimal calculateReturnOnInvestment(@Nonnull ValuationContext context, @Nonnull Position current, @Nonnull PositionRewind rewind) {
+        RoiCalculationEvent event = new RoiCalculationEvent();
+        event.begin();
+        return calculateReturnOnInvestment(context, current, rewind, Metrics.start(), event);
+    }
+
+    @Nonnull
+    private BigDecimal calculateReturnOnInvestment(@Nonnull ValuationContext context, @Nonnull Position current, @Nonnull PositionRewind rewind,
+                                                   long start, @Nonnull RoiCalculationEvent event) {
+        return calculateReturnOnInvestment(context, current.getCash(), current.getSecurityPositions(), rewind, start, event);
+    }
+
+    /**
+     * @param cash cash of the current position
+     * @param securityPositions security positions of the current position
+     * @param start value of {@link Metrics#start()} when the calculation started
+     * @param event flight recorder event begun when the calculation started, committed here
+     */
+    @Nonnull
+    private BigDecimal calculateReturnOnInvestment(@Nonnull ValuationContext context, @Nonnull BigDecimal cash,
+                                                   @Nonnull Collection<? extends SecurityQuantity> securityPositions, @Nonnull PositionRewind rewind,
+                                                   long start, @Nonnull RoiCalculationEvent event) {
+        long valuationStart = Metrics.start();
+        BigDecimal roi = null;
+        try {
+            if (rewind.isFixed()) {
+                long fixedRoi = calculateFixedReturnOnInvestment(context, cash, securityPositions, rewind);
+                if (fixedRoi != FixedDecimal.OVERFLOW) {
+                    roi = FixedDecimal.toBigDecimal(fixedRoi, 2);
+                    event.fixedDecimal = true;
                 }
-                transaction = orderedTransaction.get(transactionIndex);
             }
+            if (roi == null) {
+                roi = calculateBigReturnOnInvestment(context, cash, securityPositions, rewind);
+            }
+        } catch (IllegalArgumentException e) {
+            // The price service doesn't have a price at one of the dates
+            event.missingPrice = true;
+            throw e;
+        } finally {
+            commit(event, securityPositions.size(), rewind);
+        }
+        Metrics.record(Metrics.Phase.VALUATION, valuationStart);
+        Metrics.record(Metrics.Phase.TOTAL, start);
+        Metrics.recordCall(rewind.transactionCount());
+        return roi;
+    }
+
+    private static void commit(RoiCalculationEvent event, int securityCount, PositionRewind rewind) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.transactionCount = rewind.transactionCount();
+            event.yearToDateTransactionCount = rewind.revertedCount();
+            event.securityCount = securityCount;
+            event.commit();
+        }
+    }
 
-            today = today.minusDays(1);
+    /**
+     * Same calculation as {@link #calculateBigReturnOnInvestment(ValuationContext, BigDecimal, Collection, PositionRewind)} with
+     * {@link FixedDecimal}. Values are multiplied by prices so they have {@code 2 * FixedDecimal.SCALE} decimals.
+     *
+     * @return the return on investment with 2 decimals or {@link FixedDecimal#OVERFLOW} if something doesn't fit
+     */
+    private long calculateFixedReturnOnInvestment(@Nonnull ValuationContext context, @Nonnull BigDecimal cash,
+                                                  @Nonnull Collection<? extends SecurityQuantity> securityPositions, @Nonnull PositionRewind rewind) {
+        long currentCash = FixedDecimal.of(cash);
+        long initialCash = FixedDecimal.add(currentCash, rewind.getFixedCash());
+
+        long initialValue = FixedDecimal.rescale(initialCash, FixedDecimal.SCALE, VALUE_SCALE);
+        long currentValue = FixedDecimal.rescale(currentCash, FixedDecimal.SCALE, VALUE_SCALE);
+        for (SecurityQuantity securityPosition : securityPositions) {
+            long quantity = FixedDecimal.of(securityPosition.getQuantity());
+            initialValue = FixedDecimal.add(initialValue, FixedDecimal.multiply(quantity, context.initialFixedPrice(securityPosition.getSecurity())));
+            currentValue = FixedDecimal.add(currentValue, FixedDecimal.multiply(quantity, context.currentFixedPrice(securityPosition.getSecurity())));
+        }
+        for (int i = 0; i < rewind.getTradedCount(); i++) {
+            Security security = rewind.getTradedSecurity(i);
+            initialValue = FixedDecimal.add(initialValue, FixedDecimal.multiply(rewind.getFixedQuantity(security), context.initialFixedPrice(security)));
         }
 
-        BigDecimal initialCashValue = working.getCash();
-        BigDecimal currentCashValue = current.getCash();
+        if (initialValue == FixedDecimal.OVERFLOW || currentValue == FixedDecimal.OVERFLOW) {
+            return FixedDecimal.OVERFLOW;
+        }
+        if (initialValue == 0) {
+            return 0;
+        }
+
+        // Absolute ROI in percent with 10 decimals
+        long roi = FixedDecimal.divideHalfUp(FixedDecimal.subtract(currentValue, initialValue), initialValue, 10);
+        roi = FixedDecimal.multiply(roi, 100L * context.yearLength());
+        // Dividing a value of 10 decimals by the days, itself shifted by 8 decimals, gives the ROI with 2 decimals
+        return FixedDecimal.divideHalfUp(roi, context.days() * 100_000_000L, 0);
+    }
 
-        BigDecimal initialSecPosValue = working.getSecurityPositions()
-                .stream()
-                .map(securityPosition -> securityPosition.getQuantity().multiply(PriceService.getPrice(beginningOfYear, securityPosition.getSecurity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        BigDecimal currentSecPosValue = current.getSecurityPositions()
-                .stream()
-                .map(securityPosition -> securityPosition.getQuantity().multiply(PriceService.getPrice(now, securityPosition.getSecurity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    @Nonnull
+    private BigDecimal calculateBigReturnOnInvestment(@Nonnull ValuationContext context, @Nonnull BigDecimal cash,
+                                                      @Nonnull Collection<? extends SecurityQuantity> securityPositions, @Nonnull PositionRewind rewind) {
+        BigDecimal initialCashValue = cash.add(rewind.getCash());
+        BigDecimal currentCashValue = cash;
+
+        BigDecimal initialSecPosValue = BigDecimal.ZERO;
+        BigDecimal currentSecPosValue = BigDecimal.ZERO;
+        for (SecurityQuantity securityPosition : securityPositions) {
+            initialSecPosValue = initialSecPosValue.add(securityPosition.getQuantity().multiply(context.initialPrice(securityPosition.getSecurity())));
+            currentSecPosValue = currentSecPosValue.add(securityPosition.getQuantity().multiply(context.currentPrice(securityPosition.getSecurity())));
+        }
+        // Securities traded during the year were either in the current position or are added to the initial one
+        for (int i = 0; i < rewind.getTradedCount(); i++) {
+            Security security = rewind.getTradedSecurity(i);
+            initialSecPosValue = initialSecPosValue.add(rewind.getQuantity(security).multiply(context.initialPrice(security)));
+        }
 
         BigDecimal initialValue = initialCashValue.add(initialSecPosValue);
 
@@ -112,47 +627,8 @@ public class ReportingService {
                     .multiply(BigDecimal.valueOf(100L));
         }
 
-        int yearLength = Preferences.preferences().getInteger("LENGTH_OF_YEAR");
-
-        roi = roi.multiply(BigDecimal.valueOf(yearLength)).divide(BigDecimal.valueOf(now.getDayOfYear()), 2, RoundingMode.HALF_UP);
+        roi = roi.multiply(BigDecimal.valueOf(context.yearLength())).divide(BigDecimal.valueOf(context.days()), 2, RoundingMode.HALF_UP);
 
         return roi;
     }
-
-    private void revert(Position current, Transaction transaction) {
-        switch (transaction.getType()) {
-            case BUY: {
-                current.cash(current.getCash().add(transaction.getCash()));
-                SecurityPosition pos = current.getSecurityPositions().stream()
-                        .filter(sec -> sec.getSecurity().equals(transaction.getSecurity()))
-                        .findAny()
-                        .orElse(null);
-                if (pos == null) {
-                    pos = new SecurityPosition().quantity(BigDecimal.ZERO).security(transaction.getSecurity());
-                    current.getSecurityPositions().add(pos);
-                }
-                pos.quantity(pos.getQuantity().subtract(transaction.getQuantity()));
-                break;
-            }
-            case SELL:
-                current.cash(current.getCash().subtract(transaction.getCash()));
-                SecurityPosition pos = current.getSecurityPositions().stream()
-                        .filter(sec -> sec.getSecurity().equals(transaction.getSecurity()))
-                        .findAny()
-                        .orElse(null);
-                if (pos == null) {
-                    pos = new SecurityPosition().quantity(BigDecimal.ZERO).security(transaction.getSecurity());
-                    current.getSecurityPositions().add(pos);
-                }
-                pos.quantity(pos.getQuantity().add(transaction.getQuantity()));
-                break;
-            case DEPOSIT:
-                current.cash(current.getCash().subtract(transaction.getCash()));
-                break;
-            case WITHDRAWAL:
-                current.cash(current.getCash().add(transaction.getCash()));
-                break;
-        }
-    }
-
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+
+/**
+ * Usual periods ending today on which a return on investment is calculated.
+ */
+@ThreadSafe
+public enum ReturnPeriod {
+    /** Since the first day of the month */
+    MONTH_TO_DATE {
+        @Nonnull
+        @Override
+        public LocalDate start(@Nonnull LocalDate today) {
+            return today.withDayOfMonth(1);
+        }
+    },
+    /** Since the first day of the quarter */
+    QUARTER_TO_DATE {
+        @Nonnull
+        @Override
+        public LocalDate start(@Nonnull LocalDate today) {
+            return today.with(IsoFields.DAY_OF_QUARTER, 1);
+        }
+    },
+    /** Since the first day of the year */
+    YEAR_TO_DATE {
+        @Nonnull
+        @Override
+        public LocalDate start(@Nonnull LocalDate today) {
+            return today.withDayOfYear(1);
+        }
+    },
+    /** The last 30 days, today included */
+    TRAILING_30_DAYS {
+        @Nonnull
+        @Override
+        public LocalDate start(@Nonnull LocalDate today) {
+            return today.minusDays(29);
+        }
+    },
+    /** The last year, today included */
+    TRAILING_YEAR {
+        @Nonnull
+        @Override
+        public LocalDate start(@Nonnull LocalDate today) {
+            return today.minusYears(1).plusDays(1);
+        }
+    };
+
+    /**
+     * @param today last day of the period
+     * @return first day of the period
+     */
+    @Nonnull
+    public abstract LocalDate start(@Nonnull LocalDate today);
+
+    /**
+     * @param today last day of the periods
+     * @return first day of the longest period, the prices are needed from this day to calculate every period
+     */
+    @Nonnull
+    public static LocalDate earliestStart(@Nonnull LocalDate today) {
+        LocalDate earliest = today;
+        for (ReturnPeriod period : values()) {
+            LocalDate start = period.start(today);
+            if (start.isBefore(earliest)) {
+                earliest = start;
+            }
+        }
+        return earliest;
+    }
+}
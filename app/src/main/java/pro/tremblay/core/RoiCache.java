@@ -0,0 +1,314 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Cache of the return on investment since the beginning of the year in front of a {@link ReportingService}, for
+ * accounts calculated again and again without changing.
+ * <p>
+ * A result is keyed by a fingerprint of the content of the position and the transactions, the day of the calculation,
+ * the year length and the version of the prices. So a new position with the same content hits the cache, while a position or a transaction
+ * modified since the last calculation misses it. The fingerprint is two independent 64 bits hashes, each field going
+ * through a full mix, so the chance of two different inputs having the same is negligible. It doesn't depend on the
+ * order of the transactions or security positions, since the result doesn't either.
+ * <p>
+ * The cache keeps the {@code maximumSize} results used the most recently. They are all dropped when the day or the
+ * {@link PriceStore} changes, since none of them can be used anymore. Concurrent calculations of the same key are
+ * coalesced: the first one calculates and the others wait for its result. The calculation is made for the day of the
+ * key, even if the day changes meanwhile.
+ */
+@ThreadSafe
+public final class RoiCache {
+
+    private final ReportingService service;
+    private final int maximumSize;
+
+    private final LinkedHashMap<Key, CompletableFuture<BigDecimal>> results;
+    /** Day of the cached results */
+    private long epochDay = Long.MIN_VALUE;
+    /** Version of the prices of the cached results */
+    private long priceVersion = Long.MIN_VALUE;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param service service doing the calculations, its clock gives the day of the calculation
+     * @param maximumSize maximum number of results kept
+     */
+    public RoiCache(@Nonnull ReportingService service, int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize should be positive: " + maximumSize);
+        }
+        this.service = service;
+        this.maximumSize = maximumSize;
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<BigDecimal>> eldest) {
+                if (size() > RoiCache.this.maximumSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Same as {@link ReportingService#calculateReturnOnInvestmentYTD(Position, Collection)}, from the cache if the
+     * same content was already calculated today with the same prices.
+     *
+     * @param current the current position of today, won't be modified by this call
+     * @param transactions all transactions on this position
+     * @return annualized return on investment since beginning of the year
+     */
+    @Nonnull
+    public BigDecimal calculateReturnOnInvestmentYTD(@Nonnull Position current, @Nonnull Collection<Transaction> transactions) {
+        LocalDate today = LocalDate.now(service.clock());
+        long prices = PriceService.getPriceVersion();
+        Key key = Key.of(today, Preferences.preferences().getInteger("LENGTH_OF_YEAR"), prices, current, transactions);
+
+        CompletableFuture<BigDecimal> result;
+        boolean calculate = false;
+        synchronized (this) {
+            if (today.toEpochDay() != epochDay || prices != priceVersion) {
+                results.clear();
+                epochDay = today.toEpochDay();
+                priceVersion = prices;
+            }
+            result = results.get(key);
+            if (result == null) {
+                result = new CompletableFuture<>();
+                results.put(key, result);
+                calculate = true;
+                missCount++;
+            } else {
+                hitCount++;
+            }
+        }
+
+        if (calculate) {
+            try {
+                // On the day of the key, the clock could have moved to the next one since
+                BigDecimal roi = service.calculateReturnOnInvestment(current, transactions, ReturnPeriod.YEAR_TO_DATE.start(today), today);
+                result.complete(roi);
+                return roi;
+            } catch (RuntimeException | Error e) {
+                // Don't keep the failure, the next call will try again
+                synchronized (this) {
+                    results.remove(key, result);
+                }
+                result.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            // Throw what the calculating thread got
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Drop all the results.
+     */
+    public synchronized void invalidateAll() {
+        results.clear();
+    }
+
+    /**
+     * @return number of results in the cache, including the ones being calculated
+     */
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * @return number of calls answered from the cache, including the ones waiting for a concurrent calculation
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of calls that had to calculate
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of results dropped to keep the cache under its maximum size
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Identifies the inputs of a calculation. The content of the position and the transactions is summed up by two
+     * 64 bits hashes with different seeds. Every field of an element is mixed into its hash on its own, so a change of
+     * any of them changes the whole hash.
+     */
+    private static final class Key {
+
+        private static final long SEED1 = 0x9E3779B97F4A7C15L;
+        private static final long SEED2 = 0xC2B2AE3D27D4EB4FL;
+
+        /** Tags of each kind of element, so a security position can't be confused with a transaction */
+        private static final long CASH = 1;
+        private static final long SECURITY_POSITION = 2;
+        private static final long TRANSACTION = 3;
+
+        /** Powers of ten exactly represented by a double */
+        private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+        };
+
+        private final long epochDay;
+        private final int yearLength;
+        private final long priceVersion;
+        private final int transactionCount;
+        private final long hash1;
+        private final long hash2;
+
+        private Key(long epochDay, int yearLength, long priceVersion, int transactionCount, long hash1, long hash2) {
+            this.epochDay = epochDay;
+            this.yearLength = yearLength;
+            this.priceVersion = priceVersion;
+            this.transactionCount = transactionCount;
+            this.hash1 = hash1;
+            this.hash2 = hash2;
+        }
+
+        static Key of(LocalDate today, int yearLength, long priceVersion, Position current, Collection<Transaction> transactions) {
+            // Each element is hashed on its own and the hashes are summed, so the order doesn't matter
+            long hash1 = hash(add(SEED1, CASH), current.getCash());
+            long hash2 = hash(add(SEED2, CASH), current.getCash());
+            for (SecurityPosition securityPosition : current.getSecurityPositions()) {
+                hash1 += hash(SEED1, securityPosition);
+                hash2 += hash(SEED2, securityPosition);
+            }
+            for (Transaction transaction : transactions) {
+                hash1 += hash(SEED1, transaction);
+                hash2 += hash(SEED2, transaction);
+            }
+            return new Key(today.toEpochDay(), yearLength, priceVersion, transactions.size(), hash1, hash2);
+        }
+
+        private static long hash(long seed, SecurityPosition securityPosition) {
+            long hash = add(seed, SECURITY_POSITION);
+            hash = add(hash, securityPosition.getSecurity().getId());
+            return hash(hash, securityPosition.getQuantity());
+        }
+
+        private static long hash(long seed, Transaction transaction) {
+            long hash = add(seed, TRANSACTION);
+            hash = add(hash, transaction.getType().ordinal());
+            hash = add(hash, transaction.getDate().toEpochDay());
+            hash = hash(hash, transaction.getCash());
+            hash = add(hash, transaction.getSecurity() == null ? -1 : transaction.getSecurity().getId());
+            return transaction.getQuantity() == null ? add(hash, -1) : hash(hash, transaction.getQuantity());
+        }
+
+        /**
+         * Mix the scale and the unscaled value of a decimal. The unscaled value is mixed as a long when it has at most
+         * 18 digits, otherwise as its bytes, preceded by their count so the two can't be confused.
+         */
+        private static long hash(long hash, BigDecimal value) {
+            hash = add(hash, value.scale());
+            if (value.precision() <= 18) {
+                return add(add(hash, 0), unscaled(value));
+            }
+            byte[] bytes = value.unscaledValue().toByteArray();
+            hash = add(hash, bytes.length);
+            for (int i = 0; i < bytes.length; i += Long.BYTES) {
+                long word = 0;
+                for (int j = i; j < Math.min(i + Long.BYTES, bytes.length); j++) {
+                    word = (word << 8) | (bytes[j] & 0xFF);
+                }
+                hash = add(hash, word);
+            }
+            return hash;
+        }
+
+        /**
+         * Unscaled value of a decimal of at most 18 digits, without allocating for the usual amounts and quantities.
+         * With at most 15 digits, the unscaled value is below 2<sup>50</sup>, so the relative error of the two
+         * roundings of the double is too small to be off by one after rounding back.
+         */
+        private static long unscaled(BigDecimal value) {
+            int scale = value.scale();
+            if (scale == 0) {
+                return value.longValueExact();
+            }
+            if (scale > 0 && scale < POWERS_OF_TEN.length && value.precision() <= 15) {
+                return Math.round(value.doubleValue() * POWERS_OF_TEN[scale]);
+            }
+            return value.movePointRight(scale).longValueExact();
+        }
+
+        /** Mix a field into a hash. The constant keeps zero fields from leaving a zero hash unchanged */
+        private static long add(long hash, long field) {
+            return mix((hash ^ field) + 0x9E3779B97F4A7C15L);
+        }
+
+        /** Finalizer of SplitMix64, spreads every bit of the input on the whole output */
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return epochDay == key.epochDay && yearLength == key.yearLength && priceVersion == key.priceVersion
+                && transactionCount == key.transactionCount
+                && hash1 == key.hash1 && hash2 == key.hash2;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash1);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a return on investment calculation. There is one per calculation, so a threshold can be
+ * set in the recording settings to only keep the slow ones.
+ */
+@Name("pro.tremblay.core.RoiCalculation")
+@Label("ROI Calculation")
+@Category("Reporting")
+@Description("Calculation of the return on investment of a position")
+final class RoiCalculationEvent extends Event {
+
+    @Label("Account")
+    @Description("Account of the position, only known when calculating many portfolios at once")
+    String account;
+
+    @Label("Transactions")
+    @Description("Number of transactions given to the calculation")
+    long transactionCount;
+
+    @Label("Year to Date Transactions")
+    @Description("Number of transactions reverted since the beginning of the year")
+    long yearToDateTransactionCount;
+
+    @Label("Securities")
+    @Description("Number of securities in the current position")
+    int securityCount;
+
+    @Label("Fixed Decimal")
+    @Description("If the calculation was done with fixed decimals instead of falling back to BigDecimal")
+    boolean fixedDecimal;
+
+    @Label("Missing Price")
+    @Description("If the calculation failed because a price wasn't found")
+    boolean missingPrice;
+}
@@ -15,15 +15,130 @@
  */
 package pro.tremblay.core;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * Enumeration listing useful available security. In real-life it would be a full-fledged java object but to keep
- * things simple, it's just an enum.
+ * A security identified by its ticker symbol. Securities are interned: there is only one instance per symbol, so they
+ * can be compared with {@code ==}. Each one gets a compact id, in creation order starting at 0, to index arrays with,
+ * like an enum ordinal. Securities are never removed.
  */
 @ThreadSafe
-public enum Security {
-    APPL,
-    GOOGL,
-    IBM
+public final class Security {
+
+    private static final ConcurrentMap<String, Security> BY_SYMBOL = new ConcurrentHashMap<>();
+    /** Securities indexed by id. Replaced by a bigger copy when full, only the first {@link #count} are set */
+    private static volatile Security[] byId = new Security[16];
+    /** Number of securities, written after the security is put in {@link #byId} to publish it */
+    private static volatile int count;
+
+    public static final Security APPL = of("APPL");
+    public static final Security GOOGL = of("GOOGL");
+    public static final Security IBM = of("IBM");
+
+    private final int id;
+    private final String symbol;
+
+    private Security(int id, String symbol) {
+        this.id = id;
+        this.symbol = symbol;
+    }
+
+    /**
+     * Get the security of a symbol, creating it the first time.
+     *
+     * @param symbol ticker symbol
+     * @return the only security with this symbol
+     */
+    @Nonnull
+    public static Security of(@Nonnull String symbol) {
+        Security security = BY_SYMBOL.get(symbol);
+        if (security != null) {
+            return security;
+        }
+        if (symbol.isEmpty()) {
+            throw new IllegalArgumentException("A symbol can't be empty");
+        }
+        synchronized (Security.class) {
+            security = BY_SYMBOL.get(symbol);
+            if (security == null) {
+                int id = count;
+                Security[] securities = byId;
+                if (id == securities.length) {
+                    securities = Arrays.copyOf(securities, id * 2);
+                    byId = securities;
+                }
+                security = new Security(id, symbol);
+                securities[id] = security;
+                count = id + 1;
+                BY_SYMBOL.put(symbol, security);
+            }
+        }
+        return security;
+    }
+
+    /**
+     * Get the security of a symbol if it exists.
+     *
+     * @param symbol ticker symbol
+     * @return the security or null if none has this symbol
+     */
+    @Nullable
+    public static Security find(@Nonnull String symbol) {
+        return BY_SYMBOL.get(symbol);
+    }
+
+    /**
+     * @param id id of an existing security
+     * @return the security with this id
+     */
+    @Nonnull
+    public static Security byId(int id) {
+        if (id < 0 || id >= count) {
+            throw new IllegalArgumentException("No security with id " + id);
+        }
+        return byId[id];
+    }
+
+    /**
+     * @return number of securities, which is also the first id that isn't used yet
+     */
+    public static int count() {
+        return count;
+    }
+
+    /**
+     * @return unmodifiable view of the securities existing at the time of the call, indexed by id. Nothing is copied
+     */
+    @Nonnull
+    public static List<Security> values() {
+        // Read the count first, the array is then at least as large and its first ids never change
+        int size = count;
+        return Collections.unmodifiableList(Arrays.asList(byId).subList(0, size));
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Nonnull
+    public String getSymbol() {
+        return symbol;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return symbol;
+    }
 }
@@ -22,7 +22,7 @@ import java.math.BigDecimal;
  * Quantity possessed of a given security.
  */
 @NotThreadSafe
-public class SecurityPosition {
+public class SecurityPosition implements SecurityQuantity {
 
     private Security security;
     private BigDecimal quantity;
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Security positions of an {@link ImmutablePosition}. It is a persistent list: an update returns a new list sharing
+ * everything but the path to the changed element with the original.
+ * <p>
+ * The positions are kept in the order they were added, in the slots of a 32-way trie. Each node counts the positions
+ * under it, so a removed position just leaves an empty slot and the i-th position is still found in a few steps. The
+ * slots are compacted once they are mostly empty. A second trie indexed by {@link Security#getId()} gives the slot of
+ * each security. So finding, replacing, adding and removing a security position are O(log n) instead of a copy of the
+ * whole list.
+ * <p>
+ * A security appearing more than once is indexed by its first position. Removing it then rebuilds the list, it only
+ * happens with a list built like that.
+ */
+@Immutable
+final class SecurityPositionList extends AbstractList<ImmutableSecurityPosition> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final SecurityPositionList EMPTY = new SecurityPositionList(Node.EMPTY, 0, 0, Node.EMPTY, 0, false);
+
+    /** Trie of the positions by slot */
+    private final Node slots;
+    private final int slotShift;
+    /** Number of slots used, including the empty ones */
+    private final int slotCount;
+    /** Trie of the slots, as {@code Integer}, by security id */
+    private final Node index;
+    private final int indexShift;
+    /** If a security appears more than once */
+    private final boolean duplicates;
+
+    /**
+     * Node of a trie. The children are nodes, or the values on the last level. Immutable once built.
+     */
+    private static final class Node {
+
+        static final Node EMPTY = new Node(new Object[WIDTH], 0);
+
+        final Object[] children;
+        /** Number of values under this node */
+        final int count;
+
+        Node(Object[] children, int count) {
+            this.children = children;
+            this.count = count;
+        }
+    }
+
+    private SecurityPositionList(Node slots, int slotShift, int slotCount, Node index, int indexShift, boolean duplicates) {
+        this.slots = slots;
+        this.slotShift = slotShift;
+        this.slotCount = slotCount;
+        this.index = index;
+        this.indexShift = indexShift;
+        this.duplicates = duplicates;
+    }
+
+    /**
+     * @param securityPositions positions to put in the list
+     * @return the same list if it already is one, otherwise a list with the same positions in the same order
+     */
+    @Nonnull
+    static SecurityPositionList of(@Nonnull Collection<ImmutableSecurityPosition> securityPositions) {
+        if (securityPositions instanceof SecurityPositionList) {
+            return (SecurityPositionList) securityPositions;
+        }
+        SecurityPositionList list = EMPTY;
+        for (ImmutableSecurityPosition securityPosition : securityPositions) {
+            list = list.append(securityPosition);
+        }
+        return list;
+    }
+
+    @Override
+    public int size() {
+        return slots.count;
+    }
+
+    @Override
+    public ImmutableSecurityPosition get(int i) {
+        if (i < 0 || i >= size()) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + size());
+        }
+        Node node = slots;
+        for (int shift = slotShift; shift > 0; shift -= BITS) {
+            for (Object child : node.children) {
+                int count = child == null ? 0 : ((Node) child).count;
+                if (i < count) {
+                    node = (Node) child;
+                    break;
+                }
+                i -= count;
+            }
+        }
+        for (Object child : node.children) {
+            if (child != null && i-- == 0) {
+                return (ImmutableSecurityPosition) child;
+            }
+        }
+        throw new AssertionError("The counts don't match the positions");
+    }
+
+    @Override
+    public Iterator<ImmutableSecurityPosition> iterator() {
+        return new Iterator<>() {
+            private int slot = next(0);
+
+            private int next(int from) {
+                while (from < slotCount && lookup(slots, slotShift, from) == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return slot < slotCount;
+            }
+
+            @Override
+            public ImmutableSecurityPosition next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ImmutableSecurityPosition securityPosition = (ImmutableSecurityPosition) lookup(slots, slotShift, slot);
+                slot = next(slot + 1);
+                return securityPosition;
+            }
+        };
+    }
+
+    /**
+     * @param security the security
+     * @return its first position or null if there is none
+     */
+    @Nullable
+    ImmutableSecurityPosition find(@Nonnull Security security) {
+        int slot = slotOf(security);
+        return slot < 0 ? null : (ImmutableSecurityPosition) lookup(slots, slotShift, slot);
+    }
+
+    /**
+     * @param securityPosition the new position of its security
+     * @return a list where it replaces the first position of the security, or is added at the end if there is none
+     */
+    @Nonnull
+    SecurityPositionList with(@Nonnull ImmutableSecurityPosition securityPosition) {
+        int slot = slotOf(securityPosition.security());
+        if (slot < 0) {
+            return append(securityPosition);
+        }
+        return new SecurityPositionList(update(slots, slotShift, slot, securityPosition), slotShift, slotCount, index, indexShift, duplicates);
+    }
+
+    /**
+     * @param security the security
+     * @return a list without any position of this security
+     */
+    @Nonnull
+    SecurityPositionList without(@Nonnull Security security) {
+        int slot = slotOf(security);
+        if (slot < 0) {
+            return this;
+        }
+        if (duplicates) {
+            SecurityPositionList list = EMPTY;
+            for (ImmutableSecurityPosition securityPosition : this) {
+                if (securityPosition.security() != security) {
+                    list = list.append(securityPosition);
+                }
+            }
+            return list;
+        }
+        SecurityPositionList list = new SecurityPositionList(update(slots, slotShift, slot, null), slotShift, slotCount,
+            update(index, indexShift, security.getId(), null), indexShift, false);
+        // Compact once at least half the slots are empty, so it costs O(1) per removal on average
+        if (list.slotCount > WIDTH && list.slotCount > 2 * list.size()) {
+            SecurityPositionList compacted = EMPTY;
+            for (ImmutableSecurityPosition securityPosition : list) {
+                compacted = compacted.append(securityPosition);
+            }
+            return compacted;
+        }
+        return list;
+    }
+
+    private SecurityPositionList append(ImmutableSecurityPosition securityPosition) {
+        Security security = securityPosition.security();
+        boolean indexed = slotOf(security) >= 0;
+
+        Node newSlots = slots;
+        int newSlotShift = slotShift;
+        if (slotCount >= 1 << (slotShift + BITS)) {
+            newSlots = grow(slots);
+            newSlotShift += BITS;
+        }
+        newSlots = update(newSlots, newSlotShift, slotCount, securityPosition);
+
+        Node newIndex = index;
+        int newIndexShift = indexShift;
+        if (!indexed) {
+            while (security.getId() >= 1 << (newIndexShift + BITS)) {
+                newIndex = grow(newIndex);
+                newIndexShift += BITS;
+            }
+            newIndex = update(newIndex, newIndexShift, security.getId(), slotCount);
+        }
+        return new SecurityPositionList(newSlots, newSlotShift, slotCount + 1, newIndex, newIndexShift, duplicates || indexed);
+    }
+
+    private int slotOf(Security security) {
+        if (security.getId() >= 1 << (indexShift + BITS)) {
+            return -1;
+        }
+        Integer slot = (Integer) lookup(index, indexShift, security.getId());
+        return slot == null ? -1 : slot;
+    }
+
+    @Nullable
+    private static Object lookup(Node node, int shift, int key) {
+        for (; shift > 0; shift -= BITS) {
+            node = (Node) node.children[(key >>> shift) & MASK];
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.children[key & MASK];
+    }
+
+    /**
+     * @return a copy of the path to the key with the new value, null to remove it. The rest of the trie is shared
+     */
+    private static Node update(@Nullable Node node, int shift, int key, @Nullable Object value) {
+        Object[] children = node == null ? new Object[WIDTH] : node.children.clone();
+        int count = node == null ? 0 : node.count;
+        int i = (key >>> shift) & MASK;
+        if (shift == 0) {
+            count += (value == null ? 0 : 1) - (children[i] == null ? 0 : 1);
+            children[i] = value;
+        } else {
+            Node child = (Node) children[i];
+            Node updated = update(child, shift - BITS, key, value);
+            count += updated.count - (child == null ? 0 : child.count);
+            children[i] = updated.count == 0 ? null : updated;
+        }
+        return new Node(children, count);
+    }
+
+    /**
+     * @return a root one level higher, with the current root as its first child
+     */
+    private static Node grow(Node root) {
+        Object[] children = new Object[WIDTH];
+        children[0] = root.count == 0 ? null : root;
+        return new Node(children, root.count);
+    }
+}
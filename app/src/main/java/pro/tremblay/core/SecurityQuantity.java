@@ -0,0 +1,29 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import java.math.BigDecimal;
+
+/**
+ * Quantity held of a security, as read by the valuation. Implemented by {@link SecurityPosition} and
+ * {@link ImmutableSecurityPosition} so both are valued by the same code.
+ */
+interface SecurityQuantity {
+
+    Security getSecurity();
+
+    BigDecimal getQuantity();
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Many transactions stored column by column in primitive arrays. Each transaction takes 25 bytes instead of a
+ * {@link Transaction} and its five objects. The amounts and quantities are {@link FixedDecimal}.
+ * <p>
+ * A batch is immutable once built.
+ */
+@ThreadSafe
+public final class TransactionBatch {
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final int NO_SECURITY = -1;
+
+    private final int size;
+    /** {@link TransactionType#ordinal()} of each transaction */
+    private final byte[] types;
+    private final int[] epochDays;
+    private final long[] cash;
+    /** {@link Security#getId()} of each transaction, {@link #NO_SECURITY} if none */
+    private final int[] securities;
+    private final long[] quantities;
+
+    private TransactionBatch(Builder builder) {
+        this.size = builder.size;
+        this.types = Arrays.copyOf(builder.types, size);
+        this.epochDays = Arrays.copyOf(builder.epochDays, size);
+        this.cash = Arrays.copyOf(builder.cash, size);
+        this.securities = Arrays.copyOf(builder.securities, size);
+        this.quantities = Arrays.copyOf(builder.quantities, size);
+    }
+
+    /**
+     * Create a batch containing all the given transactions in the same order.
+     *
+     * @param transactions transactions to put in the batch
+     * @throws ArithmeticException if an amount or a quantity doesn't fit in a {@link FixedDecimal}
+     * @return the batch
+     */
+    @Nonnull
+    public static TransactionBatch of(@Nonnull Collection<Transaction> transactions) {
+        Builder builder = builder(transactions.size());
+        for (Transaction transaction : transactions) {
+            builder.add(transaction);
+        }
+        return builder.build();
+    }
+
+    @Nonnull
+    public static Builder builder(int capacity) {
+        return new Builder(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Nonnull
+    public TransactionType getType(int index) {
+        return TYPES[types[checkIndex(index)]];
+    }
+
+    public long getEpochDay(int index) {
+        return epochDays[checkIndex(index)];
+    }
+
+    @Nonnull
+    public LocalDate getDate(int index) {
+        return LocalDate.ofEpochDay(getEpochDay(index));
+    }
+
+    /**
+     * @param index index of the transaction
+     * @return the cash as a {@link FixedDecimal}
+     */
+    public long getCash(int index) {
+        return cash[checkIndex(index)];
+    }
+
+    @Nullable
+    public Security getSecurity(int index) {
+        int security = securities[checkIndex(index)];
+        return security == NO_SECURITY ? null : Security.byId(security);
+    }
+
+    /**
+     * @param index index of the transaction
+     * @return the quantity as a {@link FixedDecimal}
+     */
+    public long getQuantity(int index) {
+        return quantities[checkIndex(index)];
+    }
+
+    /**
+     * Create a new {@link Transaction} from one of the batch.
+     *
+     * @param index index of the transaction
+     * @return a transaction with the same values as the one added to the batch
+     */
+    @Nonnull
+    public Transaction toTransaction(int index) {
+        return new Transaction()
+            .type(getType(index))
+            .date(getDate(index))
+            .cash(FixedDecimal.toBigDecimal(getCash(index)))
+            .security(getSecurity(index))
+            .quantity(FixedDecimal.toBigDecimal(getQuantity(index)));
+    }
+
+    /**
+     * Create a new {@link Transaction} for each transaction of the batch.
+     *
+     * @return the transactions in the batch order
+     */
+    @Nonnull
+    public List<Transaction> toTransactions() {
+        List<Transaction> transactions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            transactions.add(toTransaction(i));
+        }
+        return transactions;
+    }
+
+    private int checkIndex(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        return index;
+    }
+
+    /**
+     * Builder of a {@link TransactionBatch}. The arrays grow as needed.
+     */
+    @NotThreadSafe
+    public static final class Builder {
+
+        private int size;
+        private byte[] types;
+        private int[] epochDays;
+        private long[] cash;
+        private int[] securities;
+        private long[] quantities;
+
+        private Builder(int capacity) {
+            types = new byte[capacity];
+            epochDays = new int[capacity];
+            cash = new long[capacity];
+            securities = new int[capacity];
+            quantities = new long[capacity];
+        }
+
+        /**
+         * Add a transaction to the batch.
+         *
+         * @param transaction transaction to add
+         * @throws ArithmeticException if the amount or the quantity doesn't fit in a {@link FixedDecimal}
+         * @return this builder
+         */
+        @Nonnull
+        public Builder add(@Nonnull Transaction transaction) {
+            long transactionCash = FixedDecimal.of(transaction.getCash());
+            long transactionQuantity = transaction.getQuantity() == null ? 0 : FixedDecimal.of(transaction.getQuantity());
+            if (transactionCash == FixedDecimal.OVERFLOW || transactionQuantity == FixedDecimal.OVERFLOW) {
+                throw new ArithmeticException("Can't store " + transaction + " in a batch, an amount has too many digits");
+            }
+            return add(transaction.getType(), transaction.getDate(), transactionCash, transaction.getSecurity(), transactionQuantity);
+        }
+
+        /**
+         * Add a transaction to the batch.
+         *
+         * @param type type of transaction
+         * @param date date of the transaction
+         * @param transactionCash cash exchanged as a {@link FixedDecimal}
+         * @param security security exchanged, null if none
+         * @param quantity quantity exchanged as a {@link FixedDecimal}
+         * @return this builder
+         */
+        @Nonnull
+        public Builder add(@Nonnull TransactionType type, @Nonnull LocalDate date, long transactionCash, @Nullable Security security, long quantity) {
+            return add(type, Math.toIntExact(date.toEpochDay()), transactionCash, security, quantity);
+        }
+
+        /**
+         * Add a transaction to the batch.
+         *
+         * @param type type of transaction
+         * @param epochDay date of the transaction as an epoch day
+         * @param transactionCash cash exchanged as a {@link FixedDecimal}
+         * @param security security exchanged, null if none
+         * @param quantity quantity exchanged as a {@link FixedDecimal}
+         * @return this builder
+         */
+        @Nonnull
+        public Builder add(@Nonnull TransactionType type, int epochDay, long transactionCash, @Nullable Security security, long quantity) {
+            if (size == types.length) {
+                grow();
+            }
+            types[size] = (byte) type.ordinal();
+            epochDays[size] = epochDay;
+            cash[size] = transactionCash;
+            securities[size] = security == null ? NO_SECURITY : security.getId();
+            quantities[size] = quantity;
+            size++;
+            return this;
+        }
+
+        /**
+         * Add all the transactions of another batch, in the same order.
+         *
+         * @param batch transactions to add
+         * @return this builder
+         */
+        @Nonnull
+        public Builder addAll(@Nonnull TransactionBatch batch) {
+            if (size + batch.size > types.length) {
+                grow(size + batch.size);
+            }
+            System.arraycopy(batch.types, 0, types, size, batch.size);
+            System.arraycopy(batch.epochDays, 0, epochDays, size, batch.size);
+            System.arraycopy(batch.cash, 0, cash, size, batch.size);
+            System.arraycopy(batch.securities, 0, securities, size, batch.size);
+            System.arraycopy(batch.quantities, 0, quantities, size, batch.size);
+            size += batch.size;
+            return this;
+        }
+
+        private void grow() {
+            grow(Math.max(16, types.length * 2));
+        }
+
+        private void grow(int capacity) {
+            types = Arrays.copyOf(types, capacity);
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            cash = Arrays.copyOf(cash, capacity);
+            securities = Arrays.copyOf(securities, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+        }
+
+        @Nonnull
+        public TransactionBatch build() {
+            return new TransactionBatch(this);
+        }
+    }
+}
@@ -0,0 +1,548 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Import a CSV file of transactions, as exported by our accounts, into a list of {@link Transaction} or a
+ * {@link TransactionBatch}. The file has a header line followed by a transaction per line:
+ * <pre>
+ * type,date,cash,security,quantity
+ * DEPOSIT,2023-01-03,1000,,
+ * BUY,2023-01-10,100.50,GOOGL,1
+ * </pre>
+ * The type is the name of a {@link TransactionType}, the date is in ISO format and the security and quantity are
+ * empty when the type has none. Lines can end with {@code \n} or {@code \r\n}, empty lines are ignored.
+ * <p>
+ * The file is read by segments of about 16 MB, cut at line boundaries, straight into an array reused from one segment
+ * to the next. It isn't mapped: the parser reads an array faster than a mapped buffer, so a mapped segment would be
+ * copied anyway. Fields are parsed from the bytes
+ * without creating a {@code String}: the type and the security are found by comparing their bytes and the decimals are
+ * accumulated in a {@code long}. A decimal with more than 18 digits or in scientific notation is parsed by
+ * {@code BigDecimal} instead, with the same result. Unknown securities are created. With {@link #parallel(boolean)},
+ * the segments are parsed in parallel on the common fork-join pool. The transactions are always in the file order.
+ */
+@NotThreadSafe
+public final class TransactionCsvReader {
+
+    static final String HEADER = "type,date,cash,security,quantity";
+
+    private static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    /** Size of a short line, to size the result of a segment */
+    private static final int BYTES_PER_LINE = 24;
+    /** Maximum number of transactions the result is sized for at first, it grows past that if needed */
+    private static final int MAX_INITIAL_CAPACITY = 1 << 20;
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final byte[][] TYPE_NAMES = new byte[TYPES.length][];
+
+    static {
+        for (int i = 0; i < TYPES.length; i++) {
+            TYPE_NAMES[i] = TYPES[i].name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private boolean parallel;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    /**
+     * @param parallel if the segments of the file should be parsed in parallel, false by default
+     * @return this reader
+     */
+    @Nonnull
+    public TransactionCsvReader parallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * @param segmentSize approximate size in bytes of each segment read and parsed at once
+     * @return this reader
+     */
+    @Nonnull
+    TransactionCsvReader segmentSize(int segmentSize) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segmentSize should be positive: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * Read all the transactions of a file.
+     *
+     * @param file the CSV file
+     * @return the transactions in the file order
+     * @throws IOException if the file can't be read or doesn't have the expected header
+     * @throws IllegalArgumentException if a line is invalid
+     */
+    @Nonnull
+    public List<Transaction> readTransactions(@Nonnull Path file) throws IOException {
+        List<TransactionSink> parts = read(file, TransactionSink::new);
+        if (parts.size() == 1) {
+            return parts.get(0).transactions;
+        }
+        List<Transaction> transactions = new ArrayList<>(parts.stream().mapToInt(part -> part.transactions.size()).sum());
+        for (TransactionSink part : parts) {
+            transactions.addAll(part.transactions);
+        }
+        return transactions;
+    }
+
+    /**
+     * Read all the transactions of a file in a batch.
+     *
+     * @param file the CSV file
+     * @return the transactions in the file order
+     * @throws IOException if the file can't be read or doesn't have the expected header
+     * @throws IllegalArgumentException if a line is invalid
+     * @throws ArithmeticException if an amount or a quantity doesn't fit in a {@link FixedDecimal}
+     */
+    @Nonnull
+    public TransactionBatch readBatch(@Nonnull Path file) throws IOException {
+        List<BatchSink> parts = read(file, BatchSink::new);
+        if (parts.size() == 1) {
+            return parts.get(0).builder.build();
+        }
+        List<TransactionBatch> batches = parts.stream().map(part -> part.builder.build()).collect(Collectors.toList());
+        TransactionBatch.Builder builder = TransactionBatch.builder(batches.stream().mapToInt(TransactionBatch::size).sum());
+        for (TransactionBatch batch : batches) {
+            builder.addAll(batch);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param sinks creates the sink of a segment from its expected number of transactions
+     */
+    private <S extends Sink> List<S> read(Path file, IntFunction<S> sinks) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer lineBuffer = ByteBuffer.allocate(256);
+            long headerEnd = lineStart(channel, lineBuffer, 1, size);
+            ByteBuffer header = ByteBuffer.allocate((int) Math.min(headerEnd, HEADER.length() + 3));
+            channel.read(header, 0);
+            if (!new String(header.array(), 0, header.position(), StandardCharsets.UTF_8).trim().equalsIgnoreCase(HEADER)) {
+                throw new IOException(file + " is not a transaction file, expected header '" + HEADER + "'");
+            }
+
+            // Segment i goes from starts[i] to starts[i + 1], each one starting at the beginning of a line
+            int segmentCount = (int) Math.max(1, (size - headerEnd + segmentSize - 1) / segmentSize);
+            long[] starts = new long[segmentCount + 1];
+            starts[0] = headerEnd;
+            for (int i = 1; i < segmentCount; i++) {
+                starts[i] = Math.max(starts[i - 1], lineStart(channel, lineBuffer, headerEnd + (long) i * segmentSize, size));
+            }
+            starts[segmentCount] = size;
+
+            try {
+                if (!parallel) {
+                    // All segments in the same result, nothing to concatenate
+                    S sink = sinks.apply(capacity(headerEnd, size));
+                    SegmentParser parser = new SegmentParser(file, sink);
+                    for (int i = 0; i < segmentCount; i++) {
+                        parse(channel, starts[i], starts[i + 1], parser);
+                    }
+                    return List.of(sink);
+                }
+                return IntStream.range(0, segmentCount)
+                    .parallel()
+                    .mapToObj(i -> {
+                        S sink = sinks.apply(capacity(starts[i], starts[i + 1]));
+                        parse(channel, starts[i], starts[i + 1], new SegmentParser(file, sink));
+                        return sink;
+                    })
+                    .collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * @return expected number of transactions between two positions, a bit more to avoid growing the result, but not
+     * so much that a large file allocates a huge result before anything is parsed
+     */
+    private static int capacity(long start, long end) {
+        return (int) Math.min(MAX_INITIAL_CAPACITY, (end - start) / BYTES_PER_LINE);
+    }
+
+    /**
+     * @return the position following the first end of line at or after {@code position - 1}, the size if none
+     */
+    private static long lineStart(FileChannel channel, ByteBuffer buffer, long position, long size) throws IOException {
+        long current = position - 1;
+        while (current < size) {
+            buffer.clear();
+            int read = channel.read(buffer, current);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return current + i + 1;
+                }
+            }
+            current += read;
+        }
+        return size;
+    }
+
+    private static void parse(FileChannel channel, long start, long end, SegmentParser parser) {
+        if (start >= end) {
+            return;
+        }
+        try {
+            parser.parse(channel, start, end);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Receives the transactions parsed */
+    private interface Sink {
+        void add(TransactionType type, int epochDay, Decimal cash, @Nullable Security security, Decimal quantity, long offset);
+    }
+
+    private static final class TransactionSink implements Sink {
+        final List<Transaction> transactions;
+        /** Last date created, to share it with the following transactions of the same day */
+        private LocalDate date = LocalDate.MIN;
+
+        TransactionSink(int capacity) {
+            transactions = new ArrayList<>(capacity);
+        }
+
+        @Override
+        public void add(TransactionType type, int epochDay, Decimal cash, @Nullable Security security, Decimal quantity, long offset) {
+            if (date.toEpochDay() != epochDay) {
+                date = LocalDate.ofEpochDay(epochDay);
+            }
+            transactions.add(new Transaction()
+                .type(type)
+                .date(date)
+                .cash(cash.toBigDecimal())
+                .security(security)
+                .quantity(quantity.toBigDecimal()));
+        }
+    }
+
+    private static final class BatchSink implements Sink {
+        final TransactionBatch.Builder builder;
+
+        BatchSink(int capacity) {
+            builder = TransactionBatch.builder(capacity);
+        }
+
+        @Override
+        public void add(TransactionType type, int epochDay, Decimal cash, @Nullable Security security, Decimal quantity, long offset) {
+            long fixedCash = cash.toFixed();
+            long fixedQuantity = quantity.toFixed();
+            if (fixedCash == FixedDecimal.OVERFLOW || fixedQuantity == FixedDecimal.OVERFLOW) {
+                throw new ArithmeticException("Can't store the transaction at offset " + offset + " in a batch, an amount has too many digits");
+            }
+            builder.add(type, epochDay, fixedCash, security, fixedQuantity);
+        }
+    }
+
+    /** Decimal being parsed, reused for each field */
+    private static final class Decimal {
+        long unscaled;
+        int scale;
+        /** The value if it doesn't fit in {@link #unscaled}, null otherwise */
+        BigDecimal big;
+
+        BigDecimal toBigDecimal() {
+            return big != null ? big : BigDecimal.valueOf(unscaled, scale);
+        }
+
+        long toFixed() {
+            return big != null ? FixedDecimal.of(big) : FixedDecimal.rescale(unscaled, scale, FixedDecimal.SCALE);
+        }
+    }
+
+    /** Parses the lines of segments, one after the other */
+    @NotThreadSafe
+    private static final class SegmentParser {
+        private static final int MAX_LONG_DIGITS = 18;
+
+        private final Path file;
+        /** Content of the segment */
+        private byte[] bytes = new byte[0];
+        /** Position of the segment in the file */
+        private long base;
+        private final Sink sink;
+        private final Decimal cash = new Decimal();
+        private final Decimal quantity = new Decimal();
+
+        /** Last date parsed as {@code yyyyMMdd} and its epoch day */
+        private int lastDate = -1;
+        private int lastEpochDay;
+
+        /** Open addressing table of the securities met, by symbol bytes */
+        private byte[][] symbols = new byte[16][];
+        private Security[] securities = new Security[16];
+        private int securityCount;
+
+        SegmentParser(Path file, Sink sink) {
+            this.file = file;
+            this.sink = sink;
+        }
+
+        /**
+         * @param channel the file
+         * @param start position of the segment in the file, at the beginning of a line
+         * @param end position of the end of the segment, at the end of a line or of the file
+         */
+        void parse(FileChannel channel, long start, long end) throws IOException {
+            int limit = Math.toIntExact(end - start);
+            if (bytes.length < limit) {
+                bytes = new byte[limit];
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, limit);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new EOFException(file + " was truncated while being read");
+                }
+            }
+            this.base = start;
+
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && bytes[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                int next = lineEnd + 1;
+                if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+                    lineEnd--;
+                }
+                if (lineEnd > lineStart) {
+                    parseLine(lineStart, lineEnd);
+                }
+                lineStart = next;
+            }
+        }
+
+        private void parseLine(int start, int end) {
+            int c0 = comma(start, end);
+            int c1 = comma(c0 + 1, end);
+            int c2 = comma(c1 + 1, end);
+            int c3 = comma(c2 + 1, end);
+            if (c3 == end || comma(c3 + 1, end) != end) {
+                throw invalid("Expected 5 fields", start, end);
+            }
+            TransactionType type = type(start, c0);
+            int epochDay = date(c0 + 1, c1);
+            if (c2 == c1 + 1) {
+                throw invalid("Missing cash", start, end);
+            }
+            decimal(c1 + 1, c2, cash);
+            Security security = c3 == c2 + 1 ? null : security(c2 + 1, c3);
+            decimal(c3 + 1, end, quantity);
+            sink.add(type, epochDay, cash, security, quantity, base + start);
+        }
+
+        /** @return position of the next comma or the end */
+        private int comma(int from, int end) {
+            int i = from;
+            while (i < end && bytes[i] != ',') {
+                i++;
+            }
+            return Math.min(i, end);
+        }
+
+        private TransactionType type(int from, int to) {
+            int length = to - from;
+            for (int i = 0; i < TYPE_NAMES.length; i++) {
+                if (TYPE_NAMES[i].length == length && equals(TYPE_NAMES[i], from)) {
+                    return TYPES[i];
+                }
+            }
+            throw invalid("Unknown transaction type", from, to);
+        }
+
+        private int date(int from, int to) {
+            if (to - from != 10 || bytes[from + 4] != '-' || bytes[from + 7] != '-') {
+                throw invalid("Invalid date", from, to);
+            }
+            int year = digits(from, from + 4);
+            int month = digits(from + 5, from + 7);
+            int day = digits(from + 8, from + 10);
+            if (year < 0 || month < 0 || day < 0) {
+                throw invalid("Invalid date", from, to);
+            }
+            int date = year * 10_000 + month * 100 + day;
+            if (date != lastDate) {
+                try {
+                    lastEpochDay = Math.toIntExact(LocalDate.of(year, month, day).toEpochDay());
+                } catch (DateTimeException e) {
+                    throw invalid("Invalid date", from, to);
+                }
+                lastDate = date;
+            }
+            return lastEpochDay;
+        }
+
+        /** @return the number or -1 if a byte isn't a digit */
+        private int digits(int from, int to) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        private void decimal(int from, int to, Decimal decimal) {
+            decimal.big = null;
+            int i = from;
+            boolean negative = false;
+            if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+                negative = bytes[i] == '-';
+                i++;
+            }
+            long unscaled = 0;
+            int scale = 0;
+            int significantDigits = 0;
+            boolean anyDigit = false;
+            boolean dot = false;
+            for (; i < to; i++) {
+                byte b = bytes[i];
+                if (b >= '0' && b <= '9') {
+                    if ((unscaled != 0 || b != '0') && ++significantDigits > MAX_LONG_DIGITS) {
+                        bigDecimal(from, to, decimal);
+                        return;
+                    }
+                    unscaled = unscaled * 10 + (b - '0');
+                    anyDigit = true;
+                    if (dot) {
+                        scale++;
+                    }
+                } else if (b == '.' && !dot) {
+                    dot = true;
+                } else {
+                    bigDecimal(from, to, decimal);
+                    return;
+                }
+            }
+            if (!anyDigit) {
+                if (from == to) {
+                    // An empty quantity is zero
+                    decimal.unscaled = 0;
+                    decimal.scale = 0;
+                    return;
+                }
+                throw invalid("Invalid decimal", from, to);
+            }
+            decimal.unscaled = negative ? -unscaled : unscaled;
+            decimal.scale = scale;
+        }
+
+        private void bigDecimal(int from, int to, Decimal decimal) {
+            try {
+                decimal.big = new BigDecimal(text(from, to));
+            } catch (NumberFormatException e) {
+                throw invalid("Invalid decimal", from, to);
+            }
+        }
+
+        private Security security(int from, int to) {
+            int hash = 0;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            int mask = symbols.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (symbols[slot] != null) {
+                if (symbols[slot].length == to - from && equals(symbols[slot], from)) {
+                    return securities[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            String symbol = text(from, to);
+            Security security;
+            try {
+                security = Security.of(symbol);
+            } catch (IllegalArgumentException e) {
+                throw invalid("Invalid security", from, to);
+            }
+            symbols[slot] = symbol.getBytes(StandardCharsets.UTF_8);
+            securities[slot] = security;
+            if (++securityCount * 2 > symbols.length) {
+                growSecurities();
+            }
+            return security;
+        }
+
+        private void growSecurities() {
+            byte[][] oldSymbols = symbols;
+            Security[] oldSecurities = securities;
+            symbols = new byte[oldSymbols.length * 2][];
+            securities = new Security[oldSymbols.length * 2];
+            int mask = symbols.length - 1;
+            for (int i = 0; i < oldSymbols.length; i++) {
+                if (oldSymbols[i] != null) {
+                    int hash = 0;
+                    for (byte b : oldSymbols[i]) {
+                        hash = 31 * hash + b;
+                    }
+                    int slot = (hash ^ (hash >>> 16)) & mask;
+                    while (symbols[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    symbols[slot] = oldSymbols[i];
+                    securities[slot] = oldSecurities[i];
+                }
+            }
+        }
+
+        private boolean equals(byte[] expected, int from) {
+            return Arrays.equals(bytes, from, from + expected.length, expected, 0, expected.length);
+        }
+
+        private String text(int from, int to) {
+            return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+        }
+
+        private IllegalArgumentException invalid(String message, int from, int to) {
+            return new IllegalArgumentException(message + " '" + text(from, to) + "' at offset " + (base + from) + " of " + file);
+        }
+    }
+}
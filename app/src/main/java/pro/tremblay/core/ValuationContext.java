@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Inputs shared by every return on investment calculation made over the same period: the dates, the year length and
+ * the security prices. Resolving them once allows to calculate many positions without going back to the preferences
+ * each time. The initial prices are the ones at the start of the period and the current prices the ones at its end.
+ * <p>
+ * The prices are read from the {@link PriceTables.Snapshot} of each day, indexed by {@link Security#getId()} and
+ * shared with every other calculation on the same days. So a context allocates nothing per security and a price is an
+ * array read.
+ */
+@ThreadSafe
+final class ValuationContext {
+
+    private final LocalDate start;
+    private final LocalDate end;
+    private final int days;
+    private final int yearLength;
+    private final PriceTables.Snapshot initialPrices;
+    private final PriceTables.Snapshot currentPrices;
+
+    /**
+     * Context of a calculation since the beginning of the year.
+     *
+     * @param now today
+     */
+    ValuationContext(@Nonnull LocalDate now) {
+        this(now.withDayOfYear(1), now);
+    }
+
+    /**
+     * @param start first day of the period
+     * @param end last day of the period
+     */
+    ValuationContext(@Nonnull LocalDate start, @Nonnull LocalDate end) {
+        this.start = start;
+        this.end = end;
+        this.days = Math.toIntExact(end.toEpochDay() - start.toEpochDay() + 1);
+        this.yearLength = Preferences.preferences().getInteger("LENGTH_OF_YEAR");
+        this.initialPrices = PriceService.getSnapshot(start);
+        this.currentPrices = PriceService.getSnapshot(end);
+    }
+
+    @Nonnull
+    LocalDate start() {
+        return start;
+    }
+
+    @Nonnull
+    LocalDate end() {
+        return end;
+    }
+
+    /**
+     * @return number of days in the period, both ends included
+     */
+    int days() {
+        return days;
+    }
+
+    int yearLength() {
+        return yearLength;
+    }
+
+    @Nonnull
+    BigDecimal initialPrice(@Nonnull Security security) {
+        return BigDecimal.valueOf(initialPrices.getPrice(security), PriceService.PRICE_SCALE);
+    }
+
+    @Nonnull
+    BigDecimal currentPrice(@Nonnull Security security) {
+        return BigDecimal.valueOf(currentPrices.getPrice(security), PriceService.PRICE_SCALE);
+    }
+
+    long initialFixedPrice(@Nonnull Security security) {
+        return FixedDecimal.rescale(initialPrices.getPrice(security), PriceService.PRICE_SCALE, FixedDecimal.SCALE);
+    }
+
+    long currentFixedPrice(@Nonnull Security security) {
+        return FixedDecimal.rescale(currentPrices.getPrice(security), PriceService.PRICE_SCALE, FixedDecimal.SCALE);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class AppendablePriceStoreTest {
+
+    private final LocalDate from = LocalDate.of(2020, 1, 1);
+    private final AppendablePriceStore store = new AppendablePriceStore(from);
+
+    @Test
+    public void empty() {
+        assertThat(store.getFirstDay()).isEqualTo(from);
+        assertThat(store.getLastDay()).isEqualTo(from.minusDays(1));
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> store.getPrice(from.toEpochDay(), Security.APPL))
+            .withMessage("No price for APPL on 2020-01-01");
+    }
+
+    @Test
+    public void append() {
+        store.append(new long[] { 100_00, 200_00, 300_00 });
+        store.append(new long[] { 101_00, 201_00, 301_00 });
+
+        assertThat(store.getLastDay()).isEqualTo(from.plusDays(1));
+        assertThat(store.getPrice(from.toEpochDay(), Security.APPL)).isEqualTo(100_00);
+        assertThat(store.getPrice(from.plusDays(1).toEpochDay(), Security.IBM)).isEqualTo(301_00);
+    }
+
+    @Test
+    public void append_manyDays() {
+        for (int day = 0; day < 100; day++) {
+            store.append(new long[] { day });
+        }
+        assertThat(store.getLastDay()).isEqualTo(from.plusDays(99));
+        assertThat(store.getPrice(from.plusDays(42).toEpochDay(), Security.APPL)).isEqualTo(42);
+    }
+
+    @Test
+    public void getPrice_securityMissingThatDay() {
+        store.append(new long[] { 100_00 });
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> store.getPrice(from.toEpochDay(), Security.GOOGL))
+            .withMessage("No price for GOOGL on 2020-01-01");
+    }
+
+    @Test
+    public void getPrice_afterLastDay() {
+        store.append(new long[] { 100_00 });
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> store.getPrice(from.plusDays(1).toEpochDay(), Security.APPL))
+            .withMessage("No price for APPL on 2020-01-02");
+    }
+}
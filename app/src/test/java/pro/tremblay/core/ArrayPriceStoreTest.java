@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ArrayPriceStoreTest {
+
+    private final LocalDate from = LocalDate.of(2020, 1, 1);
+    private final ArrayPriceStore store = new ArrayPriceStore(from, new long[][] {
+        { 100_00, 101_00 },
+        { 200_00, 201_00 },
+        { 300_00, 301_00 }
+    });
+
+    @Test
+    public void getPrice() {
+        assertThat(store.getPrice(from.toEpochDay(), Security.APPL)).isEqualTo(100_00);
+        assertThat(store.getPrice(from.plusDays(1).toEpochDay(), Security.IBM)).isEqualTo(301_00);
+    }
+
+    @Test
+    public void getPrice_beforeFirstDay() {
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> store.getPrice(from.minusDays(1).toEpochDay(), Security.GOOGL))
+            .withMessage("No price for GOOGL on 2019-12-31");
+    }
+
+    @Test
+    public void getPrice_afterLastDay() {
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> store.getPrice(from.plusDays(2).toEpochDay(), Security.GOOGL))
+            .withMessage("No price for GOOGL on 2020-01-03");
+    }
+}
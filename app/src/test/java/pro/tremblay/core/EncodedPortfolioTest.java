@@ -0,0 +1,290 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junitpioneer.jupiter.SetSystemProperty;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+
+@SetSystemProperty(key="LENGTH_OF_YEAR", value="360")
+public class EncodedPortfolioTest {
+
+    @TempDir
+    Path folder;
+
+    @BeforeEach
+    public void before() {
+        // The system properties set by the test are only seen after a reload
+        Preferences.preferences().reload();
+    }
+
+    private final Position position = new Position()
+        .cash(bd("12345.6789"))
+        .securityPositions(new ArrayList<>(Arrays.asList(
+            new SecurityPosition().security(Security.IBM).quantity(bd(10)),
+            new SecurityPosition().security(Security.GOOGL).quantity(new BigDecimal("-123456789012345678901234567890.5")))));
+
+    private final List<Transaction> transactions = Arrays.asList(
+        new Transaction()
+            .type(TransactionType.DEPOSIT)
+            .date(LocalDate.of(2020, 1, 2))
+            .cash(bd("100.25"))
+            .quantity(BigDecimal.ZERO),
+        new Transaction()
+            .type(TransactionType.BUY)
+            .date(LocalDate.of(2020, 3, 4))
+            .cash(bd(50))
+            .security(Security.APPL)
+            .quantity(bd("1.5")));
+
+    @Test
+    public void wrap_roundTrip() throws IOException {
+        EncodedPortfolio portfolio = EncodedPortfolio.wrap(encode(position, transactions));
+
+        assertThat(portfolio.getPosition()).usingRecursiveComparison().isEqualTo(position);
+        assertThat(portfolio.getTransactionCount()).isEqualTo(2);
+        assertThat(portfolio.getType(1)).isEqualTo(TransactionType.BUY);
+        assertThat(portfolio.getDate(1)).isEqualTo(LocalDate.of(2020, 3, 4));
+        assertThat(portfolio.getCash(1)).isEqualTo(FixedDecimal.of(bd(50)));
+        assertThat(portfolio.getSecurity(1)).isSameAs(Security.APPL);
+        assertThat(portfolio.getQuantity(1)).isEqualTo(FixedDecimal.of(bd("1.5")));
+        assertThat(portfolio.getSecurity(0)).isNull();
+
+        List<Transaction> decoded = portfolio.toTransactions();
+        assertThat(decoded).hasSize(2);
+        for (int i = 0; i < decoded.size(); i++) {
+            assertThat(decoded.get(i).getType()).isEqualTo(transactions.get(i).getType());
+            assertThat(decoded.get(i).getDate()).isEqualTo(transactions.get(i).getDate());
+            assertThat(decoded.get(i).getCash()).isEqualByComparingTo(transactions.get(i).getCash());
+            assertThat(decoded.get(i).getSecurity()).isSameAs(transactions.get(i).getSecurity());
+            assertThat(decoded.get(i).getQuantity()).isEqualByComparingTo(transactions.get(i).getQuantity());
+        }
+    }
+
+    @Test
+    public void wrap_fromTheBufferPosition() throws IOException {
+        ByteBuffer encoded = encode(position, transactions);
+        ByteBuffer buffer = ByteBuffer.allocate(encoded.remaining() + 3);
+        buffer.position(3);
+        buffer.put(encoded).position(3);
+
+        EncodedPortfolio portfolio = EncodedPortfolio.wrap(buffer);
+
+        assertThat(portfolio.getTransactionCount()).isEqualTo(2);
+        assertThat(buffer.position()).isEqualTo(3);
+    }
+
+    @Test
+    public void wrap_createsUnknownSecurities() throws IOException {
+        Security security = Security.of("ENCODED");
+        List<Transaction> transactions = Collections.singletonList(new Transaction()
+            .type(TransactionType.SELL)
+            .date(LocalDate.of(2020, 1, 2))
+            .cash(bd(1))
+            .security(security)
+            .quantity(bd(1)));
+
+        EncodedPortfolio portfolio = EncodedPortfolio.wrap(encode(position, transactions));
+
+        assertThat(portfolio.getSecurity(0)).isSameAs(security);
+    }
+
+    @Test
+    public void wrap_notAPortfolio() {
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> EncodedPortfolio.wrap(ByteBuffer.wrap(new byte[] { 1, 2, 3 })))
+            .withMessage("Not an encoded portfolio");
+    }
+
+    @Test
+    public void wrap_truncated() throws IOException {
+        ByteBuffer buffer = encode(position, transactions);
+        buffer.limit(buffer.limit() - 1);
+
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> EncodedPortfolio.wrap(buffer))
+            .withMessage("Encoded portfolio is truncated");
+    }
+
+    @Test
+    public void getType_outOfBounds() throws IOException {
+        EncodedPortfolio portfolio = EncodedPortfolio.wrap(encode(position, transactions));
+
+        assertThatThrownBy(() -> portfolio.getType(2))
+            .isInstanceOf(IndexOutOfBoundsException.class)
+            .hasMessage("Index 2 out of bounds for length 2");
+    }
+
+    @Test
+    public void getType_invalid() throws IOException {
+        ByteBuffer buffer = encode(position, transactions);
+        int firstRecord = buffer.limit() - 2 * EncodedPortfolio.RECORD_SIZE;
+        buffer.put(firstRecord, (byte) 0x7F);
+        EncodedPortfolio portfolio = EncodedPortfolio.wrap(buffer);
+
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> portfolio.getType(0))
+            .withMessage("Invalid transaction type 127 in an encoded portfolio");
+    }
+
+    @Test
+    public void wrap_nullQuantity() throws IOException {
+        List<Transaction> transactions = Collections.singletonList(new Transaction()
+            .type(TransactionType.DEPOSIT)
+            .date(LocalDate.of(2020, 1, 2))
+            .cash(bd(1)));
+
+        EncodedPortfolio portfolio = EncodedPortfolio.wrap(encode(position, transactions));
+
+        assertThat(portfolio.getType(0)).isEqualTo(TransactionType.DEPOSIT);
+        assertThat(portfolio.hasQuantity(0)).isFalse();
+        assertThat(portfolio.getQuantity(0)).isZero();
+        assertThat(portfolio.toTransaction(0).getQuantity()).isNull();
+        assertThat(EncodedPortfolio.wrap(encode(position, this.transactions)).toTransaction(0).getQuantity()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    public void wrap_invalidSymbol() throws IOException {
+        Security security = Security.of("EncodedPortfolioTest\tinvalid");
+        List<Transaction> transactions = Collections.singletonList(new Transaction()
+            .type(TransactionType.SELL)
+            .date(LocalDate.of(2020, 1, 2))
+            .cash(bd(1))
+            .security(security)
+            .quantity(bd(1)));
+        ByteBuffer buffer = encode(new Position().cash(bd(1)).securityPositions(new ArrayList<>()), transactions);
+
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> EncodedPortfolio.wrap(buffer))
+            .withMessage("Invalid symbol in an encoded portfolio");
+    }
+
+    @Test
+    public void wrap_truncatedDoesNotCreateSecurities() throws IOException {
+        String symbol = "EncodedPortfolioTest.truncated";
+        ByteBuffer buffer = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(0x5054464C)
+            .putInt(2)
+            .put((byte) 1)
+            .put((byte) symbol.length())
+            .put(symbol.getBytes(StandardCharsets.UTF_8))
+            // Cash with a scale of 0 and an unscaled value missing its bytes
+            .put((byte) 0)
+            .put((byte) 8);
+        buffer.flip();
+
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> EncodedPortfolio.wrap(buffer))
+            .withMessage("Encoded portfolio is truncated");
+        assertThat(Security.find(symbol)).isNull();
+    }
+
+    @Test
+    public void write_symbolTooLong() {
+        Security security = Security.of("EncodedPortfolioTest." + "x".repeat(EncodedPortfolio.MAX_SYMBOL_LENGTH));
+        List<Transaction> transactions = Collections.singletonList(new Transaction()
+            .type(TransactionType.SELL)
+            .date(LocalDate.of(2020, 1, 2))
+            .cash(bd(1))
+            .security(security)
+            .quantity(bd(1)));
+
+        assertThatIllegalArgumentException().isThrownBy(() -> encode(position, transactions));
+    }
+
+    @Test
+    public void write_amountWithTooManyDigits() {
+        List<Transaction> transactions = Collections.singletonList(new Transaction()
+            .type(TransactionType.DEPOSIT)
+            .date(LocalDate.of(2020, 1, 2))
+            .cash(bd("0.000001"))
+            .quantity(BigDecimal.ZERO));
+
+        assertThatThrownBy(() -> encode(position, transactions)).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    public void writeAndOpen() throws IOException {
+        Path file = folder.resolve("portfolio.bin");
+        EncodedPortfolio.write(file, position, transactions);
+
+        EncodedPortfolio portfolio = EncodedPortfolio.open(file);
+
+        assertThat(portfolio.getPosition()).usingRecursiveComparison().isEqualTo(position);
+        assertThat(portfolio.getTransactionCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void open_notAPortfolio() throws IOException {
+        Path file = Files.write(folder.resolve("portfolio.bin"), new byte[] { 1, 2, 3 });
+
+        assertThatIOException()
+            .isThrownBy(() -> EncodedPortfolio.open(file))
+            .withMessageEndingWith("in " + file);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_sameAsTransactions() throws IOException {
+        Random random = new Random(42);
+        LocalDate now = LocalDate.now();
+        Position current = new Position()
+            .cash(bd(10_000))
+            .securityPositions(new ArrayList<>(Collections.singleton(new SecurityPosition().security(Security.IBM).quantity(bd(20)))));
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            TransactionType type = TransactionType.values()[random.nextInt(TransactionType.values().length)];
+            transactions.add(new Transaction()
+                .type(type)
+                .date(now.minusDays(random.nextInt(now.getDayOfYear() + 100)))
+                .cash(BigDecimal.valueOf(random.nextInt(100_000), 2))
+                .security(type.hasQuantity() ? Security.IBM : null)
+                .quantity(type.hasQuantity() ? bd(1 + random.nextInt(10)) : BigDecimal.ZERO));
+        }
+        Path file = folder.resolve("portfolio.bin");
+        EncodedPortfolio.write(file, current, transactions);
+
+        ReportingService service = new ReportingService();
+        assertThat(service.calculateReturnOnInvestmentYTD(EncodedPortfolio.open(file)))
+            .isEqualTo(service.calculateReturnOnInvestmentYTD(current, transactions));
+    }
+
+    private static ByteBuffer encode(Position position, Collection<Transaction> transactions) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodedPortfolio.write(Channels.newChannel(out), position, transactions);
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+}
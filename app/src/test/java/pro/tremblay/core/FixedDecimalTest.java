@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.assertj.core.api.Assertions.*;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+import static pro.tremblay.core.FixedDecimal.OVERFLOW;
+
+public class FixedDecimalTest {
+
+    @Test
+    public void of() {
+        assertThat(FixedDecimal.of(bd("12.5"))).isEqualTo(125_000L);
+        assertThat(FixedDecimal.of(bd(-3))).isEqualTo(-30_000L);
+        assertThat(FixedDecimal.of(bd("1E+3"))).isEqualTo(10_000_000L);
+        assertThat(FixedDecimal.of(bd("1.23400000"))).isEqualTo(12_340L);
+    }
+
+    @Test
+    public void of_tooManyDecimals() {
+        assertThat(FixedDecimal.of(bd("1.23456"))).isEqualTo(OVERFLOW);
+    }
+
+    @Test
+    public void of_tooLarge() {
+        assertThat(FixedDecimal.of(bd("1000000000000000"))).isEqualTo(OVERFLOW);
+        assertThat(FixedDecimal.of(bd("1234567890123456789012"))).isEqualTo(OVERFLOW);
+    }
+
+    @Test
+    public void toBigDecimal() {
+        assertThat(FixedDecimal.toBigDecimal(125_000L)).isEqualTo("12.5000");
+        assertThat(FixedDecimal.toBigDecimal(125L, 2)).isEqualTo("1.25");
+    }
+
+    @Test
+    public void toBigDecimal_overflow() {
+        assertThatExceptionOfType(ArithmeticException.class)
+            .isThrownBy(() -> FixedDecimal.toBigDecimal(OVERFLOW));
+    }
+
+    @Test
+    public void toDouble() {
+        assertThat(FixedDecimal.toDouble(125_000L)).isEqualTo(12.5);
+        assertThat(FixedDecimal.toDouble(-1L)).isEqualTo(-0.0001);
+        assertThatExceptionOfType(ArithmeticException.class)
+            .isThrownBy(() -> FixedDecimal.toDouble(OVERFLOW));
+    }
+
+    @Test
+    public void rescale() {
+        assertThat(FixedDecimal.rescale(125L, 2, 4)).isEqualTo(12_500L);
+        assertThat(FixedDecimal.rescale(12_500L, 4, 2)).isEqualTo(125L);
+        assertThat(FixedDecimal.rescale(12_501L, 4, 2)).isEqualTo(OVERFLOW);
+        assertThat(FixedDecimal.rescale(Long.MAX_VALUE, 0, 1)).isEqualTo(OVERFLOW);
+    }
+
+    @Test
+    public void add() {
+        assertThat(FixedDecimal.add(1, 2)).isEqualTo(3);
+        assertThat(FixedDecimal.add(Long.MAX_VALUE, 1)).isEqualTo(OVERFLOW);
+        assertThat(FixedDecimal.add(-Long.MAX_VALUE, -1)).isEqualTo(OVERFLOW);
+        assertThat(FixedDecimal.add(OVERFLOW, 0)).isEqualTo(OVERFLOW);
+    }
+
+    @Test
+    public void subtract() {
+        assertThat(FixedDecimal.subtract(1, 2)).isEqualTo(-1);
+        assertThat(FixedDecimal.subtract(-Long.MAX_VALUE, 1)).isEqualTo(OVERFLOW);
+        assertThat(FixedDecimal.subtract(0, OVERFLOW)).isEqualTo(OVERFLOW);
+    }
+
+    @Test
+    public void multiply() {
+        assertThat(FixedDecimal.multiply(-3, 4)).isEqualTo(-12);
+        assertThat(FixedDecimal.multiply(Long.MAX_VALUE / 2, 3)).isEqualTo(OVERFLOW);
+        assertThat(FixedDecimal.multiply(OVERFLOW, 1)).isEqualTo(OVERFLOW);
+    }
+
+    @Test
+    public void divideHalfUp() {
+        long[][] cases = {
+            { 1, 3, 10 },
+            { 2, 3, 10 },
+            { -2, 3, 10 },
+            { 5, 2, 0 },
+            { -5, 2, 0 },
+            { 25, -10, 0 },
+            { 123_456_789, 7, 4 },
+            { Long.MAX_VALUE, 1_000_000_007, 5 }
+        };
+        for (long[] c : cases) {
+            BigDecimal expected = BigDecimal.valueOf(c[0]).divide(BigDecimal.valueOf(c[1]), (int) c[2], RoundingMode.HALF_UP);
+            assertThat(FixedDecimal.divideHalfUp(c[0], c[1], (int) c[2]))
+                .as("%d / %d", c[0], c[1])
+                .isEqualTo(expected.unscaledValue().longValueExact());
+        }
+    }
+
+    @Test
+    public void divideHalfUp_overflow() {
+        assertThat(FixedDecimal.divideHalfUp(Long.MAX_VALUE, 1, 1)).isEqualTo(OVERFLOW);
+        assertThat(FixedDecimal.divideHalfUp(Long.MAX_VALUE - 1, Long.MAX_VALUE, 10)).isEqualTo(OVERFLOW);
+    }
+
+    @Test
+    public void divideHalfUp_byZero() {
+        assertThatExceptionOfType(ArithmeticException.class)
+            .isThrownBy(() -> FixedDecimal.divideHalfUp(1, 0, 2));
+    }
+}
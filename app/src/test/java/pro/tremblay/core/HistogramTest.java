@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class HistogramTest {
+
+    private final Histogram histogram = new Histogram();
+
+    @Test
+    public void empty() {
+        assertThat(histogram.getCount()).isZero();
+        assertThat(histogram.getMean()).isZero();
+        assertThat(histogram.getValueAtPercentile(99)).isZero();
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        assertThat(histogram.getCount()).isEqualTo(10);
+        assertThat(histogram.getMean()).isEqualTo(5.5);
+        assertThat(histogram.getMax()).isEqualTo(10);
+        assertThat(histogram.getValueAtPercentile(50)).isEqualTo(5);
+        assertThat(histogram.getValueAtPercentile(90)).isEqualTo(9);
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(10);
+    }
+
+    @Test
+    public void largeValuesWithinRelativeError() {
+        for (int i = 1; i <= 1_000; i++) {
+            histogram.record(i * 1_000L);
+        }
+        assertThat(histogram.getValueAtPercentile(50)).isBetween(500_000L, 500_000L * 104 / 100);
+        assertThat(histogram.getValueAtPercentile(99)).isBetween(990_000L, 990_000L * 104 / 100);
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(1_000_000L);
+    }
+
+    @Test
+    public void bucketIndex() {
+        assertThat(Histogram.bucketIndex(0)).isZero();
+        assertThat(Histogram.bucketIndex(31)).isEqualTo(31);
+        assertThat(Histogram.bucketIndex(32)).isEqualTo(32);
+        assertThat(Histogram.bucketIndex(64)).isEqualTo(64);
+        assertThat(Histogram.bucketIndex(65)).isEqualTo(64);
+        assertThat(Histogram.highestValue(Histogram.bucketIndex(Long.MAX_VALUE))).isEqualTo(Long.MAX_VALUE);
+        for (long value : new long[] { 33, 100, 12_345, 1L << 40, Long.MAX_VALUE / 3 }) {
+            assertThat(Histogram.highestValue(Histogram.bucketIndex(value))).isGreaterThanOrEqualTo(value);
+            assertThat(Histogram.highestValue(Histogram.bucketIndex(value) - 1)).isLessThan(value);
+        }
+    }
+
+    @Test
+    public void reset() {
+        histogram.record(123);
+        histogram.reset();
+        assertThat(histogram.getCount()).isZero();
+        assertThat(histogram.getMax()).isZero();
+        assertThat(histogram.getValueAtPercentile(50)).isZero();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+
+public class ImmutablePositionTest {
+
+    private final ImmutableSecurityPosition ibm = new ImmutableSecurityPosition(Security.IBM, bd(1));
+    private final ImmutableSecurityPosition googl = new ImmutableSecurityPosition(Security.GOOGL, bd(3));
+    private final ImmutablePosition position = new ImmutablePosition(bd(100), List.of(ibm, googl));
+
+    @Test
+    public void securityPositions_copiedWhenMutable() {
+        List<ImmutableSecurityPosition> positions = new ArrayList<>(List.of(ibm));
+        ImmutablePosition position = new ImmutablePosition(bd(100), positions);
+        positions.add(googl);
+
+        assertThat(position.securityPositions()).containsExactly(ibm);
+        assertThatThrownBy(() -> position.securityPositions().add(googl)).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void getSecurityPosition() {
+        assertThat(position.getSecurityPosition(Security.IBM)).isSameAs(ibm);
+        assertThat(position.getSecurityPosition(Security.APPL)).isNull();
+    }
+
+    @Test
+    public void withCash_sharesTheSecurityPositions() {
+        ImmutablePosition updated = position.withCash(bd(200));
+
+        assertThat(updated.cash()).isEqualTo(bd(200));
+        assertThat(updated.securityPositions()).isSameAs(position.securityPositions());
+        assertThat(position.cash()).isEqualTo(bd(100));
+    }
+
+    @Test
+    public void withQuantity_existingSecurity() {
+        ImmutablePosition updated = position.withQuantity(Security.IBM, bd(5));
+
+        assertThat(updated.securityPositions()).containsExactly(new ImmutableSecurityPosition(Security.IBM, bd(5)), googl);
+        assertThat(updated.securityPositions().get(1)).isSameAs(googl);
+        assertThat(position.securityPositions()).containsExactly(ibm, googl);
+    }
+
+    @Test
+    public void withQuantity_newSecurity() {
+        ImmutablePosition updated = position.withQuantity(Security.APPL, bd(7));
+
+        assertThat(updated.securityPositions()).containsExactly(ibm, googl, new ImmutableSecurityPosition(Security.APPL, bd(7)));
+        assertThat(updated.securityPositions().get(0)).isSameAs(ibm);
+    }
+
+    @Test
+    public void without() {
+        assertThat(position.without(Security.IBM).securityPositions()).containsExactly(googl);
+        assertThat(position.without(Security.APPL)).isSameAs(position);
+    }
+
+    @Test
+    public void position_roundTrip() {
+        Position mutable = position.toPosition();
+
+        assertThat(mutable.getCash()).isEqualTo(bd(100));
+        assertThat(mutable.getSecurityPosition(Security.GOOGL).getQuantity()).isEqualTo(bd(3));
+        assertThat(ImmutablePosition.of(mutable)).isEqualTo(position);
+
+        // The mutable copy is independent
+        mutable.addSecurityPosition(new SecurityPosition().security(Security.APPL).quantity(bd(1)));
+        assertThat(position.securityPositions()).hasSize(2);
+    }
+}
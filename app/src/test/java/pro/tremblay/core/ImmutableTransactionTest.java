@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.*;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+
+public class ImmutableTransactionTest {
+
+    private static final LocalDate DATE = LocalDate.of(2020, 5, 1);
+
+    @Test
+    public void transaction_roundTrip() {
+        Transaction transaction = new Transaction()
+            .type(TransactionType.BUY)
+            .date(DATE)
+            .cash(bd(100))
+            .security(Security.IBM)
+            .quantity(bd(2));
+
+        ImmutableTransaction immutable = ImmutableTransaction.of(transaction);
+
+        assertThat(immutable).isEqualTo(new ImmutableTransaction(TransactionType.BUY, DATE, bd(100), Security.IBM, bd(2)));
+        assertThat(immutable.toTransaction()).usingRecursiveComparison().isEqualTo(transaction);
+    }
+
+    @Test
+    public void quantity_zeroWhenTheTypeHasNone() {
+        ImmutableTransaction transaction = new ImmutableTransaction(TransactionType.DEPOSIT, DATE, bd(100), null, null);
+        assertThat(transaction.quantity()).isEqualTo(BigDecimal.ZERO);
+    }
+
+    @Test
+    public void security_requiredWhenTheTypeHasAQuantity() {
+        assertThatThrownBy(() -> new ImmutableTransaction(TransactionType.SELL, DATE, bd(100), null, bd(1)))
+            .isInstanceOf(NullPointerException.class)
+            .hasMessage("security");
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junitpioneer.jupiter.SetSystemProperty;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+
+@SetSystemProperty(key="LENGTH_OF_YEAR", value="365")
+public class IncrementalRoiTrackerTest {
+
+    private final MutableClock clock = new MutableClock(LocalDate.of(2020, 11, 15));
+    private final ReportingService reportingService = new ReportingService(clock);
+    private final Random random = new Random(42);
+
+    private PriceStore previousPriceStore;
+
+    private BigDecimal cash = bd(10_000);
+    private final Map<Security, BigDecimal> quantities = new HashMap<>();
+    private final List<Transaction> transactions = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        // The system properties set by the test are only seen after a reload
+        Preferences.preferences().reload();
+        previousPriceStore = PriceService.usePriceStore(new RandomPriceStore(LocalDate.of(2019, 1, 1), LocalDate.of(2021, 12, 31), 42, RandomPriceStore.Generation.LAZY));
+    }
+
+    @AfterEach
+    public void after() {
+        PriceService.usePriceStore(previousPriceStore);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_noTransaction() {
+        quantities.put(Security.IBM, bd(10));
+        IncrementalRoiTracker tracker = new IncrementalRoiTracker(reportingService, position(), transactions);
+
+        assertThat(tracker.calculateReturnOnInvestmentYTD()).isEqualTo(reportingService.calculateReturnOnInvestmentYTD(position(), transactions));
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_sameAsReportingServiceOnRandomTransactions() {
+        quantities.put(Security.APPL, bd(100));
+        for (int i = 0; i < 100; i++) {
+            Transaction transaction = randomTransaction(clock.today().minusDays(random.nextInt(600)));
+            apply(transaction);
+            transactions.add(transaction);
+        }
+
+        IncrementalRoiTracker tracker = new IncrementalRoiTracker(reportingService, position(), transactions);
+
+        for (int i = 0; i < 400; i++) {
+            // Time goes by and will change year
+            clock.today(clock.today().plusDays(random.nextInt(2)));
+
+            int daysBefore = random.nextInt(100) < 3 ? -1 - random.nextInt(3) : random.nextInt(30);
+            Transaction transaction = randomTransaction(clock.today().minusDays(daysBefore));
+            apply(transaction);
+            transactions.add(transaction);
+            tracker.add(transaction);
+
+            assertThat(tracker.calculateReturnOnInvestmentYTD())
+                .as("At %s after %d transactions", clock.today(), transactions.size())
+                .isEqualTo(reportingService.calculateReturnOnInvestmentYTD(position(), transactions));
+        }
+        assertThat(clock.today().getYear()).isEqualTo(2021);
+    }
+
+    @Test
+    public void getPosition() {
+        quantities.put(Security.IBM, bd(10));
+        IncrementalRoiTracker tracker = new IncrementalRoiTracker(reportingService, position(), transactions);
+
+        tracker.add(new Transaction()
+            .type(TransactionType.BUY)
+            .date(clock.today())
+            .cash(bd(500))
+            .security(Security.GOOGL)
+            .quantity(bd(5)));
+
+        Position position = tracker.getPosition();
+        assertThat(position.getCash()).isEqualTo("9500");
+        assertThat(position.getSecurityPositions())
+            .extracting(SecurityPosition::getSecurity, SecurityPosition::getQuantity)
+            .containsExactly(tuple(Security.IBM, bd(10)), tuple(Security.GOOGL, bd(5)));
+    }
+
+    private Transaction randomTransaction(LocalDate date) {
+        TransactionType type = TransactionType.values()[random.nextInt(TransactionType.values().length)];
+        return new Transaction()
+            .type(type)
+            .date(date)
+            .cash(BigDecimal.valueOf(random.nextInt(100_000), 2))
+            .security(type.hasQuantity() ? Security.byId(random.nextInt(Security.count())) : null)
+            .quantity(type.hasQuantity() ? bd(1 + random.nextInt(10)) : BigDecimal.ZERO);
+    }
+
+    private void apply(Transaction transaction) {
+        switch (transaction.getType()) {
+            case BUY:
+                cash = cash.subtract(transaction.getCash());
+                quantities.merge(transaction.getSecurity(), transaction.getQuantity(), BigDecimal::add);
+                break;
+            case SELL:
+                cash = cash.add(transaction.getCash());
+                quantities.merge(transaction.getSecurity(), transaction.getQuantity().negate(), BigDecimal::add);
+                break;
+            case DEPOSIT:
+                cash = cash.add(transaction.getCash());
+                break;
+            case WITHDRAWAL:
+                cash = cash.subtract(transaction.getCash());
+                break;
+        }
+    }
+
+    private Position position() {
+        return new Position()
+            .cash(cash)
+            .securityPositions(quantities.entrySet().stream()
+                .map(e -> new SecurityPosition().security(e.getKey()).quantity(e.getValue()))
+                .collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class MappedPriceStoreTest {
+
+    @TempDir
+    Path folder;
+
+    private final LocalDate from = LocalDate.of(2020, 1, 1);
+    private final LocalDate to = LocalDate.of(2020, 12, 31);
+    private final PriceStore source = new RandomPriceStore(from, to, 42, RandomPriceStore.Generation.EAGER);
+
+    @Test
+    public void writeAndOpen() throws IOException {
+        Path file = folder.resolve("prices.bin");
+        MappedPriceStore.write(file, source);
+
+        MappedPriceStore store = MappedPriceStore.open(file);
+
+        assertThat(store.getFirstDay()).isEqualTo(from);
+        assertThat(store.getLastDay()).isEqualTo(to);
+        for (Security security : Security.values()) {
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                assertThat(store.getPrice(date.toEpochDay(), security)).isEqualTo(source.getPrice(date.toEpochDay(), security));
+            }
+        }
+    }
+
+    @Test
+    public void writeAndOpen_headerLargerThanTheWriteBuffer() throws IOException {
+        // 300 symbols of 250 characters make a header of 75KB
+        Security[] securities = new Security[300];
+        for (int i = 0; i < securities.length; i++) {
+            securities[i] = Security.of(String.format("MappedPriceStoreTest%0230d", i));
+        }
+        PriceStore constant = new PriceStore() {
+            @Override
+            public long getPrice(long epochDay, @Nonnull Security security) {
+                return 100_00 + security.getId();
+            }
+
+            @Nonnull
+            @Override
+            public LocalDate getFirstDay() {
+                return from;
+            }
+
+            @Nonnull
+            @Override
+            public LocalDate getLastDay() {
+                return from;
+            }
+        };
+        Path file = folder.resolve("prices.bin");
+        MappedPriceStore.write(file, constant);
+
+        MappedPriceStore store = MappedPriceStore.open(file);
+
+        for (Security security : securities) {
+            assertThat(store.getPrice(from.toEpochDay(), security)).isEqualTo(100_00 + security.getId());
+        }
+    }
+
+    @Test
+    public void write_onlyTheSecuritiesOfTheSource() throws IOException {
+        Security unknown = Security.of("MappedPriceStoreTest.unknown");
+        PriceStore threeSecurities = new ArrayPriceStore(from, new long[][] { { 100_00 }, { 200_00 }, { 300_00 } });
+        Path file = folder.resolve("prices.bin");
+        MappedPriceStore.write(file, threeSecurities);
+
+        MappedPriceStore store = MappedPriceStore.open(file);
+
+        assertThat(store.getPrice(from.toEpochDay(), Security.IBM)).isEqualTo(300_00);
+        assertThatIllegalArgumentException().isThrownBy(() -> store.getPrice(from.toEpochDay(), unknown));
+    }
+
+    @Test
+    public void write_failureKeepsTheExistingFile() throws IOException {
+        Path file = folder.resolve("prices.bin");
+        MappedPriceStore.write(file, source);
+        byte[] content = Files.readAllBytes(file);
+
+        PriceStore failing = new PriceStore() {
+            @Override
+            public long getPrice(long epochDay, @Nonnull Security security) {
+                if (epochDay > from.toEpochDay()) {
+                    throw new IllegalStateException("Price feed down");
+                }
+                return 100_00;
+            }
+
+            @Nonnull
+            @Override
+            public LocalDate getFirstDay() {
+                return from;
+            }
+
+            @Nonnull
+            @Override
+            public LocalDate getLastDay() {
+                return to;
+            }
+        };
+
+        assertThatIllegalStateException().isThrownBy(() -> MappedPriceStore.write(file, failing));
+        assertThat(Files.readAllBytes(file)).isEqualTo(content);
+        try (Stream<Path> files = Files.list(folder)) {
+            assertThat(files).containsExactly(file);
+        }
+    }
+
+    @Test
+    public void open_truncated() throws IOException {
+        Path file = folder.resolve("prices.bin");
+        MappedPriceStore.write(file, source);
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 1_000));
+
+        assertThatIOException()
+            .isThrownBy(() -> MappedPriceStore.open(file))
+            .withMessageEndingWith("is truncated");
+    }
+
+    @Test
+    public void getPrice_outOfRange() throws IOException {
+        Path file = folder.resolve("prices.bin");
+        MappedPriceStore.write(file, source);
+
+        MappedPriceStore store = MappedPriceStore.open(file);
+
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> store.getPrice(to.plusDays(1).toEpochDay(), Security.IBM))
+            .withMessage("No price for IBM on 2021-01-01");
+    }
+
+    @Test
+    public void open_notAPriceFile() throws IOException {
+        Path file = Files.write(folder.resolve("prices.bin"), new byte[] { 1, 2, 3 });
+
+        assertThatIOException()
+            .isThrownBy(() -> MappedPriceStore.open(file))
+            .withMessageEndingWith("is not a price file");
+    }
+
+    @Test
+    public void priceServiceCanSwitchToTheFile() throws IOException {
+        Path file = folder.resolve("prices.bin");
+        PriceService.writePrices(file);
+
+        LocalDate now = LocalDate.now();
+        PriceStore previous = PriceService.usePriceStore(MappedPriceStore.open(file));
+        try {
+            assertThat(PriceService.getPrice(now, Security.GOOGL))
+                .isEqualTo(BigDecimal.valueOf(previous.getPrice(now.toEpochDay(), Security.GOOGL), PriceService.PRICE_SCALE));
+        } finally {
+            PriceService.usePriceStore(previous);
+        }
+    }
+}
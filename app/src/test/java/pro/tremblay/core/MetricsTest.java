@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junitpioneer.jupiter.SetSystemProperty;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+
+@SetSystemProperty(key="LENGTH_OF_YEAR", value="360")
+public class MetricsTest {
+
+    private final ReportingService reportingService = new ReportingService();
+
+    private final Position current = new Position()
+            .cash(bd(100))
+            .securityPositions(new ArrayList<>(Collections.singletonList(new SecurityPosition().security(Security.IBM).quantity(bd(2)))));
+
+    private final List<Transaction> transactions = Arrays.asList(
+        new Transaction().type(TransactionType.DEPOSIT).date(LocalDate.now()).cash(bd(10)).quantity(BigDecimal.ZERO),
+        new Transaction().type(TransactionType.DEPOSIT).date(LocalDate.now()).cash(bd(20)).quantity(BigDecimal.ZERO));
+
+    private PriceStore previousPriceStore;
+
+    @BeforeEach
+    public void before() {
+        // The system properties set by the test are only seen after a reload
+        Preferences.preferences().reload();
+        // A new store comes with new price snapshots, so no price is known yet
+        LocalDate now = LocalDate.now();
+        previousPriceStore = PriceService.usePriceStore(new RandomPriceStore(ReturnPeriod.earliestStart(now), now, 42, RandomPriceStore.Generation.LAZY));
+        Metrics.reset();
+        Metrics.setEnabled(true);
+    }
+
+    @AfterEach
+    public void after() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+        PriceService.usePriceStore(previousPriceStore);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD() {
+        reportingService.calculateReturnOnInvestmentYTD(current, transactions);
+        reportingService.calculateReturnOnInvestmentYTD(current, TransactionBatch.of(transactions));
+
+        assertThat(Metrics.getCalls()).isEqualTo(2);
+        assertThat(Metrics.getTransactions()).isEqualTo(4);
+        assertThat(Metrics.getTransactionsPerCall().getMax()).isEqualTo(2);
+        for (Metrics.Phase phase : new Metrics.Phase[] { Metrics.Phase.REWIND, Metrics.Phase.VALUATION, Metrics.Phase.TOTAL }) {
+            assertThat(Metrics.getLatency(phase).getCount()).as(phase.name()).isEqualTo(2);
+        }
+        // The initial and current prices of IBM are read once and shared by the second calculation
+        assertThat(Metrics.getPriceMisses()).isEqualTo(2);
+        assertThat(Metrics.getPriceHits()).isEqualTo(2);
+        assertThat(Metrics.getLatency(Metrics.Phase.PRICE_LOOKUP).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_pricesResolvedOnceForManyPortfolios() {
+        Portfolio portfolio = new Portfolio().position(current).transactions(transactions);
+        reportingService.calculateReturnOnInvestmentYTD(Collections.singletonMap("a", portfolio));
+        reportingService.calculateReturnOnInvestmentYTD(Map.of("a", portfolio, "b", portfolio, "c", portfolio));
+
+        assertThat(Metrics.getCalls()).isEqualTo(4);
+        assertThat(Metrics.getPriceMisses()).isEqualTo(2);
+        assertThat(Metrics.getPriceHits()).isEqualTo(6);
+    }
+
+    @Test
+    public void enabledByPreference() {
+        Metrics.setEnabled(false);
+        try {
+            Preferences.preferences().put("METRICS_ENABLED", "true");
+            assertThat(Metrics.isEnabled()).isTrue();
+        } finally {
+            Preferences.preferences().remove("METRICS_ENABLED");
+        }
+        assertThat(Metrics.isEnabled()).isFalse();
+    }
+
+    @Test
+    public void disabled() {
+        Metrics.setEnabled(false);
+        reportingService.calculateReturnOnInvestmentYTD(current, transactions);
+
+        assertThat(Metrics.getCalls()).isZero();
+        assertThat(Metrics.getLatency(Metrics.Phase.TOTAL).getCount()).isZero();
+        assertThat(Metrics.getPriceMisses()).isZero();
+    }
+
+    @Test
+    public void registerMBeans() throws Exception {
+        Metrics.registerMBeans();
+        Metrics.registerMBeans(); // twice is fine
+
+        reportingService.calculateReturnOnInvestmentYTD(current, transactions);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertThat(server.getAttribute(new ObjectName(Metrics.OBJECT_NAME), "Calls")).isEqualTo(1L);
+        assertThat(server.getAttribute(new ObjectName(Metrics.OBJECT_NAME + ",phase=TOTAL"), "Count")).isEqualTo(1L);
+
+        server.setAttribute(new ObjectName(Metrics.OBJECT_NAME), new Attribute("Enabled", false));
+        assertThat(Metrics.isEnabled()).isFalse();
+    }
+}
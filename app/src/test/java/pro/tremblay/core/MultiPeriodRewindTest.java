@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.*;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+
+public class MultiPeriodRewindTest {
+
+    private final LocalDate today = LocalDate.of(2020, 6, 30);
+    private final LocalDate march = LocalDate.of(2020, 3, 1);
+    private final LocalDate june = LocalDate.of(2020, 6, 1);
+    private final MultiPeriodRewind rewind = new MultiPeriodRewind(today, june, march, june);
+
+    @Test
+    public void since() {
+        rewind.revert(deposit("1", LocalDate.of(2020, 2, 29)));
+        rewind.revert(deposit("10", march));
+        rewind.revert(deposit("100", LocalDate.of(2020, 5, 31)));
+        rewind.revert(deposit("1000", june));
+        rewind.revert(deposit("10000", today));
+
+        assertThat(rewind.since(march).getCash()).isEqualByComparingTo("-11110");
+        assertThat(rewind.since(june).getCash()).isEqualByComparingTo("-11000");
+        assertThat(rewind.since(march).revertedCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void between() {
+        rewind.revert(deposit("10", march));
+        rewind.revert(deposit("100", LocalDate.of(2020, 5, 31)));
+        rewind.revert(deposit("1000", june));
+
+        assertThat(rewind.between(march, june.minusDays(1)).getCash()).isEqualByComparingTo("-110");
+        assertThat(rewind.between(june, today).getCash()).isEqualByComparingTo("-1000");
+    }
+
+    @Test
+    public void transactionAfterTodayPreventsAnyRevert() {
+        rewind.revert(deposit("10", march));
+        rewind.revert(deposit("100", today.plusDays(1)));
+
+        assertThat(rewind.since(march).getCash()).isZero();
+    }
+
+    @Test
+    public void notABoundary() {
+        assertThatIllegalArgumentException().isThrownBy(() -> rewind.since(june.plusDays(1)));
+    }
+
+    @Test
+    public void boundaryAfterToday() {
+        assertThatIllegalArgumentException().isThrownBy(() -> new MultiPeriodRewind(today, today.plusDays(1)));
+    }
+
+    private Transaction deposit(String cash, LocalDate date) {
+        return new Transaction()
+            .type(TransactionType.DEPOSIT)
+            .date(date)
+            .cash(bd(cash))
+            .quantity(BigDecimal.ZERO);
+    }
+}
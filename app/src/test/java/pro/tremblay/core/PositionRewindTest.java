@@ -0,0 +1,179 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.*;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+
+public class PositionRewindTest {
+
+    private final LocalDate start = LocalDate.of(2020, 1, 1);
+    private final LocalDate end = LocalDate.of(2020, 3, 1);
+    private final PositionRewind rewind = new PositionRewind(start, end);
+
+    @Test
+    public void nothingReverted() {
+        assertThat(rewind.getCash()).isZero();
+        assertThat(rewind.getQuantity(Security.IBM)).isNull();
+    }
+
+    @Test
+    public void revert_allTypes() {
+        rewind.revert(transaction(TransactionType.DEPOSIT, end, "100", null, "0"));
+        rewind.revert(transaction(TransactionType.WITHDRAWAL, start, "30", null, "0"));
+        rewind.revert(transaction(TransactionType.BUY, start, "50", Security.IBM, "5"));
+        rewind.revert(transaction(TransactionType.SELL, end, "20", Security.IBM, "2"));
+        rewind.revert(transaction(TransactionType.SELL, end, "10", Security.APPL, "1"));
+
+        // -100 + 30 + 50 - 20 - 10
+        assertThat(rewind.getCash()).isEqualByComparingTo("-50");
+        assertThat(rewind.getQuantity(Security.IBM)).isEqualByComparingTo("-3");
+        assertThat(rewind.getQuantity(Security.APPL)).isEqualByComparingTo("1");
+        assertThat(rewind.getQuantity(Security.GOOGL)).isNull();
+    }
+
+    @Test
+    public void revert_beforeStartIgnored() {
+        rewind.revert(transaction(TransactionType.BUY, start.minusDays(1), "50", Security.IBM, "5"));
+
+        assertThat(rewind.getCash()).isZero();
+        assertThat(rewind.getQuantity(Security.IBM)).isNull();
+    }
+
+    @Test
+    public void revert_afterEndPreventsAnyRevert() {
+        rewind.revert(transaction(TransactionType.BUY, start, "50", Security.IBM, "5"));
+        rewind.revert(transaction(TransactionType.DEPOSIT, end.plusDays(1), "100", null, "0"));
+
+        assertThat(rewind.getCash()).isZero();
+        assertThat(rewind.getQuantity(Security.IBM)).isNull();
+    }
+
+    @Test
+    public void revert_batchRange() {
+        TransactionBatch batch = TransactionBatch.of(Arrays.asList(
+            transaction(TransactionType.DEPOSIT, start, "1", null, "0"),
+            transaction(TransactionType.DEPOSIT, start, "10", null, "0"),
+            transaction(TransactionType.DEPOSIT, start, "100", null, "0")));
+
+        rewind.revert(batch, 1, 3);
+
+        assertThat(rewind.getCash()).isEqualByComparingTo("-110");
+        assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> rewind.revert(batch, 2, 4));
+    }
+
+    @Test
+    public void merge() {
+        rewind.revert(transaction(TransactionType.BUY, start, "50", Security.IBM, "5"));
+        PositionRewind other = new PositionRewind(start, end);
+        other.revert(transaction(TransactionType.SELL, end, "20", Security.IBM, "2"));
+        other.revert(transaction(TransactionType.DEPOSIT, end, "100", null, "0"));
+
+        rewind.merge(other);
+
+        assertThat(rewind.isFixed()).isTrue();
+        assertThat(rewind.getCash()).isEqualByComparingTo("-70");
+        assertThat(rewind.getQuantity(Security.IBM)).isEqualByComparingTo("-3");
+        assertThat(rewind.getQuantity(Security.APPL)).isNull();
+    }
+
+    @Test
+    public void merge_tooManyDecimalsForFixedDecimal() {
+        rewind.revert(transaction(TransactionType.BUY, start, "50", Security.IBM, "5"));
+        PositionRewind other = new PositionRewind(start, end);
+        other.revert(transaction(TransactionType.SELL, end, "0.00001", Security.APPL, "2"));
+
+        rewind.merge(other);
+
+        assertThat(rewind.isFixed()).isFalse();
+        assertThat(rewind.getCash()).isEqualByComparingTo("49.99999");
+        assertThat(rewind.getQuantity(Security.IBM)).isEqualByComparingTo("-5");
+        assertThat(rewind.getQuantity(Security.APPL)).isEqualByComparingTo("2");
+    }
+
+    @Test
+    public void merge_afterEndPreventsAnyRevert() {
+        rewind.revert(transaction(TransactionType.BUY, start, "50", Security.IBM, "5"));
+        PositionRewind other = new PositionRewind(start, end);
+        other.revert(transaction(TransactionType.DEPOSIT, end.plusDays(1), "100", null, "0"));
+
+        rewind.merge(other);
+
+        assertThat(rewind.getCash()).isZero();
+        assertThat(rewind.getQuantity(Security.IBM)).isNull();
+    }
+
+    @Test
+    public void applyTo() {
+        rewind.revert(transaction(TransactionType.BUY, start, "50", Security.IBM, "5"));
+        rewind.revert(transaction(TransactionType.SELL, start, "10", Security.APPL, "1"));
+        Position current = new Position()
+            .cash(bd(100))
+            .securityPositions(Collections.singletonList(new SecurityPosition().security(Security.IBM).quantity(bd(8))));
+
+        Position initial = rewind.applyTo(current);
+
+        assertThat(initial.getCash()).isEqualByComparingTo("140");
+        assertThat(initial.getSecurityPositions())
+            .extracting(SecurityPosition::getSecurity, p -> p.getQuantity().stripTrailingZeros())
+            .containsExactly(tuple(Security.IBM, bd(3)), tuple(Security.APPL, bd(1)));
+        assertThat(current.getCash()).isEqualTo("100");
+    }
+
+    @Test
+    public void revert_manySecurities() {
+        Security[] securities = new Security[50];
+        for (int i = 0; i < securities.length; i++) {
+            securities[i] = Security.of("PositionRewindTest" + i);
+            rewind.revert(transaction(TransactionType.BUY, start, "1", securities[i], String.valueOf(i)));
+        }
+        rewind.revert(transaction(TransactionType.SELL, start, "1", securities[3], "10"));
+
+        assertThat(rewind.getTradedCount()).isEqualTo(securities.length);
+        for (int i = 0; i < securities.length; i++) {
+            assertThat(rewind.getTradedSecurity(i)).isSameAs(securities[i]);
+            assertThat(rewind.getFixedQuantity(securities[i])).isEqualTo(FixedDecimal.of(bd(i == 3 ? 10 - 3 : -i)));
+        }
+        assertThat(rewind.isTraded(Security.IBM)).isFalse();
+    }
+
+    @Test
+    public void getTradedSecurity_afterEndPreventsAnyRevert() {
+        rewind.revert(transaction(TransactionType.BUY, start, "50", Security.IBM, "5"));
+        assertThat(rewind.getTradedCount()).isEqualTo(1);
+        assertThat(rewind.getTradedSecurity(0)).isSameAs(Security.IBM);
+
+        rewind.revert(transaction(TransactionType.DEPOSIT, end.plusDays(1), "100", null, "0"));
+
+        assertThat(rewind.getTradedCount()).isZero();
+        assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> rewind.getTradedSecurity(0));
+    }
+
+    private Transaction transaction(TransactionType type, LocalDate date, String cash, Security security, String quantity) {
+        return new Transaction()
+            .type(type)
+            .date(date)
+            .cash(bd(cash))
+            .security(security)
+            .quantity(bd(quantity));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+
+public class PositionTest {
+
+    private final SecurityPosition ibm = new SecurityPosition().security(Security.IBM).quantity(bd(1));
+    private final SecurityPosition otherIbm = new SecurityPosition().security(Security.IBM).quantity(bd(2));
+    private final SecurityPosition googl = new SecurityPosition().security(Security.GOOGL).quantity(bd(3));
+
+    @Test
+    public void getSecurityPosition() {
+        Position position = new Position().securityPositions(List.of(ibm, otherIbm));
+        assertThat(position.getSecurityPosition(Security.IBM)).isSameAs(ibm);
+        assertThat(position.getSecurityPosition(Security.GOOGL)).isNull();
+    }
+
+    @Test
+    public void addSecurityPosition() {
+        Position position = new Position().securityPositions(new ArrayList<>());
+        assertThat(position.getSecurityPosition(Security.IBM)).isNull();
+
+        position.addSecurityPosition(ibm).addSecurityPosition(otherIbm);
+
+        assertThat(position.getSecurityPosition(Security.IBM)).isSameAs(ibm);
+        assertThat(position.getSecurityPositions()).containsExactly(ibm, otherIbm);
+    }
+
+    @Test
+    public void getSecurityPosition_addedToTheCollection() {
+        Position position = new Position().securityPositions(new ArrayList<>());
+        assertThat(position.getSecurityPosition(Security.GOOGL)).isNull();
+
+        position.getSecurityPositions().add(googl);
+
+        assertThat(position.getSecurityPosition(Security.GOOGL)).isSameAs(googl);
+    }
+
+    @Test
+    public void getSecurityPosition_removedFromTheCollection() {
+        Position position = new Position().securityPositions(new ArrayList<>(List.of(ibm, googl)));
+        assertThat(position.getSecurityPosition(Security.IBM)).isSameAs(ibm);
+
+        // Same size as before, only the index knows it changed
+        position.getSecurityPositions().remove(ibm);
+        position.getSecurityPositions().add(otherIbm);
+
+        assertThat(position.getSecurityPosition(Security.IBM)).isSameAs(otherIbm);
+    }
+
+    @Test
+    public void getSecurityPosition_removedByTheIterator() {
+        Position position = new Position().securityPositions(new ArrayList<>(List.of(ibm, googl)));
+        assertThat(position.getSecurityPosition(Security.GOOGL)).isSameAs(googl);
+
+        position.getSecurityPositions().removeIf(p -> p.getSecurity() == Security.GOOGL);
+
+        assertThat(position.getSecurityPosition(Security.GOOGL)).isNull();
+        assertThat(position.getSecurityPositions()).containsExactly(ibm);
+    }
+
+    @Test
+    public void securityPositions_replaceTheIndex() {
+        Position position = new Position().securityPositions(List.of(ibm));
+        assertThat(position.getSecurityPosition(Security.IBM)).isSameAs(ibm);
+
+        position.securityPositions(List.of(otherIbm));
+
+        assertThat(position.getSecurityPosition(Security.IBM)).isSameAs(otherIbm);
+    }
+}
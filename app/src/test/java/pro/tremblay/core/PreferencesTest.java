@@ -16,6 +16,10 @@
 package pro.tremblay.core;
 
 import org.junit.jupiter.api.Test;
+import org.junitpioneer.jupiter.SetSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -53,4 +57,82 @@ public class PreferencesTest {
         assertThatExceptionOfType(NumberFormatException.class)
             .isThrownBy(() -> preferences.getInteger("a"));
     }
+
+    @Test
+    public void getInteger_default() {
+        assertThat(preferences.getInteger("unknown", 42)).isEqualTo(42);
+        preferences.put("b", "7");
+        assertThat(preferences.getInteger("b", 42)).isEqualTo(7);
+    }
+
+    @Test
+    public void getBoolean() {
+        assertThat(preferences.getBoolean("unknown")).isFalse();
+        preferences.put("b", "TRUE");
+        assertThat(preferences.getBoolean("b")).isTrue();
+        preferences.put("b", "yes");
+        assertThat(preferences.getBoolean("b")).isFalse();
+    }
+
+    @Test
+    @SetSystemProperty(key = "c", value = "1")
+    public void reload_systemPropertyChanged() {
+        preferences.reload();
+        assertThat(preferences.getInteger("c")).isEqualTo(1);
+        System.setProperty("c", "2");
+        assertThat(preferences.getInteger("c")).isEqualTo(1);
+        preferences.reload();
+        assertThat(preferences.getInteger("c")).isEqualTo(2);
+        System.clearProperty("c");
+        preferences.reload();
+        assertThat(preferences.getString("c")).isNull();
+    }
+
+    @Test
+    @SetSystemProperty(key = "c", value = "1")
+    public void put_overridesSystemProperty() {
+        preferences.reload();
+        preferences.put("c", "3");
+        assertThat(preferences.getInteger("c")).isEqualTo(3);
+        System.setProperty("c", "2");
+        preferences.reload();
+        assertThat(preferences.getInteger("c")).isEqualTo(3);
+        preferences.remove("c");
+        assertThat(preferences.getInteger("c")).isEqualTo(2);
+    }
+
+    @Test
+    @SetSystemProperty(key = "e", value = "1")
+    public void reload_listener() {
+        preferences.reload();
+        List<String> changes = new ArrayList<>();
+        Preferences.Listener listener = (key, value) -> changes.add(key + "=" + value);
+        preferences.addListener(listener);
+        try {
+            preferences.reload();
+            System.setProperty("e", "2");
+            preferences.reload();
+            System.clearProperty("e");
+            preferences.reload();
+        } finally {
+            preferences.removeListener(listener);
+        }
+        assertThat(changes).containsExactly("e=2", "e=null");
+    }
+
+    @Test
+    public void listener() {
+        List<String> changes = new ArrayList<>();
+        Preferences.Listener listener = (key, value) -> changes.add(key + "=" + value);
+        preferences.addListener(listener);
+        try {
+            preferences.put("d", "1");
+            preferences.remove("d");
+            preferences.remove("d");
+        } finally {
+            preferences.removeListener(listener);
+        }
+        preferences.put("d", "2");
+        assertThat(changes).containsExactly("d=1", "d=null");
+    }
 }
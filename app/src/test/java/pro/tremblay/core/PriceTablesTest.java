@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class PriceTablesTest {
+
+    private final LocalDate from = LocalDate.of(2020, 1, 1);
+    private final AppendablePriceStore prices = new AppendablePriceStore(from);
+    private final CountingPriceStore store = new CountingPriceStore(prices);
+    private final PriceTables tables = new PriceTables(store);
+
+    private PriceStore previousPriceStore;
+
+    /** Counts the prices read, to know what was computed */
+    private static class CountingPriceStore implements PriceStore {
+        private final PriceStore store;
+        int reads;
+
+        CountingPriceStore(PriceStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public long getPrice(long epochDay, @Nonnull Security security) {
+            reads++;
+            return store.getPrice(epochDay, security);
+        }
+
+        @Nonnull
+        @Override
+        public LocalDate getFirstDay() {
+            return store.getFirstDay();
+        }
+
+        @Nonnull
+        @Override
+        public LocalDate getLastDay() {
+            return store.getLastDay();
+        }
+    }
+
+    @AfterEach
+    public void after() {
+        if (previousPriceStore != null) {
+            PriceService.usePriceStore(previousPriceStore);
+        }
+    }
+
+    @Test
+    public void priceReturn() {
+        prices.append(new long[] { 100_00, 200_00 });
+        prices.append(new long[] { 110_00, 150_00 });
+        prices.append(new long[] { 121_00, 300_00 });
+
+        assertThat(tables.priceReturn(day(0), day(2), Security.APPL)).isCloseTo(0.21, within(1e-12));
+        assertThat(tables.priceReturn(day(1), day(2), Security.APPL)).isCloseTo(0.1, within(1e-12));
+        assertThat(tables.priceReturn(day(2), day(1), Security.GOOGL)).isCloseTo(-0.5, within(1e-12));
+        assertThat(tables.priceReturn(day(1), day(1), Security.GOOGL)).isZero();
+    }
+
+    @Test
+    public void priceReturn_computedOnce() {
+        prices.append(new long[] { 100_00 });
+        prices.append(new long[] { 110_00 });
+
+        tables.priceReturn(day(0), day(1), Security.APPL);
+        assertThat(store.reads).isEqualTo(2);
+        tables.priceReturn(day(1), day(0), Security.APPL);
+        assertThat(store.reads).isEqualTo(2);
+    }
+
+    @Test
+    public void priceReturn_onlyNewDaysComputed() {
+        prices.append(new long[] { 100_00 });
+        prices.append(new long[] { 110_00 });
+        tables.priceReturn(day(0), day(1), Security.APPL);
+        assertThat(store.reads).isEqualTo(2);
+
+        for (int i = 0; i < 20; i++) {
+            prices.append(new long[] { 120_00 + i * 100 });
+        }
+        assertThat(tables.priceReturn(day(0), day(21), Security.APPL)).isCloseTo(0.39, within(1e-12));
+        assertThat(store.reads).isEqualTo(22);
+        assertThat(tables.priceReturn(day(0), day(1), Security.APPL)).isCloseTo(0.1, within(1e-12));
+    }
+
+    @Test
+    public void priceReturn_afterLastDay() {
+        prices.append(new long[] { 100_00 });
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> tables.priceReturn(day(0), day(1), Security.APPL))
+            .withMessage("No price for APPL on 2020-01-02");
+    }
+
+    @Test
+    public void priceReturn_beforeFirstDay() {
+        prices.append(new long[] { 100_00 });
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> tables.priceReturn(day(-1), day(0), Security.APPL))
+            .withMessage("No price for APPL on 2019-12-31");
+    }
+
+    @Test
+    public void snapshot() {
+        prices.append(new long[] { 100_00, 200_00 });
+
+        PriceTables.Snapshot snapshot = tables.snapshot(from);
+        assertThat(snapshot.getPrice(Security.GOOGL)).isEqualTo(200_00);
+        assertThat(snapshot.getPrice(Security.GOOGL)).isEqualTo(200_00);
+        assertThat(store.reads).isEqualTo(1);
+        assertThat(tables.snapshot(from)).isSameAs(snapshot);
+    }
+
+    @Test
+    public void snapshot_dayAppendedLater() {
+        prices.append(new long[] { 100_00 });
+
+        PriceTables.Snapshot snapshot = tables.snapshot(from.plusDays(1));
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> snapshot.getPrice(Security.APPL))
+            .withMessage("No price for APPL on 2020-01-02");
+
+        prices.append(new long[] { 101_00 });
+        assertThat(snapshot.getPrice(Security.APPL)).isEqualTo(101_00);
+    }
+
+    @Test
+    public void snapshot_bounded() {
+        PriceTables.Snapshot first = tables.snapshot(from);
+        PriceTables.Snapshot second = tables.snapshot(from.plusDays(1));
+        for (int i = 2; i < PriceTables.MAX_SNAPSHOTS; i++) {
+            tables.snapshot(from.plusDays(i));
+        }
+        assertThat(tables.snapshot(from)).isSameAs(first);
+
+        tables.snapshot(from.plusDays(PriceTables.MAX_SNAPSHOTS));
+        assertThat(tables.snapshot(from)).isSameAs(first);
+        assertThat(tables.snapshot(from.plusDays(1))).isNotSameAs(second);
+    }
+
+    @Test
+    public void snapshot_securityCreatedAfterTheSnapshot() {
+        PriceTables.Snapshot snapshot = tables.snapshot(from);
+        Security security = Security.of("PriceTablesTest.new");
+        long[] row = new long[security.getId() + 1];
+        row[security.getId()] = 123_00;
+        prices.append(row);
+
+        assertThat(snapshot.getPrice(security)).isEqualTo(123_00);
+        assertThat(snapshot.getPrice(security)).isEqualTo(123_00);
+        assertThat(store.reads).isEqualTo(1);
+    }
+
+    @Test
+    public void priceService_getPriceReturn() {
+        prices.append(new long[] { 100_00 });
+        prices.append(new long[] { 90_00 });
+        previousPriceStore = PriceService.usePriceStore(prices);
+
+        assertThat(PriceService.getPriceReturn(from, from.plusDays(1), Security.APPL)).isCloseTo(-0.1, within(1e-12));
+    }
+
+    @Test
+    public void priceService_tablesReplacedWithTheStore() {
+        prices.append(new long[] { 100_00 });
+        previousPriceStore = PriceService.usePriceStore(prices);
+        PriceTables.Snapshot snapshot = PriceService.getSnapshot(from);
+
+        PriceService.usePriceStore(new ArrayPriceStore(from, new long[][] { { 200_00 } }));
+        assertThat(PriceService.getSnapshot(from)).isNotSameAs(snapshot);
+        assertThat(PriceService.getSnapshot(from).getPrice(Security.APPL)).isEqualTo(200_00);
+    }
+
+    private long day(int offset) {
+        return from.plusDays(offset).toEpochDay();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class RandomPriceStoreTest {
+
+    private final LocalDate from = LocalDate.of(2020, 1, 1);
+    private final LocalDate to = LocalDate.of(2020, 12, 31);
+
+    @Test
+    public void getPrice_aroundBasePrice() {
+        RandomPriceStore store = new RandomPriceStore(from, to, 42, RandomPriceStore.Generation.LAZY);
+        for (Security security : Security.values()) {
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                assertThat(store.getPrice(date.toEpochDay(), security)).isBetween(90_00L, 310_00L);
+            }
+        }
+    }
+
+    @Test
+    public void getPrice_sameSeedSamePricesWhateverTheGeneration() {
+        RandomPriceStore eager = new RandomPriceStore(from, to, 42, RandomPriceStore.Generation.EAGER);
+        RandomPriceStore lazy = new RandomPriceStore(from, to, 42, RandomPriceStore.Generation.LAZY);
+        RandomPriceStore parallel = new RandomPriceStore(from, to, 42, RandomPriceStore.Generation.PARALLEL);
+
+        // Access the securities in reverse order to make sure it doesn't matter
+        for (int i = Security.count() - 1; i >= 0; i--) {
+            Security security = Security.byId(i);
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                long price = eager.getPrice(date.toEpochDay(), security);
+                assertThat(lazy.getPrice(date.toEpochDay(), security)).isEqualTo(price);
+                assertThat(parallel.getPrice(date.toEpochDay(), security)).isEqualTo(price);
+            }
+        }
+    }
+
+    @Test
+    public void getPrice_outOfRange() {
+        RandomPriceStore store = new RandomPriceStore(from, to, 42, RandomPriceStore.Generation.LAZY);
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> store.getPrice(from.minusDays(1).toEpochDay(), Security.APPL))
+            .withMessage("No price for APPL on 2019-12-31");
+    }
+
+    @Test
+    public void days() {
+        RandomPriceStore store = new RandomPriceStore(from, to, 42, RandomPriceStore.Generation.LAZY);
+        assertThat(store.getFirstDay()).isEqualTo(from);
+        assertThat(store.getLastDay()).isEqualTo(to);
+    }
+}
@@ -15,16 +15,25 @@
  */
 package pro.tremblay.core;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junitpioneer.jupiter.SetSystemProperty;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Clock;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.*;
 import static pro.tremblay.core.BigDecimalUtil.bd;
@@ -38,6 +47,12 @@ public class ReportingServiceTest {
             .cash(BigDecimal.ZERO)
             .securityPositions(new ArrayList<>());
 
+    @BeforeEach
+    public void before() {
+        // The system properties set by the test are only seen after a reload
+        Preferences.preferences().reload();
+    }
+
     @Test
     public void calculateReturnOnInvestmentYTD_noTransactionAndPosition() {
         BigDecimal roi = reportingService.calculateReturnOnInvestmentYTD(current, Collections.emptyList());
@@ -142,4 +157,477 @@ public class ReportingServiceTest {
             .setScale(2, RoundingMode.HALF_UP);
         assertThat(roi).isEqualTo(actual);
     }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_tooManyDecimalsForFixedDecimal() {
+        current.cash(bd("200.123456"));
+
+        Collection<Transaction> transactions = Collections.singleton(
+            new Transaction()
+                .cash(bd("100.000001"))
+                .type(TransactionType.DEPOSIT)
+                .date(LocalDate.now()));
+
+        BigDecimal roi = reportingService.calculateReturnOnInvestmentYTD(current, transactions);
+
+        // Current cash value = 200.123456$, Initial cash value = 100.123455$
+        BigDecimal actual = bd("100.000001")
+            .divide(bd("100.123455"), 10, RoundingMode.HALF_UP)
+            .multiply(bd(100))
+            .multiply(bd(360))
+            .divide(bd(LocalDate.now().getDayOfYear()), 2, RoundingMode.HALF_UP);
+        assertThat(roi).isEqualTo(actual);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_batch() {
+        current.cash(bd(1_000));
+        current.getSecurityPositions().add(new SecurityPosition()
+            .security(Security.IBM)
+            .quantity(bd(20)));
+
+        Collection<Transaction> transactions = Arrays.asList(
+            new Transaction()
+                .cash(bd(300))
+                .type(TransactionType.DEPOSIT)
+                .date(LocalDate.now().minusDays(5)),
+            new Transaction()
+                .security(Security.IBM)
+                .quantity(bd(5))
+                .cash(bd("1234.56"))
+                .type(TransactionType.BUY)
+                .date(LocalDate.now()),
+            new Transaction()
+                .security(Security.APPL)
+                .quantity(bd(3))
+                .cash(bd("345.67"))
+                .type(TransactionType.SELL)
+                .date(LocalDate.now().minusYears(1)));
+
+        BigDecimal roi = reportingService.calculateReturnOnInvestmentYTD(current, TransactionBatch.of(transactions));
+
+        assertThat(roi).isEqualTo(reportingService.calculateReturnOnInvestmentYTD(current, transactions));
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_securityCreatedAfterThePriceStore() {
+        Security security = Security.of("ReportingServiceTest.new");
+        current.cash(bd(1_000));
+        current.getSecurityPositions().add(new SecurityPosition()
+            .security(security)
+            .quantity(bd(10)));
+
+        LocalDate today = LocalDate.now();
+        Collection<Transaction> transactions = Collections.singletonList(new Transaction()
+            .security(security)
+            .quantity(bd(4))
+            .cash(bd(500))
+            .type(TransactionType.BUY)
+            .date(today));
+
+        BigDecimal roi = reportingService.calculateReturnOnInvestmentYTD(current, transactions);
+
+        BigDecimal initialValue = bd(1_500).add(bd(6).multiply(PriceService.getPrice(today.withDayOfYear(1), security)));
+        BigDecimal currentValue = bd(1_000).add(bd(10).multiply(PriceService.getPrice(today, security)));
+        BigDecimal expected = currentValue.subtract(initialValue)
+            .divide(initialValue, 10, RoundingMode.HALF_UP)
+            .multiply(BigDecimal.valueOf(100 * 360))
+            .divide(BigDecimal.valueOf(today.getDayOfYear()), 2, RoundingMode.HALF_UP);
+        assertThat(roi).isEqualTo(expected);
+        assertThat(reportingService.calculateReturnOnInvestmentYTD(current, TransactionBatch.of(transactions))).isEqualTo(expected);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_stream() {
+        current.cash(bd(200));
+
+        Collection<Transaction> transactions = Arrays.asList(
+            new Transaction()
+                .cash(bd(100))
+                .type(TransactionType.DEPOSIT)
+                .date(LocalDate.now().minusDays(10)),
+            new Transaction()
+                .cash(bd(1_000))
+                .type(TransactionType.DEPOSIT)
+                .date(LocalDate.now().minusYears(1)),
+            new Transaction()
+                .cash(bd(50))
+                .type(TransactionType.WITHDRAWAL)
+                .date(LocalDate.now()));
+
+        BigDecimal expected = reportingService.calculateReturnOnInvestmentYTD(current, transactions);
+
+        assertThat(reportingService.calculateReturnOnInvestmentYTD(current, transactions.stream())).isEqualTo(expected);
+        assertThat(reportingService.calculateReturnOnInvestmentYTD(current, transactions.iterator())).isEqualTo(expected);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_generatedStream() {
+        current.cash(bd(200));
+
+        // Each transaction is created when needed and can be garbage collected right away, so the
+        // stream could be too large for memory. Kept small here so the test stays fast
+        Stream<Transaction> transactions = Stream.generate(() -> new Transaction()
+                .cash(bd(1))
+                .type(TransactionType.DEPOSIT)
+                .date(LocalDate.now().minusYears(1)))
+            .limit(50_000);
+
+        BigDecimal roi = reportingService.calculateReturnOnInvestmentYTD(current, transactions);
+
+        assertThat(roi).isEqualTo("0.00");
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_manyPortfolios() {
+        Map<String, Portfolio> portfolios = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            Position position = new Position()
+                .cash(bd(1_000 + i))
+                .securityPositions(new ArrayList<>(Collections.singleton(new SecurityPosition()
+                    .security(Security.byId(i % Security.count()))
+                    .quantity(bd(10 + i)))));
+            Collection<Transaction> transactions = Arrays.asList(
+                new Transaction()
+                    .cash(bd(100 + i))
+                    .type(TransactionType.DEPOSIT)
+                    .date(LocalDate.now().minusDays(i % LocalDate.now().getDayOfYear())),
+                new Transaction()
+                    .security(Security.byId((i + 1) % Security.count()))
+                    .quantity(bd(i))
+                    .cash(bd(5 * i))
+                    .type(TransactionType.SELL)
+                    .date(LocalDate.now()));
+            portfolios.put("account" + i, new Portfolio().position(position).transactions(transactions));
+        }
+
+        Map<String, BigDecimal> rois = reportingService.calculateReturnOnInvestmentYTD(portfolios);
+
+        assertThat(rois).hasSize(portfolios.size());
+        portfolios.forEach((account, portfolio) ->
+            assertThat(rois.get(account)).isEqualTo(reportingService.calculateReturnOnInvestmentYTD(portfolio.getPosition(), portfolio.getTransactions())));
+    }
+
+    @Test
+    public void calculateReturnOnInvestment_periods() {
+        ReportingService service = new ReportingService(fixedClock(LocalDate.of(2020, 6, 30)));
+        current.cash(bd(1000));
+        List<Transaction> transactions = Arrays.asList(
+            cashTransaction(TransactionType.DEPOSIT, "100", LocalDate.of(2020, 1, 10)),
+            cashTransaction(TransactionType.DEPOSIT, "50", LocalDate.of(2020, 5, 15)),
+            cashTransaction(TransactionType.WITHDRAWAL, "20", LocalDate.of(2020, 6, 20)),
+            cashTransaction(TransactionType.DEPOSIT, "10", LocalDate.of(2019, 12, 31)));
+
+        Map<ReturnPeriod, BigDecimal> rois = service.calculateReturnOnInvestment(current, transactions, EnumSet.allOf(ReturnPeriod.class));
+
+        assertThat(rois).containsOnly(
+            entry(ReturnPeriod.MONTH_TO_DATE, expectedRoi("1000", "1020", 30)),
+            entry(ReturnPeriod.TRAILING_30_DAYS, expectedRoi("1000", "1020", 30)),
+            entry(ReturnPeriod.QUARTER_TO_DATE, expectedRoi("1000", "970", 91)),
+            entry(ReturnPeriod.YEAR_TO_DATE, expectedRoi("1000", "870", 182)),
+            entry(ReturnPeriod.TRAILING_YEAR, expectedRoi("1000", "860", 366)));
+        assertThat(rois.get(ReturnPeriod.YEAR_TO_DATE)).isEqualTo(service.calculateReturnOnInvestmentYTD(current, transactions));
+        assertThat(service.calculateReturnOnInvestment(current, transactions, ReturnPeriod.QUARTER_TO_DATE)).isEqualTo(rois.get(ReturnPeriod.QUARTER_TO_DATE));
+    }
+
+    @Test
+    public void calculateReturnOnInvestment_periodsWithSecurities() {
+        LocalDate today = LocalDate.now();
+        current.cash(bd(1000));
+        current.getSecurityPositions().add(new SecurityPosition().security(Security.IBM).quantity(bd(10)));
+        BigDecimal currentValue = bd(1000).add(bd(10).multiply(PriceService.getPrice(today, Security.IBM)));
+
+        Map<ReturnPeriod, BigDecimal> rois = reportingService.calculateReturnOnInvestment(current, Collections.emptyList(), EnumSet.allOf(ReturnPeriod.class));
+
+        for (ReturnPeriod period : ReturnPeriod.values()) {
+            LocalDate start = period.start(today);
+            BigDecimal initialValue = bd(1000).add(bd(10).multiply(PriceService.getPrice(start, Security.IBM)));
+            int days = (int) (today.toEpochDay() - start.toEpochDay() + 1);
+            assertThat(rois.get(period))
+                .as(period.name())
+                .isEqualTo(expectedRoi(currentValue.toPlainString(), initialValue.toPlainString(), days));
+        }
+    }
+
+    @Test
+    public void calculateReturnOnInvestment_periodsWithSecuritiesInJanuary() {
+        LocalDate today = LocalDate.of(2020, 1, 10);
+        ReportingService service = new ReportingService(fixedClock(today));
+        PriceStore previous = PriceService.usePriceStore(new RandomPriceStore(ReturnPeriod.earliestStart(today), today, 42, RandomPriceStore.Generation.LAZY));
+        try {
+            current.cash(bd(1000));
+            current.getSecurityPositions().add(new SecurityPosition().security(Security.IBM).quantity(bd(10)));
+
+            Map<ReturnPeriod, BigDecimal> rois = service.calculateReturnOnInvestment(current, Collections.emptyList(), EnumSet.allOf(ReturnPeriod.class));
+
+            assertThat(rois).containsOnlyKeys(ReturnPeriod.values());
+        } finally {
+            PriceService.usePriceStore(previous);
+        }
+    }
+
+    @Test
+    public void earliestStart() {
+        assertThat(ReturnPeriod.earliestStart(LocalDate.of(2020, 6, 30))).isEqualTo(LocalDate.of(2019, 7, 1));
+        assertThat(ReturnPeriod.earliestStart(LocalDate.of(2020, 1, 10))).isEqualTo(LocalDate.of(2019, 1, 11));
+    }
+
+    @Test
+    public void calculateReturnOnInvestment_customPeriod() {
+        ReportingService service = new ReportingService(fixedClock(LocalDate.of(2020, 6, 30)));
+        current.cash(bd(1000));
+        List<Transaction> transactions = Arrays.asList(
+            cashTransaction(TransactionType.DEPOSIT, "100", LocalDate.of(2020, 1, 10)),
+            cashTransaction(TransactionType.DEPOSIT, "50", LocalDate.of(2020, 5, 31)),
+            cashTransaction(TransactionType.WITHDRAWAL, "20", LocalDate.of(2020, 6, 1)));
+
+        BigDecimal roi = service.calculateReturnOnInvestment(current, transactions, LocalDate.of(2020, 1, 1), LocalDate.of(2020, 5, 31));
+
+        // 1020 at the end of May, 870 at the beginning of the year
+        assertThat(roi).isEqualTo(expectedRoi("1020", "870", 152));
+    }
+
+    @Test
+    public void calculateReturnOnInvestment_customPeriodWithSecurities() {
+        LocalDate today = LocalDate.now();
+        LocalDate end = today.minusDays(10).getYear() == today.getYear() ? today.minusDays(10) : today;
+        Random random = new Random(42);
+        Map<Security, BigDecimal> quantities = new HashMap<>();
+        quantities.put(Security.IBM, bd(100));
+        BigDecimal cash = bd(10_000);
+        List<Transaction> untilEnd = new ArrayList<>();
+        List<Transaction> afterEnd = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            LocalDate date = today.minusDays(random.nextInt(today.getDayOfYear() + 30));
+            Transaction transaction = randomTransaction(random, date);
+            (date.isAfter(end) ? afterEnd : untilEnd).add(transaction);
+        }
+        Position atEnd = position(cash, quantities);
+        for (Transaction transaction : afterEnd) {
+            cash = transaction.getType() == TransactionType.BUY || transaction.getType() == TransactionType.WITHDRAWAL
+                ? cash.subtract(transaction.getCash()) : cash.add(transaction.getCash());
+            if (transaction.getType().hasQuantity()) {
+                BigDecimal quantity = transaction.getType() == TransactionType.BUY ? transaction.getQuantity() : transaction.getQuantity().negate();
+                quantities.merge(transaction.getSecurity(), quantity, BigDecimal::add);
+            }
+        }
+        List<Transaction> all = new ArrayList<>(untilEnd);
+        all.addAll(afterEnd);
+
+        BigDecimal roi = reportingService.calculateReturnOnInvestment(position(cash, quantities), all, end.withDayOfYear(1), end);
+
+        assertThat(roi).isEqualTo(new ReportingService(fixedClock(end)).calculateReturnOnInvestmentYTD(atEnd, untilEnd));
+    }
+
+    @Test
+    public void calculateReturnOnInvestment_yearToDateSameAsYTD() {
+        Random random = new Random(42);
+        current.cash(bd(10_000));
+        current.getSecurityPositions().add(new SecurityPosition().security(Security.APPL).quantity(bd(20)));
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            transactions.add(randomTransaction(random, LocalDate.now().minusDays(random.nextInt(LocalDate.now().getDayOfYear() + 100))));
+        }
+
+        assertThat(reportingService.calculateReturnOnInvestment(current, transactions, ReturnPeriod.YEAR_TO_DATE))
+            .isEqualTo(reportingService.calculateReturnOnInvestmentYTD(current, transactions));
+    }
+
+    @Test
+    public void calculateReturnOnInvestment_transactionAfterTodayRevertsNothing() {
+        ReportingService service = new ReportingService(fixedClock(LocalDate.of(2020, 6, 30)));
+        current.cash(bd(1000));
+        List<Transaction> transactions = Arrays.asList(
+            cashTransaction(TransactionType.DEPOSIT, "100", LocalDate.of(2020, 6, 10)),
+            cashTransaction(TransactionType.DEPOSIT, "50", LocalDate.of(2020, 7, 1)));
+
+        assertThat(service.calculateReturnOnInvestment(current, transactions, ReturnPeriod.MONTH_TO_DATE)).isEqualTo("0.00");
+        assertThat(service.calculateReturnOnInvestment(current, transactions, LocalDate.of(2020, 6, 1), LocalDate.of(2020, 6, 15))).isEqualTo("0.00");
+    }
+
+    @Test
+    public void calculateReturnOnInvestment_invalidPeriod() {
+        LocalDate today = LocalDate.now();
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> reportingService.calculateReturnOnInvestment(current, Collections.emptyList(), today, today.plusDays(1)));
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> reportingService.calculateReturnOnInvestment(current, Collections.emptyList(), today, today.minusDays(1)));
+    }
+
+    @Test
+    public void calculateDailyReturns_cashFlowsAreNotReturns() {
+        LocalDate today = LocalDate.of(2020, 6, 30);
+        ReportingService service = new ReportingService(fixedClock(today));
+        current.cash(bd(1000));
+        List<Transaction> transactions = Arrays.asList(
+            cashTransaction(TransactionType.DEPOSIT, "100", today.minusDays(1)),
+            cashTransaction(TransactionType.WITHDRAWAL, "30", today),
+            cashTransaction(TransactionType.DEPOSIT, "500", today.minusDays(10)));
+
+        DailyReturns returns = service.calculateDailyReturns(current, transactions, today.minusDays(2));
+
+        assertThat(returns.size()).isEqualTo(3);
+        assertThat(returns.getStart()).isEqualTo(today.minusDays(2));
+        assertThat(returns.getDate(2)).isEqualTo(today);
+        assertThat(returns.getInitialValue()).isEqualTo(930);
+        assertThat(returns.getValues()).containsExactly(930, 1030, 1000);
+        assertThat(returns.getFlows()).containsExactly(0, 100, -30);
+        assertThat(returns.getDailyReturns()).containsExactly(0, 0, 0);
+        assertThat(returns.getTotalReturn()).isZero();
+    }
+
+    @Test
+    public void calculateDailyReturns_timeWeighted() {
+        LocalDate start = LocalDate.of(2020, 6, 28);
+        ReportingService service = new ReportingService(fixedClock(start.plusDays(2)));
+        PriceStore previous = PriceService.usePriceStore(new ArrayPriceStore(start, new long[][] {
+            { 100_00, 100_00, 100_00 },
+            { 100_00, 100_00, 100_00 },
+            { 100_00, 110_00, 121_00 } })); // IBM
+        try {
+            current.cash(bd(450));
+            current.getSecurityPositions().add(new SecurityPosition().security(Security.IBM).quantity(bd(15)));
+            List<Transaction> transactions = Arrays.asList(
+                cashTransaction(TransactionType.DEPOSIT, "1000", start.plusDays(1)),
+                // Bought at the market price so the value doesn't change
+                new Transaction().type(TransactionType.BUY).date(start.plusDays(1)).cash(bd(550)).security(Security.IBM).quantity(bd(5)));
+
+            DailyReturns returns = service.calculateDailyReturns(current, transactions, start);
+
+            // 10 IBM, then 1000 deposited and 5 IBM bought
+            assertThat(returns.getInitialValue()).isEqualTo(1000);
+            assertThat(returns.getValues()).containsExactly(new double[] { 1000, 2100, 2265 }, within(1e-9));
+            assertThat(returns.getDailyReturns()).containsExactly(new double[] { 0, 0.1, 2265.0 / 2100 - 1 }, within(1e-9));
+            assertThat(returns.getTotalReturn()).isCloseTo(1.1 * 2265 / 2100 - 1, within(1e-9));
+        } finally {
+            PriceService.usePriceStore(previous);
+        }
+    }
+
+    @Test
+    public void calculateDailyReturns_sameTotalAsYTDWithoutFlows() {
+        ReportingService service = new ReportingService(fixedClock(LocalDate.of(2020, 6, 30)));
+        PriceStore previous = PriceService.usePriceStore(new RandomPriceStore(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 12, 31), 42, RandomPriceStore.Generation.LAZY));
+        try {
+            current.cash(bd(1000));
+            current.getSecurityPositions().add(new SecurityPosition().security(Security.APPL).quantity(bd(10)));
+
+            DailyReturns returns = service.calculateDailyReturns(current, Collections.emptyList(), ReturnPeriod.YEAR_TO_DATE);
+
+            assertThat(returns.size()).isEqualTo(182);
+            BigDecimal roi = service.calculateReturnOnInvestmentYTD(current, Collections.emptyList());
+            // The YTD return is in percent and annualized
+            double total = roi.doubleValue() / 100 * 182 / 360;
+            assertThat(returns.getTotalReturn()).isCloseTo(total, within(0.0001));
+        } finally {
+            PriceService.usePriceStore(previous);
+        }
+    }
+
+    @Test
+    @SetSystemProperty(key="PARALLEL_REWIND_THRESHOLD", value="0")
+    public void calculateReturnOnInvestmentYTD_parallelSameAsSequential() {
+        ReportingService parallelService = new ReportingService();
+        Random random = new Random(42);
+        current.cash(bd(10_000));
+        current.getSecurityPositions().add(new SecurityPosition().security(Security.APPL).quantity(bd(20)));
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            transactions.add(randomTransaction(random, LocalDate.now().minusDays(random.nextInt(LocalDate.now().getDayOfYear() + 100))));
+        }
+        TransactionBatch batch = TransactionBatch.of(transactions);
+
+        BigDecimal expected = reportingService.calculateReturnOnInvestmentYTD(current, transactions);
+        assertThat(parallelService.calculateReturnOnInvestmentYTD(current, transactions)).isEqualTo(expected);
+        assertThat(parallelService.calculateReturnOnInvestmentYTD(current, batch)).isEqualTo(expected);
+
+        // Falls back to BigDecimal in some parts only
+        transactions.set(150_000, new Transaction()
+            .type(TransactionType.DEPOSIT)
+            .cash(bd("0.000001"))
+            .quantity(BigDecimal.ZERO)
+            .date(LocalDate.now()));
+        assertThat(parallelService.calculateReturnOnInvestmentYTD(current, transactions))
+            .isEqualTo(reportingService.calculateReturnOnInvestmentYTD(current, transactions));
+
+        // A transaction in the future prevents any revert
+        transactions.set(100, cashTransaction(TransactionType.DEPOSIT, "1", LocalDate.now().plusDays(1)));
+        assertThat(parallelService.calculateReturnOnInvestmentYTD(current, transactions))
+            .isEqualTo(reportingService.calculateReturnOnInvestmentYTD(current, transactions));
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_immutableSameAsMutable() {
+        Random random = new Random(42);
+        current.cash(bd(10_000));
+        current.getSecurityPositions().add(new SecurityPosition().security(Security.APPL).quantity(bd(20)));
+        current.getSecurityPositions().add(new SecurityPosition().security(Security.IBM).quantity(bd("1.5")));
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            transactions.add(randomTransaction(random, LocalDate.now().minusDays(random.nextInt(LocalDate.now().getDayOfYear() + 100))));
+        }
+        ImmutablePosition position = ImmutablePosition.of(current);
+        List<ImmutableTransaction> immutableTransactions = transactions.stream().map(ImmutableTransaction::of).toList();
+
+        assertThat(reportingService.calculateReturnOnInvestmentYTD(position, immutableTransactions))
+            .isEqualTo(reportingService.calculateReturnOnInvestmentYTD(current, transactions));
+    }
+
+    @Test
+    @SetSystemProperty(key="PARALLEL_REWIND_THRESHOLD", value="0")
+    public void calculateReturnOnInvestmentYTD_immutableSharedBetweenThreads() {
+        Random random = new Random(42);
+        ImmutablePosition position = new ImmutablePosition(bd(10_000), List.of(new ImmutableSecurityPosition(Security.APPL, bd(20))));
+        List<ImmutableTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            transactions.add(ImmutableTransaction.of(randomTransaction(random, LocalDate.now().minusDays(random.nextInt(LocalDate.now().getDayOfYear())))));
+        }
+        BigDecimal expected = reportingService.calculateReturnOnInvestmentYTD(position.toPosition(),
+            transactions.stream().map(ImmutableTransaction::toTransaction).toList());
+
+        // Same snapshot calculated concurrently, each calculation also reverting in parallel
+        List<BigDecimal> rois = Stream.generate(() -> position)
+            .limit(16)
+            .parallel()
+            .map(p -> reportingService.calculateReturnOnInvestmentYTD(p, transactions))
+            .toList();
+
+        assertThat(rois).containsOnly(expected);
+    }
+
+    private static Clock fixedClock(LocalDate today) {
+        return Clock.fixed(today.atStartOfDay(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+    }
+
+    private static Transaction cashTransaction(TransactionType type, String cash, LocalDate date) {
+        return new Transaction()
+            .type(type)
+            .cash(bd(cash))
+            .quantity(BigDecimal.ZERO)
+            .date(date);
+    }
+
+    private static Transaction randomTransaction(Random random, LocalDate date) {
+        TransactionType type = TransactionType.values()[random.nextInt(TransactionType.values().length)];
+        return new Transaction()
+            .type(type)
+            .date(date)
+            .cash(BigDecimal.valueOf(random.nextInt(100_000), 2))
+            .security(type.hasQuantity() ? Security.byId(random.nextInt(Security.count())) : null)
+            .quantity(type.hasQuantity() ? bd(1 + random.nextInt(10)) : BigDecimal.ZERO);
+    }
+
+    private static Position position(BigDecimal cash, Map<Security, BigDecimal> quantities) {
+        List<SecurityPosition> securityPositions = new ArrayList<>();
+        quantities.forEach((security, quantity) -> securityPositions.add(new SecurityPosition().security(security).quantity(quantity)));
+        return new Position().cash(cash).securityPositions(securityPositions);
+    }
+
+    private static BigDecimal expectedRoi(String currentValue, String initialValue, int days) {
+        return bd(currentValue).subtract(bd(initialValue))
+            .divide(bd(initialValue), 10, RoundingMode.HALF_UP)
+            .multiply(bd(100))
+            .multiply(bd(360))
+            .divide(bd(days), 2, RoundingMode.HALF_UP);
+    }
 }
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junitpioneer.jupiter.SetSystemProperty;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+
+@SetSystemProperty(key="LENGTH_OF_YEAR", value="365")
+public class RoiCacheTest {
+
+    private final MutableClock clock = new MutableClock(LocalDate.of(2020, 11, 15));
+    private final CountingReportingService reportingService = new CountingReportingService(clock);
+    private final RoiCache cache = new RoiCache(reportingService, 10);
+    private PriceStore previousPriceStore;
+
+    @BeforeEach
+    public void before() {
+        // The system properties set by the test are only seen after a reload
+        Preferences.preferences().reload();
+        previousPriceStore = PriceService.usePriceStore(new RandomPriceStore(LocalDate.of(2019, 1, 1), LocalDate.of(2021, 12, 31), 42, RandomPriceStore.Generation.LAZY));
+    }
+
+    @AfterEach
+    public void after() {
+        PriceService.usePriceStore(previousPriceStore);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_sameAsService() {
+        BigDecimal roi = cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5"));
+        assertThat(roi).isEqualTo(new ReportingService(clock).calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5")));
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_sameContentIsAHit() {
+        BigDecimal first = cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5"));
+        BigDecimal second = cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(reportingService.calculations.get()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_transactionOrderDoesNotMatter() {
+        List<Transaction> transactions = transactions("100", "5");
+        cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions);
+        Collections.reverse(transactions);
+        cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions);
+
+        assertThat(cache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_changedContentIsAMiss() {
+        cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5"));
+        cache.calculateReturnOnInvestmentYTD(position("1001", "10"), transactions("100", "5"));
+        cache.calculateReturnOnInvestmentYTD(position("1000", "11"), transactions("100", "5"));
+        cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("101", "5"));
+        cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "6"));
+
+        assertThat(cache.getHitCount()).isZero();
+        assertThat(cache.getMissCount()).isEqualTo(5);
+        assertThat(reportingService.calculations.get()).isEqualTo(5);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_dateAndCashChangedTogetherIsAMiss() {
+        // One day later and one less of cash compensate each other in a linear hash of the fields
+        List<Transaction> first = Collections.singletonList(new Transaction()
+            .type(TransactionType.DEPOSIT).date(LocalDate.of(2020, 11, 5)).cash(bd(100)).quantity(BigDecimal.ZERO));
+        List<Transaction> second = Collections.singletonList(new Transaction()
+            .type(TransactionType.DEPOSIT).date(LocalDate.of(2020, 11, 6)).cash(bd(99)).quantity(BigDecimal.ZERO));
+
+        cache.calculateReturnOnInvestmentYTD(position("1000", "10"), first);
+        BigDecimal roi = cache.calculateReturnOnInvestmentYTD(position("1000", "10"), second);
+
+        assertThat(cache.getMissCount()).isEqualTo(2);
+        assertThat(roi).isEqualTo(new ReportingService(clock).calculateReturnOnInvestmentYTD(position("1000", "10"), second));
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_largeAmounts() {
+        List<Transaction> first = Collections.singletonList(new Transaction()
+            .type(TransactionType.DEPOSIT).date(LocalDate.of(2020, 11, 5)).cash(new BigDecimal("123456789012345678901234.5")).quantity(BigDecimal.ZERO));
+        List<Transaction> second = Collections.singletonList(new Transaction()
+            .type(TransactionType.DEPOSIT).date(LocalDate.of(2020, 11, 5)).cash(new BigDecimal("123456789012345678901234.6")).quantity(BigDecimal.ZERO));
+
+        cache.calculateReturnOnInvestmentYTD(position("1000", "10"), first);
+        cache.calculateReturnOnInvestmentYTD(position("1000", "10"), second);
+        cache.calculateReturnOnInvestmentYTD(position("1000", "10"), first);
+
+        assertThat(cache.getMissCount()).isEqualTo(2);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_lastDigitOfEachSizeOfAmount() {
+        // Each way of reading the unscaled value: integer, up to 15 digits, up to 18 digits and a negative scale
+        String[][] amounts = {
+            { "123456789012345678", "123456789012345679" },
+            { "1234567890.12345", "1234567890.12346" },
+            { "1234567890.12345678", "1234567890.12345679" },
+            { "1.23E+5", "1.24E+5" }
+        };
+        for (String[] pair : amounts) {
+            cache.calculateReturnOnInvestmentYTD(position(pair[0], "10"), transactions("100", "5"));
+            cache.calculateReturnOnInvestmentYTD(position(pair[1], "10"), transactions("100", "5"));
+            cache.calculateReturnOnInvestmentYTD(position(pair[0], "10"), transactions("100", "5"));
+        }
+
+        assertThat(cache.getMissCount()).isEqualTo(2L * amounts.length);
+        assertThat(cache.getHitCount()).isEqualTo(amounts.length);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_scaleIsPartOfTheContent() {
+        // Equal amounts with another scale give the same result but it's simpler to consider them different
+        cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5"));
+        cache.calculateReturnOnInvestmentYTD(position("1000.0", "10"), transactions("100", "5"));
+
+        assertThat(cache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    @SetSystemProperty(key="LENGTH_OF_YEAR", value="360")
+    public void calculateReturnOnInvestmentYTD_yearLengthIsPartOfTheKey() {
+        cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5"));
+        System.setProperty("LENGTH_OF_YEAR", "365");
+        Preferences.preferences().reload();
+        cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5"));
+
+        assertThat(cache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_leastRecentlyUsedIsEvicted() {
+        RoiCache cache = new RoiCache(reportingService, 2);
+        cache.calculateReturnOnInvestmentYTD(position("1", "10"), transactions("100", "5"));
+        cache.calculateReturnOnInvestmentYTD(position("2", "10"), transactions("100", "5"));
+        cache.calculateReturnOnInvestmentYTD(position("1", "10"), transactions("100", "5"));
+        cache.calculateReturnOnInvestmentYTD(position("3", "10"), transactions("100", "5"));
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+
+        // 1 was used after 2, so 2 was evicted
+        cache.calculateReturnOnInvestmentYTD(position("1", "10"), transactions("100", "5"));
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        cache.calculateReturnOnInvestmentYTD(position("2", "10"), transactions("100", "5"));
+        assertThat(cache.getMissCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_invalidatedAtMidnight() {
+        BigDecimal today = cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5"));
+        clock.today(clock.today().plusDays(1));
+        BigDecimal tomorrow = cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5"));
+
+        assertThat(tomorrow).isNotEqualTo(today);
+        assertThat(cache.getMissCount()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_newPriceStoreIsAMiss() {
+        BigDecimal first = cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5"));
+        PriceService.usePriceStore(new RandomPriceStore(LocalDate.of(2019, 1, 1), LocalDate.of(2021, 12, 31), 43, RandomPriceStore.Generation.LAZY));
+        BigDecimal second = cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5"));
+
+        assertThat(cache.getMissCount()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(second).isNotEqualTo(first);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_calculatedOnTheDayOfTheKey() {
+        cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5"));
+
+        assertThat(reportingService.lastEnd).isEqualTo(clock.today());
+    }
+
+    @Test
+    public void invalidateAll() {
+        cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5"));
+        cache.invalidateAll();
+        assertThat(cache.size()).isZero();
+
+        cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5"));
+        assertThat(cache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_failureIsNotCached() {
+        List<Transaction> invalid = Collections.singletonList(new Transaction()
+            .type(TransactionType.BUY)
+            .date(clock.today())
+            .cash(bd(100))
+            .quantity(bd(1)));
+
+        assertThatThrownBy(() -> cache.calculateReturnOnInvestmentYTD(position("1000", "10"), invalid))
+            .isInstanceOf(RuntimeException.class);
+        assertThat(cache.size()).isZero();
+        assertThatThrownBy(() -> cache.calculateReturnOnInvestmentYTD(position("1000", "10"), invalid))
+            .isInstanceOf(RuntimeException.class);
+        assertThat(reportingService.calculations.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_concurrentRequestsAreCoalesced() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calculations = new AtomicInteger();
+        ReportingService blockingService = new ReportingService(clock) {
+            @Override
+            public BigDecimal calculateReturnOnInvestment(Position current, Collection<Transaction> transactions, LocalDate start, LocalDate end) {
+                calculations.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.calculateReturnOnInvestment(current, transactions, start, end);
+            }
+        };
+        RoiCache cache = new RoiCache(blockingService, 10);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<BigDecimal> first = executor.submit(() -> cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5")));
+            assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+            Future<BigDecimal> second = executor.submit(() -> cache.calculateReturnOnInvestmentYTD(position("1000", "10"), transactions("100", "5")));
+            // The second request is waiting for the first one
+            while (cache.getHitCount() == 0) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertThat(second.get(10, TimeUnit.SECONDS)).isSameAs(first.get(10, TimeUnit.SECONDS));
+            assertThat(calculations.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Position position(String cash, String quantity) {
+        List<SecurityPosition> securityPositions = new ArrayList<>();
+        securityPositions.add(new SecurityPosition().security(Security.IBM).quantity(bd(quantity)));
+        return new Position().cash(bd(cash)).securityPositions(securityPositions);
+    }
+
+    private List<Transaction> transactions(String cash, String quantity) {
+        return new ArrayList<>(Arrays.asList(
+            new Transaction()
+                .type(TransactionType.DEPOSIT)
+                .date(clock.today().minusDays(20))
+                .cash(bd(cash))
+                .quantity(BigDecimal.ZERO),
+            new Transaction()
+                .type(TransactionType.BUY)
+                .date(clock.today().minusDays(10))
+                .security(Security.IBM)
+                .cash(bd(50))
+                .quantity(bd(quantity))));
+    }
+
+    private static class CountingReportingService extends ReportingService {
+
+        final AtomicInteger calculations = new AtomicInteger();
+
+        CountingReportingService(Clock clock) {
+            super(clock);
+        }
+
+        /** Day of the end of the last calculation */
+        volatile LocalDate lastEnd;
+
+        @Override
+        public BigDecimal calculateReturnOnInvestment(Position current, Collection<Transaction> transactions, LocalDate start, LocalDate end) {
+            calculations.incrementAndGet();
+            lastEnd = end;
+            return super.calculateReturnOnInvestment(current, transactions, start, end);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junitpioneer.jupiter.SetSystemProperty;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+
+@SetSystemProperty(key="LENGTH_OF_YEAR", value="360")
+public class RoiCalculationEventTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void before() {
+        // The system properties set by the test are only seen after a reload
+        Preferences.preferences().reload();
+    }
+
+    private final Position current = new Position()
+            .cash(bd(100))
+            .securityPositions(new ArrayList<>(Collections.singletonList(new SecurityPosition().security(Security.IBM).quantity(bd(2)))));
+
+    private final List<Transaction> transactions = Arrays.asList(
+        new Transaction().type(TransactionType.DEPOSIT).date(LocalDate.now()).cash(bd(10)).quantity(BigDecimal.ZERO),
+        new Transaction().type(TransactionType.DEPOSIT).date(LocalDate.now().minusYears(1)).cash(bd(20)).quantity(BigDecimal.ZERO));
+
+    @Test
+    public void calculateReturnOnInvestmentYTD() throws Exception {
+        List<RecordedEvent> events = record(() -> {
+            new ReportingService().calculateReturnOnInvestmentYTD(current, transactions);
+            new ReportingService().calculateReturnOnInvestmentYTD(Collections.singletonMap("account-1", new Portfolio().position(current).transactions(transactions)));
+        });
+
+        assertThat(events).hasSize(2);
+        RecordedEvent event = events.get(0);
+        assertThat(event.getLong("transactionCount")).isEqualTo(2);
+        assertThat(event.getLong("yearToDateTransactionCount")).isEqualTo(1);
+        assertThat(event.getInt("securityCount")).isEqualTo(1);
+        assertThat(event.getBoolean("fixedDecimal")).isTrue();
+        assertThat(event.getBoolean("missingPrice")).isFalse();
+        assertThat(event.getString("account")).isNull();
+        assertThat(events.get(1).getString("account")).isEqualTo("account-1");
+    }
+
+    @Test
+    public void calculateReturnOnInvestmentYTD_missingPrice() throws Exception {
+        // No price is generated for next year
+        Clock nextYear = Clock.fixed(LocalDate.now().plusYears(1).atStartOfDay(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+        List<RecordedEvent> events = record(() -> assertThatIllegalArgumentException()
+            .isThrownBy(() -> new ReportingService(nextYear).calculateReturnOnInvestmentYTD(current, transactions)));
+
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getBoolean("missingPrice")).isTrue();
+    }
+
+    private List<RecordedEvent> record(Runnable runnable) throws Exception {
+        Path file = tempDir.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(RoiCalculationEvent.class);
+            recording.start();
+            runnable.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file).stream()
+            .filter(e -> e.getEventType().getName().equals("pro.tremblay.core.RoiCalculation"))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+
+public class SecurityPositionListTest {
+
+    private static final Security[] SECURITIES = new Security[1_100];
+
+    static {
+        for (int i = 0; i < SECURITIES.length; i++) {
+            SECURITIES[i] = Security.of("SecurityPositionListTest" + i);
+        }
+    }
+
+    @Test
+    public void of_keepsTheOrder() {
+        List<ImmutableSecurityPosition> positions = List.of(position(3, 1), position(1, 2), position(2, 3));
+        SecurityPositionList list = SecurityPositionList.of(positions);
+
+        assertThat(list).containsExactlyElementsOf(positions);
+        assertThat(list.get(1)).isSameAs(positions.get(1));
+        assertThat(list.find(SECURITIES[2])).isSameAs(positions.get(2));
+        assertThat(list.find(SECURITIES[4])).isNull();
+        assertThat(SecurityPositionList.of(list)).isSameAs(list);
+    }
+
+    @Test
+    public void get_outOfBounds() {
+        SecurityPositionList list = SecurityPositionList.of(List.of(position(0, 1)));
+
+        assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> list.get(1));
+        assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> list.get(-1));
+    }
+
+    @Test
+    public void updates_leaveTheOriginalUnchanged() {
+        SecurityPositionList original = SecurityPositionList.of(List.of(position(0, 1), position(1, 2)));
+
+        SecurityPositionList updated = original.with(position(0, 5)).with(position(2, 3)).without(SECURITIES[1]);
+
+        assertThat(updated).containsExactly(position(0, 5), position(2, 3));
+        assertThat(original).containsExactly(position(0, 1), position(1, 2));
+    }
+
+    @Test
+    public void without_duplicates() {
+        SecurityPositionList list = SecurityPositionList.of(List.of(position(0, 1), position(1, 2), position(0, 3)));
+
+        assertThat(list.find(SECURITIES[0])).isEqualTo(position(0, 1));
+        assertThat(list.without(SECURITIES[0])).containsExactly(position(1, 2));
+    }
+
+    @Test
+    public void randomUpdates_sameAsAList() {
+        Random random = new Random(42);
+        SecurityPositionList list = SecurityPositionList.of(List.of());
+        List<ImmutableSecurityPosition> expected = new ArrayList<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            Security security = SECURITIES[random.nextInt(SECURITIES.length)];
+            if (random.nextInt(3) == 0) {
+                list = list.without(security);
+                expected.removeIf(p -> p.security() == security);
+            } else {
+                ImmutableSecurityPosition securityPosition = new ImmutableSecurityPosition(security, bd(i));
+                list = list.with(securityPosition);
+                int index = indexOf(expected, security);
+                if (index < 0) {
+                    expected.add(securityPosition);
+                } else {
+                    expected.set(index, securityPosition);
+                }
+            }
+            if (i % 1_000 == 0) {
+                assertThat(list).containsExactlyElementsOf(expected);
+            }
+        }
+
+        assertThat(list).containsExactlyElementsOf(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(list.get(i)).isSameAs(expected.get(i));
+        }
+        for (Security security : SECURITIES) {
+            int index = indexOf(expected, security);
+            assertThat(list.find(security)).isSameAs(index < 0 ? null : expected.get(index));
+        }
+    }
+
+    @Test
+    public void removeAll_compacts() {
+        SecurityPositionList list = SecurityPositionList.of(List.of());
+        for (Security security : SECURITIES) {
+            list = list.with(new ImmutableSecurityPosition(security, bd(1)));
+        }
+        for (int i = 0; i < SECURITIES.length - 1; i++) {
+            list = list.without(SECURITIES[i]);
+        }
+
+        assertThat(list).containsExactly(new ImmutableSecurityPosition(SECURITIES[SECURITIES.length - 1], bd(1)));
+        assertThat(list.without(SECURITIES[SECURITIES.length - 1])).isEmpty();
+    }
+
+    private static ImmutableSecurityPosition position(int security, int quantity) {
+        return new ImmutableSecurityPosition(SECURITIES[security], bd(quantity));
+    }
+
+    private static int indexOf(List<ImmutableSecurityPosition> positions, Security security) {
+        for (int i = 0; i < positions.size(); i++) {
+            if (positions.get(i).security() == security) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class SecurityTest {
+
+    @Test
+    public void of_interned() {
+        Security security = Security.of("SecurityTest.of");
+        assertThat(Security.of(new String("SecurityTest.of"))).isSameAs(security);
+        assertThat(security.getSymbol()).isEqualTo("SecurityTest.of");
+        assertThat(security).hasToString("SecurityTest.of");
+    }
+
+    @Test
+    public void of_consecutiveIds() {
+        Security first = Security.of("SecurityTest.first");
+        Security second = Security.of("SecurityTest.second");
+        assertThat(second.getId()).isEqualTo(first.getId() + 1);
+        assertThat(Security.count()).isGreaterThan(second.getId());
+    }
+
+    @Test
+    public void of_empty() {
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> Security.of(""))
+            .withMessage("A symbol can't be empty");
+    }
+
+    @Test
+    public void constants() {
+        assertThat(Security.find("APPL")).isSameAs(Security.APPL);
+        assertThat(Security.byId(Security.IBM.getId())).isSameAs(Security.IBM);
+        assertThat(Security.values()).startsWith(Security.APPL, Security.GOOGL, Security.IBM);
+    }
+
+    @Test
+    public void values_unmodifiable() {
+        List<Security> values = Security.values();
+        assertThatExceptionOfType(UnsupportedOperationException.class)
+            .isThrownBy(() -> values.set(0, Security.IBM));
+    }
+
+    @Test
+    public void find_unknown() {
+        assertThat(Security.find("SecurityTest.unknown")).isNull();
+    }
+
+    @Test
+    public void byId_unknown() {
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> Security.byId(-1))
+            .withMessage("No security with id -1");
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> Security.byId(Integer.MAX_VALUE))
+            .withMessage("No security with id " + Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void values_manySecurities() {
+        Security[] created = new Security[100];
+        for (int i = 0; i < created.length; i++) {
+            created[i] = Security.of("SecurityTest.many" + i);
+        }
+        List<Security> values = Security.values();
+        for (Security security : created) {
+            assertThat(values.get(security.getId())).isSameAs(security);
+            assertThat(Security.byId(security.getId())).isSameAs(security);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+
+public class TransactionBatchTest {
+
+    private final List<Transaction> transactions = Arrays.asList(
+        new Transaction()
+            .type(TransactionType.BUY)
+            .date(LocalDate.of(2020, 2, 3))
+            .cash(bd("123.45"))
+            .security(Security.GOOGL)
+            .quantity(bd(7)),
+        new Transaction()
+            .type(TransactionType.DEPOSIT)
+            .date(LocalDate.of(2019, 12, 31))
+            .cash(bd(1_000)));
+
+    @Test
+    public void of() {
+        TransactionBatch batch = TransactionBatch.of(transactions);
+
+        assertThat(batch.size()).isEqualTo(2);
+
+        assertThat(batch.getType(0)).isEqualTo(TransactionType.BUY);
+        assertThat(batch.getDate(0)).isEqualTo(LocalDate.of(2020, 2, 3));
+        assertThat(batch.getEpochDay(0)).isEqualTo(LocalDate.of(2020, 2, 3).toEpochDay());
+        assertThat(batch.getCash(0)).isEqualTo(1_234_500L);
+        assertThat(batch.getSecurity(0)).isEqualTo(Security.GOOGL);
+        assertThat(batch.getQuantity(0)).isEqualTo(70_000L);
+
+        assertThat(batch.getType(1)).isEqualTo(TransactionType.DEPOSIT);
+        assertThat(batch.getSecurity(1)).isNull();
+        assertThat(batch.getQuantity(1)).isZero();
+    }
+
+    @Test
+    public void toTransactions() {
+        List<Transaction> actual = TransactionBatch.of(transactions).toTransactions();
+
+        assertThat(actual).hasSize(2);
+        for (int i = 0; i < actual.size(); i++) {
+            Transaction expected = transactions.get(i);
+            assertThat(actual.get(i).getType()).isEqualTo(expected.getType());
+            assertThat(actual.get(i).getDate()).isEqualTo(expected.getDate());
+            assertThat(actual.get(i).getCash()).isEqualByComparingTo(expected.getCash());
+            assertThat(actual.get(i).getSecurity()).isEqualTo(expected.getSecurity());
+        }
+        assertThat(actual.get(0).getQuantity()).isEqualByComparingTo("7");
+    }
+
+    @Test
+    public void builder_grows() {
+        TransactionBatch.Builder builder = TransactionBatch.builder(0);
+        for (int i = 0; i < 100; i++) {
+            builder.add(TransactionType.WITHDRAWAL, LocalDate.of(2020, 1, 1).plusDays(i), i, null, 0);
+        }
+        TransactionBatch batch = builder.build();
+
+        assertThat(batch.size()).isEqualTo(100);
+        assertThat(batch.getCash(99)).isEqualTo(99);
+        assertThat(batch.getDate(99)).isEqualTo(LocalDate.of(2020, 4, 9));
+    }
+
+    @Test
+    public void builder_manySecurities() {
+        TransactionBatch.Builder builder = TransactionBatch.builder(0);
+        Security last = null;
+        for (int i = 0; i < 300; i++) {
+            last = Security.of("TransactionBatchTest" + i);
+        }
+        builder.add(TransactionType.BUY, LocalDate.of(2020, 1, 1), 1, last, 1);
+
+        assertThat(builder.build().getSecurity(0)).isSameAs(last);
+    }
+
+    @Test
+    public void builder_tooManyDecimals() {
+        TransactionBatch.Builder builder = TransactionBatch.builder(1);
+        Transaction transaction = new Transaction()
+            .type(TransactionType.DEPOSIT)
+            .date(LocalDate.of(2020, 1, 1))
+            .cash(bd("1.23456"));
+
+        assertThatExceptionOfType(ArithmeticException.class)
+            .isThrownBy(() -> builder.add(transaction));
+    }
+
+    @Test
+    public void getType_outOfBounds() {
+        TransactionBatch batch = TransactionBatch.of(transactions);
+
+        assertThatExceptionOfType(IndexOutOfBoundsException.class)
+            .isThrownBy(() -> batch.getType(2));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+
+public class TransactionCsvReaderTest {
+
+    @TempDir
+    Path folder;
+
+    private final TransactionCsvReader reader = new TransactionCsvReader();
+
+    @Test
+    public void readTransactions() throws IOException {
+        Path file = write("type,date,cash,security,quantity\n" +
+            "DEPOSIT,2023-01-03,1000,,\n" +
+            "BUY,2023-01-10,100.50,GOOGL,1\r\n" +
+            "\n" +
+            "SELL,2023-02-01,-0.0001,IBM,+2.5000\n" +
+            "WITHDRAWAL,2024-02-29,12345678901234567890.123,,0");
+
+        List<Transaction> transactions = reader.readTransactions(file);
+
+        assertThat(transactions).hasSize(4);
+        assertTransaction(transactions.get(0), TransactionType.DEPOSIT, LocalDate.of(2023, 1, 3), "1000", null, "0");
+        assertTransaction(transactions.get(1), TransactionType.BUY, LocalDate.of(2023, 1, 10), "100.50", Security.GOOGL, "1");
+        assertTransaction(transactions.get(2), TransactionType.SELL, LocalDate.of(2023, 2, 1), "-0.0001", Security.IBM, "+2.5000");
+        assertTransaction(transactions.get(3), TransactionType.WITHDRAWAL, LocalDate.of(2024, 2, 29), "12345678901234567890.123", null, "0");
+    }
+
+    @Test
+    public void readTransactions_sameAsBigDecimal() throws IOException {
+        String[] values = { "0", "-0", "00012.3400", ".5", "5.", "1E+3", "999999999999999999", "-9999999999999999999", "0.000000000000000000001" };
+        StringBuilder csv = new StringBuilder(TransactionCsvReader.HEADER).append('\n');
+        for (String value : values) {
+            csv.append("DEPOSIT,2023-01-03,").append(value).append(",,\n");
+        }
+
+        List<Transaction> transactions = reader.readTransactions(write(csv.toString()));
+
+        for (int i = 0; i < values.length; i++) {
+            // Same value and same scale
+            assertThat(transactions.get(i).getCash()).isEqualTo(bd(values[i]));
+        }
+    }
+
+    @Test
+    public void readTransactions_unknownSecurityIsCreated() throws IOException {
+        List<Transaction> transactions = reader.readTransactions(write(TransactionCsvReader.HEADER + "\nBUY,2023-01-10,1,CSVNEW,1\nSELL,2023-01-11,1,CSVNEW,1\n"));
+
+        assertThat(transactions.get(0).getSecurity()).isSameAs(Security.find("CSVNEW"));
+        assertThat(transactions.get(1).getSecurity()).isSameAs(transactions.get(0).getSecurity());
+    }
+
+    @Test
+    public void readTransactions_onlyHeader() throws IOException {
+        assertThat(reader.readTransactions(write(TransactionCsvReader.HEADER))).isEmpty();
+    }
+
+    @Test
+    public void readTransactions_wrongHeader() throws IOException {
+        Path file = write("date,type\n");
+
+        assertThatIOException()
+            .isThrownBy(() -> reader.readTransactions(file))
+            .withMessageEndingWith("is not a transaction file, expected header '" + TransactionCsvReader.HEADER + "'");
+    }
+
+    @Test
+    public void readTransactions_invalidLines() throws IOException {
+        assertInvalid("BUY,2023-01-10,1,IBM\n", "Expected 5 fields 'BUY,2023-01-10,1,IBM' at offset 33");
+        assertInvalid("GIFT,2023-01-10,1,IBM,1\n", "Unknown transaction type 'GIFT' at offset 33");
+        assertInvalid("BUY,2023-02-30,1,IBM,1\n", "Invalid date '2023-02-30' at offset 37");
+        assertInvalid("BUY,10/01/2023,1,IBM,1\n", "Invalid date '10/01/2023' at offset 37");
+        assertInvalid("BUY,2023-01-10,,IBM,1\n", "Missing cash 'BUY,2023-01-10,,IBM,1' at offset 33");
+        assertInvalid("BUY,2023-01-10,1.2.3,IBM,1\n", "Invalid decimal '1.2.3' at offset 48");
+        assertInvalid("BUY,2023-01-10,1,IBM,-\n", "Invalid decimal '-' at offset 54");
+    }
+
+    @Test
+    public void readBatch() throws IOException {
+        Path file = write("type,date,cash,security,quantity\n" +
+            "DEPOSIT,2023-01-03,1000,,\n" +
+            "BUY,2023-01-10,100.50,GOOGL,1.25\n");
+
+        TransactionBatch batch = reader.readBatch(file);
+
+        assertThat(batch.size()).isEqualTo(2);
+        assertThat(batch.getType(1)).isEqualTo(TransactionType.BUY);
+        assertThat(batch.getDate(1)).isEqualTo(LocalDate.of(2023, 1, 10));
+        assertThat(batch.getCash(1)).isEqualTo(FixedDecimal.of(bd("100.5")));
+        assertThat(batch.getSecurity(1)).isSameAs(Security.GOOGL);
+        assertThat(batch.getQuantity(1)).isEqualTo(FixedDecimal.of(bd("1.25")));
+        assertThat(batch.getSecurity(0)).isNull();
+        assertThat(batch.getQuantity(0)).isZero();
+    }
+
+    @Test
+    public void readBatch_amountWithTooManyDigits() throws IOException {
+        Path file = write(TransactionCsvReader.HEADER + "\nDEPOSIT,2023-01-03,0.00001,,\n");
+
+        assertThatThrownBy(() -> reader.readBatch(file))
+            .isInstanceOf(ArithmeticException.class)
+            .hasMessage("Can't store the transaction at offset 33 in a batch, an amount has too many digits");
+    }
+
+    @Test
+    public void segments_sameAsOneSegment() throws IOException {
+        Random random = new Random(42);
+        StringBuilder csv = new StringBuilder(TransactionCsvReader.HEADER).append('\n');
+        for (int i = 0; i < 2_000; i++) {
+            TransactionType type = TransactionType.values()[random.nextInt(TransactionType.values().length)];
+            csv.append(type).append(',')
+                .append(LocalDate.of(2023, 1, 1).plusDays(random.nextInt(365))).append(',')
+                .append(BigDecimal.valueOf(random.nextInt(100_000), 2)).append(',')
+                .append(type.hasQuantity() ? Security.byId(random.nextInt(3)).getSymbol() : "").append(',')
+                .append(type.hasQuantity() ? String.valueOf(1 + random.nextInt(100)) : "")
+                .append(random.nextBoolean() ? "\n" : "\r\n");
+        }
+        Path file = write(csv.toString());
+        List<Transaction> expected = reader.readTransactions(file);
+        TransactionBatch expectedBatch = reader.readBatch(file);
+
+        // Segments smaller than a line, of about one line and of many lines
+        for (int segmentSize : new int[] { 1, 7, 30, 1000 }) {
+            for (boolean parallel : new boolean[] { false, true }) {
+                TransactionCsvReader segmented = new TransactionCsvReader().parallel(parallel).segmentSize(segmentSize);
+                assertThat(segmented.readTransactions(file)).usingRecursiveFieldByFieldElementComparator().isEqualTo(expected);
+                assertThat(segmented.readBatch(file).toTransactions()).usingRecursiveFieldByFieldElementComparator().isEqualTo(expectedBatch.toTransactions());
+            }
+        }
+    }
+
+    private void assertInvalid(String line, String message) throws IOException {
+        Path file = write(TransactionCsvReader.HEADER + "\n" + line);
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> reader.readTransactions(file))
+            .withMessage(message + " of " + file);
+    }
+
+    private static void assertTransaction(Transaction transaction, TransactionType type, LocalDate date, String cash, Security security, String quantity) {
+        assertThat(transaction.getType()).isEqualTo(type);
+        assertThat(transaction.getDate()).isEqualTo(date);
+        assertThat(transaction.getCash()).isEqualTo(bd(cash));
+        assertThat(transaction.getSecurity()).isSameAs(security);
+        assertThat(transaction.getQuantity()).isEqualTo(bd(quantity));
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.write(folder.resolve("transactions.csv"), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pro.tremblay.core.Position;
+import pro.tremblay.core.Preferences;
+import pro.tremblay.core.ReportingService;
+import pro.tremblay.core.Security;
+import pro.tremblay.core.SecurityPosition;
+import pro.tremblay.core.Transaction;
+import pro.tremblay.core.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Latency of the first return on investment calculation in a new JVM, which includes the generation of the prices.
+ * {@code EAGER} is the original behavior of generating all prices when {@code PriceService} is loaded.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+@State(Scope.Benchmark)
+public class ColdStartBenchmark {
+
+    @Param({ "EAGER", "LAZY", "PARALLEL" })
+    private String generation;
+
+    private ReportingService service;
+    private Position position;
+    private Collection<Transaction> transactions;
+
+    @Setup
+    public void setup() {
+        // Must be set before PriceService is loaded, so nothing here should use it
+        System.setProperty("LENGTH_OF_YEAR", "365");
+        System.setProperty("PRICE_GENERATION", generation);
+        Preferences.preferences().reload();
+
+        service = new ReportingService();
+        position = new Position()
+            .cash(BigDecimal.valueOf(1_000_000))
+            .securityPositions(Security.values().stream()
+                .map(sec -> new SecurityPosition()
+                    .quantity(BigDecimal.valueOf(1_000))
+                    .security(sec))
+                .collect(Collectors.toList()));
+        transactions = Collections.singletonList(new Transaction()
+            .type(TransactionType.DEPOSIT)
+            .date(LocalDate.now())
+            .cash(BigDecimal.valueOf(1_000)));
+    }
+
+    @Benchmark
+    public BigDecimal firstCalculation() {
+        return service.calculateReturnOnInvestmentYTD(position, transactions);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pro.tremblay.core.Security;
+import pro.tremblay.core.Transaction;
+import pro.tremblay.core.TransactionBatch;
+import pro.tremblay.core.TransactionCsvReader;
+import pro.tremblay.core.TransactionType;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import of a CSV file of transactions with {@link TransactionCsvReader} against the usual parsing, a {@code String}
+ * per line split in fields and a {@code new BigDecimal(String)} per amount. The file is written at setup and its size
+ * is printed to get the throughput in MB/s.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class CsvImportBenchmark {
+
+    @Param({ "1000000" })
+    public int transactionCount;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        Security[] securities = Workload.securities(3);
+        List<Transaction> transactions = Workload.randomTransactions(new Random(42), LocalDate.now(), transactionCount, securities.length, 0.5);
+        file = Files.createTempFile("transactions", ".csv");
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("type,date,cash,security,quantity\n");
+            for (Transaction t : transactions) {
+                out.write(t.getType() + "," + t.getDate() + "," + t.getCash().toPlainString() + ","
+                    + (t.getSecurity() == null ? "" : t.getSecurity().getSymbol()) + ","
+                    + (t.getType().hasQuantity() ? t.getQuantity().toPlainString() : "") + "\n");
+            }
+        }
+        System.out.printf("%nFile size: %,d bytes%n", Files.size(file));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public List<Transaction> split() throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            in.readLine();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split(",", -1);
+                transactions.add(new Transaction()
+                    .type(TransactionType.valueOf(fields[0]))
+                    .date(LocalDate.parse(fields[1]))
+                    .cash(new BigDecimal(fields[2]))
+                    .security(fields[3].isEmpty() ? null : Security.of(fields[3]))
+                    .quantity(fields[4].isEmpty() ? BigDecimal.ZERO : new BigDecimal(fields[4])));
+            }
+        }
+        return transactions;
+    }
+
+    @Benchmark
+    public List<Transaction> transactions() throws IOException {
+        return new TransactionCsvReader().readTransactions(file);
+    }
+
+    @Benchmark
+    public List<Transaction> transactionsParallel() throws IOException {
+        return new TransactionCsvReader().parallel(true).readTransactions(file);
+    }
+
+    @Benchmark
+    public TransactionBatch batch() throws IOException {
+        return new TransactionCsvReader().readBatch(file);
+    }
+
+    @Benchmark
+    public TransactionBatch batchParallel() throws IOException {
+        return new TransactionCsvReader().parallel(true).readBatch(file);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import pro.tremblay.core.PriceService;
+import pro.tremblay.core.PriceStore;
+import pro.tremblay.core.Security;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The original price store, keyed by a {@code date#security} string, kept to compare with the new ones.
+ */
+public class MapPriceStore implements PriceStore {
+
+    private final ConcurrentMap<String, BigDecimal> prices = new ConcurrentHashMap<>();
+    private final LocalDate from;
+    private final LocalDate to;
+
+    public MapPriceStore(PriceStore source, LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+        for (Security security : Security.values()) {
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                prices.put(getKey(security, date), BigDecimal.valueOf(source.getPrice(date.toEpochDay(), security), PriceService.PRICE_SCALE));
+            }
+        }
+    }
+
+    private static String getKey(Security security, LocalDate date) {
+        return date + "#" + security;
+    }
+
+    public BigDecimal getPrice(LocalDate date, Security security) {
+        BigDecimal price = prices.get(getKey(security, date));
+        if(price == null) {
+            throw new IllegalArgumentException("No price for " + security + " on " + date);
+        }
+        return price;
+    }
+
+    @Override
+    public long getPrice(long epochDay, Security security) {
+        return getPrice(LocalDate.ofEpochDay(epochDay), security).unscaledValue().longValueExact();
+    }
+
+    @Override
+    public LocalDate getFirstDay() {
+        return from;
+    }
+
+    @Override
+    public LocalDate getLastDay() {
+        return to;
+    }
+}
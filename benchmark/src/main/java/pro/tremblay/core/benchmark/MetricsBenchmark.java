@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pro.tremblay.core.Metrics;
+import pro.tremblay.core.Position;
+import pro.tremblay.core.Preferences;
+import pro.tremblay.core.ReportingService;
+import pro.tremblay.core.Security;
+import pro.tremblay.core.SecurityPosition;
+import pro.tremblay.core.Transaction;
+import pro.tremblay.core.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link Metrics} instrumentation. The {@code enabled=false} score should be the same as before the
+ * instrumentation was added. When enabled, the cost is mostly the calls to {@code System.nanoTime()}, two per phase
+ * and per price lookup, so it depends on how fast the clock source of the machine is.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    static {
+        System.setProperty("LENGTH_OF_YEAR", "365");
+        Preferences.preferences().reload();
+    }
+
+    @Param({ "false", "true" })
+    public boolean enabled;
+
+    @Param({ "10", "1000" })
+    public int transactionCount;
+
+    private final ReportingService service = new ReportingService();
+    private Position position;
+    private List<Transaction> transactions;
+
+    @Setup
+    public void setup() {
+        Metrics.setEnabled(enabled);
+
+        Random random = new Random(42);
+        LocalDate now = LocalDate.now();
+        List<Security> securities = Security.values();
+        List<SecurityPosition> securityPositions = new ArrayList<>();
+        for (Security security : securities) {
+            securityPositions.add(new SecurityPosition().security(security).quantity(BigDecimal.valueOf(1_000)));
+        }
+        position = new Position()
+            .cash(BigDecimal.valueOf(1_000_000))
+            .securityPositions(securityPositions);
+
+        TransactionType[] types = TransactionType.values();
+        transactions = new ArrayList<>(transactionCount);
+        for (int i = 0; i < transactionCount; i++) {
+            TransactionType type = types[random.nextInt(types.length)];
+            transactions.add(new Transaction()
+                .type(type)
+                .date(now.minusDays(random.nextInt(now.getDayOfYear())))
+                .cash(BigDecimal.valueOf(random.nextInt(100_000), 2))
+                .security(type.hasQuantity() ? securities.get(random.nextInt(securities.size())) : null)
+                .quantity(type.hasQuantity() ? BigDecimal.valueOf(1 + random.nextInt(100)) : BigDecimal.ZERO));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        Metrics.setEnabled(false);
+    }
+
+    @Benchmark
+    public BigDecimal calculate() {
+        return service.calculateReturnOnInvestmentYTD(position, transactions);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pro.tremblay.core.Position;
+import pro.tremblay.core.Preferences;
+import pro.tremblay.core.ReportingService;
+import pro.tremblay.core.Security;
+import pro.tremblay.core.SecurityPosition;
+import pro.tremblay.core.Transaction;
+import pro.tremblay.core.TransactionBatch;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of the parallel rewind of a large history with the number of cores. The calculation runs in a fork-join
+ * pool of {@code parallelism} threads so the parallel streams use it instead of the common pool. Compare with
+ * {@code sequential} to get the speedup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g", "-DPARALLEL_REWIND_THRESHOLD=0" })
+@State(Scope.Benchmark)
+public class ParallelRewindBenchmark {
+
+    static {
+        System.setProperty("LENGTH_OF_YEAR", "365");
+        Preferences.preferences().reload();
+    }
+
+    @Param({ "1000000", "10000000" })
+    public int transactionCount;
+
+    @Param({ "1", "2", "4", "8", "16", "32" })
+    public int parallelism;
+
+    private final ReportingService service = new ReportingService();
+    private ForkJoinPool pool;
+    private Position position;
+    private List<Transaction> transactions;
+    private TransactionBatch batch;
+
+    @Setup
+    public void setup() {
+        pool = new ForkJoinPool(parallelism);
+        List<SecurityPosition> securityPositions = new ArrayList<>();
+        for (Security security : Security.values()) {
+            securityPositions.add(new SecurityPosition().security(security).quantity(BigDecimal.valueOf(1_000)));
+        }
+        position = new Position()
+            .cash(BigDecimal.valueOf(1_000_000))
+            .securityPositions(securityPositions);
+        transactions = Workload.randomTransactions(new Random(42), LocalDate.now(), transactionCount, Security.count(), 0.5);
+        batch = TransactionBatch.of(transactions);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public BigDecimal sequential() {
+        // The iterator is always reverted on one thread, parallelism doesn't matter
+        return service.calculateReturnOnInvestmentYTD(position, transactions.iterator());
+    }
+
+    @Benchmark
+    public BigDecimal parallel() {
+        return pool.submit(() -> service.calculateReturnOnInvestmentYTD(position, transactions)).join();
+    }
+
+    @Benchmark
+    public BigDecimal parallelBatch() {
+        return pool.submit(() -> service.calculateReturnOnInvestmentYTD(position, batch)).join();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pro.tremblay.core.PositionRewind;
+import pro.tremblay.core.ReportingService;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each phase of the return on investment calculation on its own, to know which one regresses.
+ * <ul>
+ *     <li>{@code rewind}: revert the transactions of the year</li>
+ *     <li>{@code valuation}: value the current and initial positions and calculate the return</li>
+ *     <li>{@code total}: both, as done by {@link ReportingService#calculateReturnOnInvestmentYTD(pro.tremblay.core.Position, java.util.Collection)}</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class PhaseBenchmark {
+
+    private final ReportingService service = new ReportingService();
+
+    @Benchmark
+    public PositionRewind rewind(Workload workload) {
+        PositionRewind rewind = new PositionRewind(workload.beginningOfYear, workload.now);
+        workload.transactions.forEach(rewind::revert);
+        return rewind;
+    }
+
+    @Benchmark
+    public BigDecimal valuation(Workload workload) {
+        return service.calculateReturnOnInvestmentYTD(workload.position, workload.rewind);
+    }
+
+    @Benchmark
+    public BigDecimal total(Workload workload) {
+        return service.calculateReturnOnInvestmentYTD(workload.position, workload.transactions);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pro.tremblay.core.Position;
+import pro.tremblay.core.Security;
+import pro.tremblay.core.SecurityPosition;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding the position of a security in a large position, by scanning the security positions as the original
+ * {@code revert} did, or with the index of {@link Position}. Each security is held once and the security looked up is
+ * the last one of the position.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PositionLookupBenchmark {
+
+    /** Number of securities in the position */
+    @Param({ "10", "100", "1000", "10000" })
+    public int positionCount;
+
+    private Position position;
+    private Security security;
+
+    @Setup
+    public void setup() {
+        Security[] securities = Workload.securities(positionCount);
+        List<SecurityPosition> securityPositions = new ArrayList<>(positionCount);
+        for (Security held : securities) {
+            securityPositions.add(new SecurityPosition().security(held).quantity(BigDecimal.ONE));
+        }
+        position = new Position()
+            .cash(BigDecimal.ZERO)
+            .securityPositions(securityPositions);
+        security = securities[securities.length - 1];
+    }
+
+    @Benchmark
+    public SecurityPosition scan() {
+        return position.getSecurityPositions().stream()
+            .filter(securityPosition -> securityPosition.getSecurity() == security)
+            .findAny()
+            .orElse(null);
+    }
+
+    @Benchmark
+    public SecurityPosition index() {
+        return position.getSecurityPosition(security);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import pro.tremblay.core.PriceService;
+import pro.tremblay.core.Security;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A price lookup through {@link PriceService} for a random day of the year and a random security. And the price return
+ * of a security since the beginning of the year, from the cumulative returns or from the two prices.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PriceServiceBenchmark {
+
+    private static final int DATES = 1_024;
+
+    private final LocalDate[] dates = new LocalDate[DATES];
+    private final Security[] securities = new Security[DATES];
+    private final LocalDate beginningOfYear = LocalDate.now().withDayOfYear(1);
+
+    @Setup
+    public void setup() {
+        LocalDate now = LocalDate.now();
+        for (int i = 0; i < DATES; i++) {
+            dates[i] = now.minusDays(ThreadLocalRandom.current().nextInt(now.getDayOfYear()));
+            securities[i] = Security.byId(ThreadLocalRandom.current().nextInt(Security.count()));
+        }
+    }
+
+    @Benchmark
+    public BigDecimal getPrice() {
+        int i = ThreadLocalRandom.current().nextInt(DATES);
+        return PriceService.getPrice(dates[i], securities[i]);
+    }
+
+    @Benchmark
+    public long getFixedPrice() {
+        int i = ThreadLocalRandom.current().nextInt(DATES);
+        return PriceService.getFixedPrice(dates[i], securities[i]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long getFixedPriceAllThreads() {
+        int i = ThreadLocalRandom.current().nextInt(DATES);
+        return PriceService.getFixedPrice(dates[i], securities[i]);
+    }
+
+    @Benchmark
+    public double getPriceReturn() {
+        int i = ThreadLocalRandom.current().nextInt(DATES);
+        return PriceService.getPriceReturn(beginningOfYear, dates[i], securities[i]);
+    }
+
+    @Benchmark
+    public BigDecimal getPriceReturnFromPrices() {
+        int i = ThreadLocalRandom.current().nextInt(DATES);
+        BigDecimal initial = PriceService.getPrice(beginningOfYear, securities[i]);
+        return PriceService.getPrice(dates[i], securities[i]).subtract(initial).divide(initial, 10, RoundingMode.HALF_UP);
+    }
+}
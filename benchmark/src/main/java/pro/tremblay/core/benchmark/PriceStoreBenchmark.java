@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pro.tremblay.core.ArrayPriceStore;
+import pro.tremblay.core.RandomPriceStore;
+import pro.tremblay.core.Security;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare a price lookup in the original string keyed map with the array price store.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PriceStoreBenchmark {
+
+    private static final int LOOKUPS = 1_024;
+
+    private MapPriceStore mapStore;
+    private ArrayPriceStore arrayStore;
+
+    private final LocalDate[] dates = new LocalDate[LOOKUPS];
+    private final long[] epochDays = new long[LOOKUPS];
+    private final Security[] securities = new Security[LOOKUPS];
+
+    @Setup
+    public void setup() {
+        LocalDate to = LocalDate.now();
+        LocalDate from = to.withDayOfYear(1);
+        Random random = new Random();
+
+        RandomPriceStore source = new RandomPriceStore(from, to, random.nextLong(), RandomPriceStore.Generation.EAGER);
+        long[][] prices = new long[Security.count()][to.getDayOfYear()];
+        for (Security security : Security.values()) {
+            for (int day = 0; day < prices[security.getId()].length; day++) {
+                prices[security.getId()][day] = source.getPrice(from.plusDays(day).toEpochDay(), security);
+            }
+        }
+        arrayStore = new ArrayPriceStore(from, prices);
+        mapStore = new MapPriceStore(source, from, to);
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            dates[i] = from.plusDays(random.nextInt(to.getDayOfYear()));
+            epochDays[i] = dates[i].toEpochDay();
+            securities[i] = Security.byId(random.nextInt(Security.count()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void map(Blackhole blackhole) {
+        for (int i = 0; i < LOOKUPS; i++) {
+            blackhole.consume(mapStore.getPrice(dates[i], securities[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void array(Blackhole blackhole) {
+        for (int i = 0; i < LOOKUPS; i++) {
+            blackhole.consume(arrayStore.getPrice(epochDays[i], securities[i]));
+        }
+    }
+}
@@ -26,19 +26,21 @@ import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
 import pro.tremblay.core.Position;
+import pro.tremblay.core.Preferences;
 import pro.tremblay.core.ReportingService;
 import pro.tremblay.core.Security;
 import pro.tremblay.core.SecurityPosition;
 import pro.tremblay.core.Transaction;
+import pro.tremblay.core.TransactionBatch;
 import pro.tremblay.core.TransactionType;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @BenchmarkMode(Mode.Throughput)
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
@@ -50,17 +52,19 @@ public class ReportingServiceBenchmark {
 
     static {
         System.setProperty("LENGTH_OF_YEAR", "365");
+        Preferences.preferences().reload();
     }
 
     private ReportingService service = new ReportingService();
 
     private Collection<Transaction> transactions;
+    private TransactionBatch transactionBatch;
     private Position position;
 
     @Setup
     public void setup() {
-        Security[] securities = Security.values();
-        Collection<SecurityPosition> securityPositions = Stream.of(securities)
+        List<Security> securities = Security.values();
+        Collection<SecurityPosition> securityPositions = securities.stream()
             .map(sec -> new SecurityPosition()
                 .quantity(BigDecimal.valueOf(1_000))
                 .security(sec))
@@ -83,9 +87,10 @@ public class ReportingServiceBenchmark {
                     .cash(BigDecimal.valueOf(random.nextInt(1_000)))
                     .type(transactionTypes[random.nextInt(transactionTypes.length)])
                     .quantity(t.getType().hasQuantity() ? BigDecimal.valueOf(quantity) : BigDecimal.ZERO)
-                    .security(t.getType().hasQuantity() ? securities[random.nextInt(securities.length)] : null);
+                    .security(t.getType().hasQuantity() ? securities.get(random.nextInt(securities.size())) : null);
             })
             .collect(Collectors.toList());
+        transactionBatch = TransactionBatch.of(transactions);
     }
 
     @Benchmark
@@ -93,6 +98,11 @@ public class ReportingServiceBenchmark {
         return service.calculateReturnOnInvestmentYTD(position, transactions);
     }
 
+    @Benchmark
+    public BigDecimal calculateBatch() {
+        return service.calculateReturnOnInvestmentYTD(position, transactionBatch);
+    }
+
     public static void main(String[] args) {
         ReportingServiceBenchmark benchmark = new ReportingServiceBenchmark();
         benchmark.setup();
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pro.tremblay.core.EncodedPortfolio;
+import pro.tremblay.core.Position;
+import pro.tremblay.core.Preferences;
+import pro.tremblay.core.ReportingService;
+import pro.tremblay.core.Security;
+import pro.tremblay.core.SecurityPosition;
+import pro.tremblay.core.Transaction;
+import pro.tremblay.core.TransactionType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moving a transaction history between JVMs with {@link EncodedPortfolio} against Java serialization. The beans aren't
+ * serializable, so Java serialization goes through a serializable record per transaction, as a loader would.
+ * <ul>
+ *     <li>{@code javaWrite}, {@code binaryWrite}: encode the transactions</li>
+ *     <li>{@code javaRead}, {@code binaryRead}: decode them into {@link Transaction} beans</li>
+ *     <li>{@code javaRoi}: decode and calculate, {@code binaryRoi}: calculate straight from the encoded buffer</li>
+ * </ul>
+ * The size of each encoding is printed at setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    static {
+        System.setProperty("LENGTH_OF_YEAR", "365");
+        Preferences.preferences().reload();
+    }
+
+    @Param({ "1000", "100000", "1000000" })
+    public int transactionCount;
+
+    private final ReportingService service = new ReportingService();
+    private Position position;
+    private List<Transaction> transactions;
+    private byte[] javaBytes;
+    private ByteBuffer binaryBuffer;
+
+    /** What Java serialization writes for a transaction */
+    private record SerializedTransaction(TransactionType type, LocalDate date, BigDecimal cash, String security, BigDecimal quantity) implements Serializable {
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        Security[] securities = Workload.securities(3);
+        List<SecurityPosition> securityPositions = new ArrayList<>();
+        for (Security security : securities) {
+            securityPositions.add(new SecurityPosition().security(security).quantity(BigDecimal.valueOf(1_000)));
+        }
+        position = new Position()
+            .cash(BigDecimal.valueOf(1_000_000))
+            .securityPositions(securityPositions);
+        transactions = Workload.randomTransactions(new Random(42), LocalDate.now(), transactionCount, securities.length, 0.5);
+
+        javaBytes = javaWrite();
+        binaryBuffer = ByteBuffer.wrap(binaryWrite());
+        System.out.printf("%nJava serialization: %,d bytes, binary: %,d bytes%n", javaBytes.length, binaryBuffer.remaining());
+    }
+
+    @Benchmark
+    public byte[] javaWrite() throws IOException {
+        List<SerializedTransaction> serialized = new ArrayList<>(transactions.size());
+        for (Transaction t : transactions) {
+            serialized.add(new SerializedTransaction(t.getType(), t.getDate(), t.getCash(),
+                t.getSecurity() == null ? null : t.getSecurity().getSymbol(), t.getQuantity()));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(serialized);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] binaryWrite() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EncodedPortfolio.write(Channels.newChannel(bytes), position, transactions);
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public List<Transaction> javaRead() throws IOException, ClassNotFoundException {
+        List<SerializedTransaction> serialized;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(javaBytes))) {
+            @SuppressWarnings("unchecked")
+            List<SerializedTransaction> read = (List<SerializedTransaction>) in.readObject();
+            serialized = read;
+        }
+        List<Transaction> result = new ArrayList<>(serialized.size());
+        for (SerializedTransaction t : serialized) {
+            result.add(new Transaction()
+                .type(t.type())
+                .date(t.date())
+                .cash(t.cash())
+                .security(t.security() == null ? null : Security.of(t.security()))
+                .quantity(t.quantity()));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Transaction> binaryRead() {
+        return EncodedPortfolio.wrap(binaryBuffer).toTransactions();
+    }
+
+    @Benchmark
+    public BigDecimal javaRoi() throws IOException, ClassNotFoundException {
+        return service.calculateReturnOnInvestmentYTD(position, javaRead());
+    }
+
+    @Benchmark
+    public BigDecimal binaryRoi() {
+        return service.calculateReturnOnInvestmentYTD(EncodedPortfolio.wrap(binaryBuffer));
+    }
+}
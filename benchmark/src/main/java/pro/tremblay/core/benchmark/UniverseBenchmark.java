@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pro.tremblay.core.Position;
+import pro.tremblay.core.Preferences;
+import pro.tremblay.core.ReportingService;
+import pro.tremblay.core.Security;
+import pro.tremblay.core.SecurityPosition;
+import pro.tremblay.core.Transaction;
+import pro.tremblay.core.TransactionBatch;
+import pro.tremblay.core.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The return on investment of the same position, holding a few securities, as the number of securities in existence
+ * grows. The cost should stay the same. The held securities are the last ones created, so they have the highest ids.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UniverseBenchmark {
+
+    static {
+        System.setProperty("LENGTH_OF_YEAR", "365");
+        Preferences.preferences().reload();
+    }
+
+    /** Number of securities in existence */
+    @Param({ "3", "1000", "50000" })
+    public int universeSize;
+
+    /** Number of securities in the position and its transactions */
+    @Param({ "3" })
+    public int securityCount;
+
+    /** Number of transactions on the position */
+    @Param({ "1000" })
+    public int transactionCount;
+
+    private final ReportingService service = new ReportingService();
+
+    private Position position;
+    private List<Transaction> transactions;
+    private TransactionBatch batch;
+
+    @Setup
+    public void setup() {
+        Security[] universe = Workload.securities(universeSize);
+        Security[] held = new Security[securityCount];
+        System.arraycopy(universe, universe.length - securityCount, held, 0, securityCount);
+
+        List<SecurityPosition> securityPositions = new ArrayList<>(securityCount);
+        for (Security security : held) {
+            securityPositions.add(new SecurityPosition().security(security).quantity(BigDecimal.valueOf(1_000)));
+        }
+        position = new Position()
+            .cash(BigDecimal.valueOf(1_000_000))
+            .securityPositions(securityPositions);
+
+        Random random = new Random(42);
+        LocalDate now = LocalDate.now();
+        TransactionType[] types = TransactionType.values();
+        transactions = new ArrayList<>(transactionCount);
+        for (int i = 0; i < transactionCount; i++) {
+            TransactionType type = types[random.nextInt(types.length)];
+            transactions.add(new Transaction()
+                .type(type)
+                .date(now.minusDays(random.nextInt(now.getDayOfYear())))
+                .cash(BigDecimal.valueOf(random.nextInt(100_000), 2))
+                .security(type.hasQuantity() ? held[random.nextInt(securityCount)] : null)
+                .quantity(type.hasQuantity() ? BigDecimal.valueOf(1 + random.nextInt(100)) : BigDecimal.ZERO));
+        }
+        batch = TransactionBatch.of(transactions);
+    }
+
+    @Benchmark
+    public BigDecimal calculate() {
+        return service.calculateReturnOnInvestmentYTD(position, transactions);
+    }
+
+    @Benchmark
+    public BigDecimal calculateBatch() {
+        return service.calculateReturnOnInvestmentYTD(position, batch);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import pro.tremblay.core.Position;
+import pro.tremblay.core.PositionRewind;
+import pro.tremblay.core.Preferences;
+import pro.tremblay.core.Security;
+import pro.tremblay.core.SecurityPosition;
+import pro.tremblay.core.Transaction;
+import pro.tremblay.core.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A position with random transactions shared by the benchmarks of the suite. The size and shape of the workload is
+ * parameterized, each parameter can be overridden on the command line with {@code -p name=value1,value2}.
+ */
+@State(Scope.Benchmark)
+public class Workload {
+
+    static {
+        System.setProperty("LENGTH_OF_YEAR", "365");
+        Preferences.preferences().reload();
+    }
+
+    /** Number of transactions on the position. Very large histories are opt-in, e.g. {@code -p transactionCount=10000000} */
+    @Param({ "10", "1000", "100000" })
+    public int transactionCount;
+
+    /** Number of securities in the position and in the transactions, created if there aren't enough */
+    @Param({ "1", "3" })
+    public int securityCount;
+
+    /** Fraction of the transactions happening before the beginning of the year */
+    @Param({ "0.0", "0.5", "0.9" })
+    public double preYearFraction;
+
+    public Position position;
+    public List<Transaction> transactions;
+    /** The transactions already reverted, to benchmark the valuation alone */
+    public PositionRewind rewind;
+    public LocalDate now;
+    public LocalDate beginningOfYear;
+
+    @Setup
+    public void setup() {
+        Security[] securities = securities(securityCount);
+        Random random = new Random(42);
+        now = LocalDate.now();
+        beginningOfYear = now.withDayOfYear(1);
+
+        List<SecurityPosition> securityPositions = new ArrayList<>(securityCount);
+        for (int i = 0; i < securityCount; i++) {
+            securityPositions.add(new SecurityPosition()
+                .security(securities[i])
+                .quantity(BigDecimal.valueOf(1_000)));
+        }
+        position = new Position()
+            .cash(BigDecimal.valueOf(1_000_000))
+            .securityPositions(securityPositions);
+
+        transactions = randomTransactions(random, now, transactionCount, securityCount, preYearFraction);
+
+        rewind = new PositionRewind(beginningOfYear, now);
+        transactions.forEach(rewind::revert);
+    }
+
+    /**
+     * Get the first securities, creating new ones if needed.
+     *
+     * @param count number of securities
+     * @return the securities with an id lower than the count
+     */
+    public static Security[] securities(int count) {
+        while (Security.count() < count) {
+            Security.of(String.format("S%05d", Security.count()));
+        }
+        return Security.values().subList(0, count).toArray(new Security[0]);
+    }
+
+    /**
+     * Generate random transactions over the current and the previous year.
+     *
+     * @param random generator to use
+     * @param now today
+     * @param transactionCount number of transactions to generate
+     * @param securityCount number of securities traded
+     * @param preYearFraction fraction of the transactions before the beginning of the year
+     * @return the transactions
+     */
+    public static List<Transaction> randomTransactions(Random random, LocalDate now, int transactionCount, int securityCount, double preYearFraction) {
+        // Share the dates to keep large workloads in memory
+        LocalDate[] dates = new LocalDate[365 + now.getDayOfYear()];
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = now.minusDays(i);
+        }
+
+        Security[] securities = securities(securityCount);
+        TransactionType[] types = TransactionType.values();
+        List<Transaction> transactions = new ArrayList<>(transactionCount);
+        for (int i = 0; i < transactionCount; i++) {
+            int daysAgo = random.nextDouble() < preYearFraction
+                ? now.getDayOfYear() + random.nextInt(365)
+                : random.nextInt(now.getDayOfYear());
+            TransactionType type = types[random.nextInt(types.length)];
+            transactions.add(new Transaction()
+                .type(type)
+                .date(dates[daysAgo])
+                .cash(BigDecimal.valueOf(random.nextInt(100_000), 2))
+                .security(type.hasQuantity() ? securities[random.nextInt(securityCount)] : null)
+                .quantity(type.hasQuantity() ? BigDecimal.valueOf(1 + random.nextInt(100)) : BigDecimal.ZERO));
+        }
+        return transactions;
+    }
+}
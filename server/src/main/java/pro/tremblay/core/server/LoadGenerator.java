@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.server;
+
+import pro.tremblay.core.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load a running {@link ReportServer} with concurrent clients, each sending its next request as soon as the previous
+ * one is answered, and report the throughput and latency percentiles. Rejected requests (503) are counted apart so
+ * the effect of the concurrency limit is visible.
+ * <p>
+ * Usage: {@code java -cp server.jar pro.tremblay.core.server.LoadGenerator [--url=http://localhost:8080/roi]
+ * [--clients=64] [--duration=10] [--transactions=100]}
+ */
+public final class LoadGenerator {
+
+    private LoadGenerator() {}
+
+    public static void main(String[] args) throws Exception {
+        URI uri = URI.create("http://localhost:8080" + ReportServer.PATH);
+        int clients = 64;
+        int durationSeconds = 10;
+        int transactionCount = 100;
+        for (String arg : args) {
+            if (arg.startsWith("--url=")) {
+                uri = URI.create(arg.substring("--url=".length()));
+            } else if (arg.startsWith("--clients=")) {
+                clients = Integer.parseInt(arg.substring("--clients=".length()));
+            } else if (arg.startsWith("--duration=")) {
+                durationSeconds = Integer.parseInt(arg.substring("--duration=".length()));
+            } else if (arg.startsWith("--transactions=")) {
+                transactionCount = Integer.parseInt(arg.substring("--transactions=".length()));
+            } else {
+                System.out.println("Usage: LoadGenerator [--url=http://localhost:8080/roi] [--clients=64] [--duration=10] [--transactions=100]");
+                System.exit(1);
+            }
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors())))
+            .build();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body(transactionCount)))
+            .build();
+
+        Histogram latencies = new Histogram();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+
+        long start = System.nanoTime();
+        long deadline = start + Duration.ofSeconds(durationSeconds).toNanos();
+        ExecutorService workers = Executors.newFixedThreadPool(clients);
+        List<Future<?>> futures = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            futures.add(workers.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    long requestStart = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() == 200) {
+                            latencies.record(System.nanoTime() - requestStart);
+                        } else if (response.statusCode() == 503) {
+                            rejected.incrementAndGet();
+                        } else {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        workers.shutdown();
+
+        System.out.printf("Clients:     %d%n", clients);
+        System.out.printf("Requests:    %d ok, %d rejected, %d errors%n", latencies.getCount(), rejected.get(), errors.get());
+        System.out.printf("Throughput:  %.1f req/s%n", latencies.getCount() / elapsedSeconds);
+        System.out.printf("Latency p50: %.3f ms%n", latencies.getValueAtPercentile(50) / 1e6);
+        System.out.printf("Latency p90: %.3f ms%n", latencies.getValueAtPercentile(90) / 1e6);
+        System.out.printf("Latency p99: %.3f ms%n", latencies.getValueAtPercentile(99) / 1e6);
+        System.out.printf("Latency max: %.3f ms%n", latencies.getMax() / 1e6);
+        System.exit(0);
+    }
+
+    /**
+     * A position on every security with deposits, buys and sells spread over the year, like the benchmarks do.
+     */
+    private static String body(int transactionCount) {
+        String[] securities = { "APPL", "GOOGL", "IBM" };
+        String[] types = { "DEPOSIT", "BUY", "SELL", "WITHDRAWAL" };
+        LocalDate now = LocalDate.now();
+        StringBuilder json = new StringBuilder("{\"cash\":1000000,\"positions\":[");
+        for (int i = 0; i < securities.length; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"security\":\"").append(securities[i]).append("\",\"quantity\":1000}");
+        }
+        json.append("],\"transactions\":[");
+        for (int i = 0; i < transactionCount; i++) {
+            String type = types[i % types.length];
+            json.append(i == 0 ? "" : ",")
+                .append("{\"type\":\"").append(type)
+                .append("\",\"date\":\"").append(now.minusDays(i % now.getDayOfYear()))
+                .append("\",\"cash\":").append(100 + i % 900);
+            if (type.equals("BUY") || type.equals("SELL")) {
+                json.append(",\"security\":\"").append(securities[i % securities.length])
+                    .append("\",\"quantity\":").append(1 + i % 99);
+            }
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+}
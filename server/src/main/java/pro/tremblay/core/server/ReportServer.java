@@ -0,0 +1,365 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import pro.tremblay.core.Preferences;
+import pro.tremblay.core.ReportingService;
+import pro.tremblay.core.ReturnPeriod;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local HTTP server calculating the return on investment of the position posted to {@value #PATH}. The body is
+ * parsed by {@link RoiRequestParser}, as CSV if the content type is {@code text/csv} and as JSON otherwise. The
+ * return is calculated since the beginning of the year unless a {@code period} query parameter gives a
+ * {@link ReturnPeriod}. The answer is {@code {"roi":12.34}}, or {@code {"error":"..."}} with a 400 for an invalid
+ * request and a 413 for a body larger than {@code maxBodySize}.
+ * <p>
+ * Each request runs on its own virtual thread when the JVM has them, which needs Java 21. On older versions, like
+ * the Java 17 of the project, they run on a bounded pool of platform threads: {@value #THREADS_PER_SLOT} per
+ * calculation slot, with {@value #QUEUED_PER_SLOT} requests per slot queued when they are all busy. In both cases, at
+ * most {@code maxConcurrent} calculations run at the same time. A request waits at most {@code queueTimeoutMillis} for
+ * its turn, queued or not, after which it is rejected with a 503 and a {@code Retry-After} header so the client backs
+ * off instead of piling up. A request arriving when the queue is full is rejected right away, without reading its
+ * body. Any other failure is logged and answered with a 500 and a fixed message, to not leak internals to the client.
+ */
+@ThreadSafe
+public final class ReportServer implements AutoCloseable {
+
+    /** Path of the return on investment endpoint */
+    public static final String PATH = "/roi";
+
+    /** Default maximum size of a request body in bytes */
+    public static final int DEFAULT_MAX_BODY_SIZE = 16 * 1024 * 1024;
+
+    /** Platform threads per calculation slot without virtual threads: one calculating and one waiting for its turn */
+    static final int THREADS_PER_SLOT = 2;
+    /** Requests queued per calculation slot without virtual threads, when all the platform threads are busy */
+    static final int QUEUED_PER_SLOT = 4;
+
+    private static final System.Logger LOGGER = System.getLogger(ReportServer.class.getName());
+
+    private final ReportingService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final long queueTimeoutMillis;
+    private final int maxBodySize;
+    /** When the request of the current thread was handed to the executor, null if the executor rejected it */
+    private final ThreadLocal<Long> queuedSince = new ThreadLocal<>();
+
+    /**
+     * @param service service doing the calculations
+     * @param address address to listen to, port 0 picks a free one
+     * @param maxConcurrent maximum number of calculations running at the same time
+     * @param queueTimeoutMillis how long a request waits for a calculation slot before being rejected
+     * @throws IOException if the server can't listen to the address
+     */
+    public ReportServer(@Nonnull ReportingService service, @Nonnull InetSocketAddress address, int maxConcurrent, long queueTimeoutMillis) throws IOException {
+        this(service, address, maxConcurrent, queueTimeoutMillis, DEFAULT_MAX_BODY_SIZE);
+    }
+
+    /**
+     * @param service service doing the calculations
+     * @param address address to listen to, port 0 picks a free one
+     * @param maxConcurrent maximum number of calculations running at the same time
+     * @param queueTimeoutMillis how long a request waits for a calculation slot before being rejected
+     * @param maxBodySize maximum size of a request body in bytes
+     * @throws IOException if the server can't listen to the address
+     */
+    public ReportServer(@Nonnull ReportingService service, @Nonnull InetSocketAddress address, int maxConcurrent, long queueTimeoutMillis, int maxBodySize) throws IOException {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("maxConcurrent should be positive: " + maxConcurrent);
+        }
+        if (maxBodySize <= 0) {
+            throw new IllegalArgumentException("maxBodySize should be positive: " + maxBodySize);
+        }
+        this.service = service;
+        this.permits = new Semaphore(maxConcurrent);
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        // One byte more is read to know the body is too large, arrays can't be that large anyway
+        this.maxBodySize = Math.min(maxBodySize, Integer.MAX_VALUE - 8);
+        this.executor = newRequestExecutor(maxConcurrent);
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(this::execute);
+        server.createContext(PATH, this::handle);
+    }
+
+    /**
+     * One virtual thread per request if available (Java 21+), otherwise a bounded pool of platform threads. Looked up
+     * reflectively so the server still compiles and runs on the Java version of the project.
+     */
+    private static ExecutorService newRequestExecutor(int maxConcurrent) {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Math.multiplyExact(maxConcurrent, THREADS_PER_SLOT);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.multiplyExact(maxConcurrent, QUEUED_PER_SLOT)));
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    /**
+     * Hand a request to the executor, remembering when so the time spent queued counts in the queue timeout. A
+     * request rejected by the executor runs on the calling thread, the dispatcher of the HTTP server, where
+     * {@link #handle(HttpExchange)} sees it wasn't queued and only answers a 503.
+     */
+    private void execute(Runnable exchange) {
+        long queued = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                queuedSince.set(queued);
+                try {
+                    exchange.run();
+                } finally {
+                    queuedSince.remove();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            exchange.run();
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return port the server listens to, useful when created on port 0
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (queuedSince.get() == null) {
+                rejectBusy(exchange);
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, error("Only POST is supported"));
+                return;
+            }
+            long contentLength;
+            try {
+                contentLength = contentLength(exchange);
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, error(e.getMessage()));
+                return;
+            }
+            if (contentLength > maxBodySize) {
+                respond(exchange, 413, error("Request body larger than " + maxBodySize + " bytes"));
+                return;
+            }
+            boolean acquired;
+            try {
+                acquired = acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                rejectBusy(exchange);
+                return;
+            }
+            try {
+                String body = readBody(exchange);
+                if (body == null) {
+                    respond(exchange, 413, error("Request body larger than " + maxBodySize + " bytes"));
+                    return;
+                }
+                BigDecimal roi = calculate(exchange, body);
+                respond(exchange, 200, "{\"roi\":" + roi.toPlainString() + "}");
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, error(e.getMessage()));
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.ERROR, "Failed to calculate the return on investment", e);
+                respond(exchange, 500, error("Internal error"));
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Wait for a calculation slot, for what remains of the queue timeout after the time spent in the executor queue.
+     */
+    private boolean acquire() throws InterruptedException {
+        long queued = queuedSince.get();
+        long remaining = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis) - (System.nanoTime() - queued);
+        return permits.tryAcquire(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the declared length of the body, -1 if there is none, as with chunked encoding
+     * @throws IllegalArgumentException if the length isn't a valid number of bytes
+     */
+    private static long contentLength(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (header == null) {
+            return -1;
+        }
+        long length;
+        try {
+            length = Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid Content-Length '" + header + "'");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid Content-Length '" + header + "'");
+        }
+        return length;
+    }
+
+    private static void rejectBusy(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        respond(exchange, 503, error("Too many concurrent requests"));
+    }
+
+    /**
+     * @return the body, null if it is larger than the maximum size. A chunked body has no length, so it is only known
+     * while reading it
+     */
+    private String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(maxBodySize + 1);
+            if (body.length > maxBodySize) {
+                return null;
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private BigDecimal calculate(HttpExchange exchange, String body) {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        RoiRequest request = contentType != null && contentType.startsWith("text/csv")
+            ? RoiRequestParser.parseCsv(body)
+            : RoiRequestParser.parseJson(body);
+
+        ReturnPeriod period = period(exchange.getRequestURI().getRawQuery());
+        if (period == null) {
+            return service.calculateReturnOnInvestmentYTD(request.position(), request.transactions());
+        }
+        return service.calculateReturnOnInvestment(request.position(), request.transactions(), period);
+    }
+
+    private static ReturnPeriod period(String query) {
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("period=")) {
+                String name = URLDecoder.decode(parameter.substring("period=".length()), StandardCharsets.UTF_8);
+                try {
+                    return ReturnPeriod.valueOf(name);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown period '" + name + "'");
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":\"");
+        for (char c : String.valueOf(message).toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append("\"}").toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Start a server on the loopback address.
+     *
+     * @param args {@code [--port=8080] [--max-concurrent=64] [--queue-timeout=100] [--max-body=16777216]}
+     * @throws IOException if the server can't be started
+     */
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        int maxConcurrent = Math.max(1, Runtime.getRuntime().availableProcessors()) * 16;
+        long queueTimeoutMillis = 100;
+        int maxBodySize = DEFAULT_MAX_BODY_SIZE;
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--max-concurrent=")) {
+                maxConcurrent = Integer.parseInt(arg.substring("--max-concurrent=".length()));
+            } else if (arg.startsWith("--queue-timeout=")) {
+                queueTimeoutMillis = Long.parseLong(arg.substring("--queue-timeout=".length()));
+            } else if (arg.startsWith("--max-body=")) {
+                maxBodySize = Integer.parseInt(arg.substring("--max-body=".length()));
+            } else {
+                System.out.println("Usage: java -jar server.jar [--port=8080] [--max-concurrent=64] [--queue-timeout=100] [--max-body=16777216]");
+                System.exit(1);
+            }
+        }
+        if (System.getProperty("LENGTH_OF_YEAR") == null) {
+            System.setProperty("LENGTH_OF_YEAR", "365");
+            Preferences.preferences().reload();
+        }
+
+        ReportServer server = new ReportServer(new ReportingService(),
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), port), maxConcurrent, queueTimeoutMillis, maxBodySize);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        System.out.println("Listening on http://localhost:" + server.getPort() + PATH);
+    }
+}
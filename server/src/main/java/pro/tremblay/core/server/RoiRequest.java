@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.server;
+
+import pro.tremblay.core.Position;
+import pro.tremblay.core.Transaction;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Body of a return on investment request: the current position and the transactions made on it.
+ */
+final class RoiRequest {
+
+    private final Position position;
+    private final List<Transaction> transactions;
+
+    RoiRequest(@Nonnull Position position, @Nonnull List<Transaction> transactions) {
+        this.position = position;
+        this.transactions = transactions;
+    }
+
+    @Nonnull
+    Position position() {
+        return position;
+    }
+
+    @Nonnull
+    List<Transaction> transactions() {
+        return transactions;
+    }
+}
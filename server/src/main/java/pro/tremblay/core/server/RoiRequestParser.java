@@ -0,0 +1,414 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.server;
+
+import pro.tremblay.core.Position;
+import pro.tremblay.core.Security;
+import pro.tremblay.core.SecurityPosition;
+import pro.tremblay.core.Transaction;
+import pro.tremblay.core.TransactionType;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parse the body of a return on investment request. Two formats are supported.
+ * <p>
+ * JSON, numbers can be given as JSON numbers or strings, they are read as {@code BigDecimal} without going through a
+ * {@code double}:
+ * <pre>
+ * {
+ *   "cash": 1000,
+ *   "positions": [ { "security": "GOOGL", "quantity": 10 } ],
+ *   "transactions": [ { "type": "BUY", "date": "2023-01-10", "cash": 100, "security": "GOOGL", "quantity": 1 } ]
+ * }
+ * </pre>
+ * CSV, with a header line. A {@code CASH} line gives the current cash, a {@code POSITION} line a current security
+ * position and the other lines are transactions:
+ * <pre>
+ * type,date,cash,security,quantity
+ * CASH,,1000,,
+ * POSITION,,,GOOGL,10
+ * BUY,2023-01-10,100,GOOGL,1
+ * </pre>
+ * Any malformed input throws an {@code IllegalArgumentException} explaining what is wrong.
+ */
+final class RoiRequestParser {
+
+    private static final String CSV_HEADER = "type,date,cash,security,quantity";
+
+    private RoiRequestParser() {}
+
+    @Nonnull
+    static RoiRequest parseJson(@Nonnull String body) {
+        Object root = new JsonReader(body).readDocument();
+        Map<String, Object> request = asObject(root, "request");
+
+        List<SecurityPosition> positions = new ArrayList<>();
+        for (Object item : asArray(request.getOrDefault("positions", List.of()), "positions")) {
+            Map<String, Object> position = asObject(item, "position");
+            positions.add(new SecurityPosition()
+                .security(security(asString(position.get("security"), "security")))
+                .quantity(decimal(position.get("quantity"), "quantity")));
+        }
+
+        List<Transaction> transactions = new ArrayList<>();
+        for (Object item : asArray(request.getOrDefault("transactions", List.of()), "transactions")) {
+            Map<String, Object> transaction = asObject(item, "transaction");
+            TransactionType type = transactionType(asString(transaction.get("type"), "type"));
+            Object security = transaction.get("security");
+            Object quantity = transaction.get("quantity");
+            transactions.add(transaction(type,
+                date(asString(transaction.get("date"), "date")),
+                decimal(transaction.get("cash"), "cash"),
+                security == null ? null : security(asString(security, "security")),
+                quantity == null ? null : decimal(quantity, "quantity")));
+        }
+
+        Position position = new Position()
+            .cash(decimal(request.get("cash"), "cash"))
+            .securityPositions(positions);
+        return new RoiRequest(position, transactions);
+    }
+
+    @Nonnull
+    static RoiRequest parseCsv(@Nonnull String body) {
+        String[] lines = body.split("\\r?\\n");
+        if (lines.length == 0 || !lines[0].trim().equalsIgnoreCase(CSV_HEADER)) {
+            throw new IllegalArgumentException("Expected header '" + CSV_HEADER + "'");
+        }
+        BigDecimal cash = null;
+        List<SecurityPosition> positions = new ArrayList<>();
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 1; i < lines.length; i++) {
+            if (lines[i].isBlank()) {
+                continue;
+            }
+            String[] columns = lines[i].split(",", -1);
+            if (columns.length != 5) {
+                throw new IllegalArgumentException("Line " + (i + 1) + ": expected 5 columns but got " + columns.length);
+            }
+            String type = columns[0].trim();
+            try {
+                switch (type) {
+                    case "CASH":
+                        cash = decimal(columns[2].trim(), "cash");
+                        break;
+                    case "POSITION":
+                        positions.add(new SecurityPosition()
+                            .security(security(columns[3].trim()))
+                            .quantity(decimal(columns[4].trim(), "quantity")));
+                        break;
+                    default:
+                        String security = columns[3].trim();
+                        String quantity = columns[4].trim();
+                        transactions.add(transaction(transactionType(type),
+                            date(columns[1].trim()),
+                            decimal(columns[2].trim(), "cash"),
+                            security.isEmpty() ? null : security(security),
+                            quantity.isEmpty() ? null : decimal(quantity, "quantity")));
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        if (cash == null) {
+            throw new IllegalArgumentException("Missing CASH line");
+        }
+        return new RoiRequest(new Position().cash(cash).securityPositions(positions), transactions);
+    }
+
+    private static Transaction transaction(TransactionType type, LocalDate date, BigDecimal cash, @Nullable Security security, @Nullable BigDecimal quantity) {
+        if (type.hasQuantity()) {
+            if (security == null || quantity == null) {
+                throw new IllegalArgumentException(type + " needs a security and a quantity");
+            }
+        } else {
+            // Same as the transactions created elsewhere, a transaction without quantity has a zero one
+            security = null;
+            quantity = BigDecimal.ZERO;
+        }
+        return new Transaction()
+            .type(type)
+            .date(date)
+            .cash(cash)
+            .security(security)
+            .quantity(quantity);
+    }
+
+    private static TransactionType transactionType(String value) {
+        try {
+            return TransactionType.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown transaction type '" + value + "'");
+        }
+    }
+
+    private static Security security(String value) {
+        // Only existing securities, a request shouldn't be able to grow the universe
+        Security security = Security.find(value);
+        if (security == null) {
+            throw new IllegalArgumentException("Unknown security '" + value + "'");
+        }
+        return security;
+    }
+
+    private static LocalDate date(String value) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date '" + value + "'");
+        }
+    }
+
+    private static BigDecimal decimal(@Nullable Object value, String name) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        String text = asString(value, name);
+        try {
+            return new BigDecimal(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " '" + text + "'");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asObject(@Nullable Object value, String name) {
+        if (value instanceof Map) {
+            return (Map<String, Object>) value;
+        }
+        throw new IllegalArgumentException("Expected an object for " + name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> asArray(@Nullable Object value, String name) {
+        if (value instanceof List) {
+            return (List<Object>) value;
+        }
+        throw new IllegalArgumentException("Expected an array for " + name);
+    }
+
+    private static String asString(@Nullable Object value, String name) {
+        if (value instanceof String) {
+            return (String) value;
+        }
+        throw new IllegalArgumentException(value == null ? "Missing " + name : "Expected a string for " + name);
+    }
+
+    /**
+     * Just enough JSON to read a request. Objects become a {@code Map}, arrays a {@code List}, numbers a
+     * {@code BigDecimal}, and {@code true}, {@code false} and {@code null} their Java counterparts.
+     */
+    private static final class JsonReader {
+
+        private final String text;
+        private int position;
+
+        JsonReader(String text) {
+            this.text = text;
+        }
+
+        Object readDocument() {
+            Object value = readValue();
+            skipWhitespace();
+            if (position != text.length()) {
+                throw error("Unexpected content");
+            }
+            return value;
+        }
+
+        private Object readValue() {
+            skipWhitespace();
+            if (position >= text.length()) {
+                throw error("Unexpected end of input");
+            }
+            char c = text.charAt(position);
+            switch (c) {
+                case '{':
+                    return readObject();
+                case '[':
+                    return readArray();
+                case '"':
+                    return readString();
+                case 't':
+                    return readLiteral("true", Boolean.TRUE);
+                case 'f':
+                    return readLiteral("false", Boolean.FALSE);
+                case 'n':
+                    return readLiteral("null", null);
+                default:
+                    return readNumber();
+            }
+        }
+
+        private Map<String, Object> readObject() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') {
+                    throw error("Expected a field name");
+                }
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                object.put(key, readValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                    continue;
+                }
+                expect('}');
+                return object;
+            }
+        }
+
+        private List<Object> readArray() {
+            List<Object> array = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+            while (true) {
+                array.add(readValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                    continue;
+                }
+                expect(']');
+                return array;
+            }
+        }
+
+        private String readString() {
+            position++;
+            StringBuilder result = new StringBuilder();
+            while (position < text.length()) {
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return result.toString();
+                }
+                if (c != '\\') {
+                    result.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        result.append(escaped);
+                        break;
+                    case 'b':
+                        result.append('\b');
+                        break;
+                    case 'f':
+                        result.append('\f');
+                        break;
+                    case 'n':
+                        result.append('\n');
+                        break;
+                    case 'r':
+                        result.append('\r');
+                        break;
+                    case 't':
+                        result.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error("Invalid unicode escape");
+                        }
+                        try {
+                            result.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid unicode escape");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        throw error("Invalid escape '\\" + escaped + "'");
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private Object readLiteral(String literal, @Nullable Object value) {
+            if (!text.startsWith(literal, position)) {
+                throw error("Unexpected character '" + text.charAt(position) + "'");
+            }
+            position += literal.length();
+            return value;
+        }
+
+        private BigDecimal readNumber() {
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            if (start == position) {
+                throw error("Unexpected character '" + text.charAt(position) + "'");
+            }
+            try {
+                return new BigDecimal(text.substring(start, position));
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + text.substring(start, position) + "'");
+            }
+        }
+
+        private void expect(char expected) {
+            if (peek() != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+            position++;
+        }
+
+        private char peek() {
+            if (position >= text.length()) {
+                throw error("Unexpected end of input");
+            }
+            return text.charAt(position);
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at offset " + position);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junitpioneer.jupiter.SetSystemProperty;
+import pro.tremblay.core.Position;
+import pro.tremblay.core.Preferences;
+import pro.tremblay.core.ReportingService;
+import pro.tremblay.core.Transaction;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@SetSystemProperty(key="LENGTH_OF_YEAR", value="360")
+public class ReportServerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private ReportServer server;
+
+    @BeforeEach
+    public void before() {
+        // The system properties set by the test are only seen after a reload
+        Preferences.preferences().reload();
+    }
+
+    @AfterEach
+    public void after() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void roi_json() throws Exception {
+        start(new ReportingService(), 4, 1_000);
+
+        HttpResponse<String> response = post("", "application/json",
+            "{\"cash\":200,\"transactions\":[{\"type\":\"DEPOSIT\",\"date\":\"" + LocalDate.now().minusDays(10) + "\",\"cash\":100}]}");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type")).hasValue("application/json");
+        assertThat(response.body()).isEqualTo("{\"roi\":" + expectedRoi() + "}");
+    }
+
+    @Test
+    public void roi_csv() throws Exception {
+        start(new ReportingService(), 4, 1_000);
+
+        HttpResponse<String> response = post("", "text/csv",
+            "type,date,cash,security,quantity\nCASH,,200,,\nDEPOSIT," + LocalDate.now().minusDays(10) + ",100,,\n");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).isEqualTo("{\"roi\":" + expectedRoi() + "}");
+    }
+
+    @Test
+    public void roi_period() throws Exception {
+        start(new ReportingService(), 4, 1_000);
+
+        HttpResponse<String> response = post("?period=MONTH_TO_DATE", "application/json", "{\"cash\":200}");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).isEqualTo("{\"roi\":0.00}");
+    }
+
+    @Test
+    public void roi_invalidRequest() throws Exception {
+        start(new ReportingService(), 4, 1_000);
+
+        HttpResponse<String> response = post("", "application/json", "{\"cash\":\"abc\"}");
+        assertThat(response.statusCode()).isEqualTo(400);
+        assertThat(response.body()).isEqualTo("{\"error\":\"Invalid cash 'abc'\"}");
+
+        response = post("?period=FOREVER", "application/json", "{\"cash\":1}");
+        assertThat(response.statusCode()).isEqualTo(400);
+        assertThat(response.body()).isEqualTo("{\"error\":\"Unknown period 'FOREVER'\"}");
+    }
+
+    @Test
+    public void roi_onlyPost() throws Exception {
+        start(new ReportingService(), 4, 1_000);
+
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("")).GET().build(), HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode()).isEqualTo(405);
+        assertThat(response.headers().firstValue("Allow")).hasValue("POST");
+    }
+
+    @Test
+    public void roi_saturated() throws Exception {
+        CountDownLatch calculating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ReportingService blocking = new ReportingService() {
+            @Override
+            public BigDecimal calculateReturnOnInvestmentYTD(Position current, Collection<Transaction> transactions) {
+                calculating.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.calculateReturnOnInvestmentYTD(current, transactions);
+            }
+        };
+        start(blocking, 1, 50);
+
+        CompletableFuture<HttpResponse<String>> first = client.sendAsync(request(""), HttpResponse.BodyHandlers.ofString());
+        assertThat(calculating.await(10, TimeUnit.SECONDS)).isTrue();
+
+        HttpResponse<String> rejected = post("", "application/json", "{\"cash\":200}");
+        assertThat(rejected.statusCode()).isEqualTo(503);
+        assertThat(rejected.headers().firstValue("Retry-After")).hasValue("1");
+
+        release.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+        assertThat(post("", "application/json", "{\"cash\":200}").statusCode()).isEqualTo(200);
+    }
+
+    @Test
+    public void roi_queueFull() throws Exception {
+        assumeTrue(Runtime.version().feature() < 21, "Virtual threads are never rejected");
+        CountDownLatch release = new CountDownLatch(1);
+        ReportingService blocking = new ReportingService() {
+            @Override
+            public BigDecimal calculateReturnOnInvestmentYTD(Position current, Collection<Transaction> transactions) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.calculateReturnOnInvestmentYTD(current, transactions);
+            }
+        };
+        start(blocking, 1, 10_000);
+
+        // One more request than the pool threads and its queue can hold
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < ReportServer.THREADS_PER_SLOT + ReportServer.QUEUED_PER_SLOT + 1; i++) {
+            responses.add(client.sendAsync(request(""), HttpResponse.BodyHandlers.ofString()));
+        }
+
+        // Answered right away, long before the queue timeout
+        HttpResponse<String> rejected = (HttpResponse<String>) CompletableFuture.anyOf(responses.toArray(new CompletableFuture<?>[0]))
+            .get(5, TimeUnit.SECONDS);
+        assertThat(rejected.statusCode()).isEqualTo(503);
+        assertThat(rejected.headers().firstValue("Retry-After")).hasValue("1");
+
+        release.countDown();
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertThat(response.get(10, TimeUnit.SECONDS).statusCode()).isIn(200, 503);
+        }
+    }
+
+    @Test
+    public void roi_internalError() throws Exception {
+        ReportingService failing = new ReportingService() {
+            @Override
+            public BigDecimal calculateReturnOnInvestmentYTD(Position current, Collection<Transaction> transactions) {
+                throw new IllegalStateException("Secret internals");
+            }
+        };
+        start(failing, 4, 1_000);
+
+        HttpResponse<String> response = post("", "application/json", "{\"cash\":200}");
+
+        assertThat(response.statusCode()).isEqualTo(500);
+        assertThat(response.body()).isEqualTo("{\"error\":\"Internal error\"}");
+    }
+
+    @Test
+    public void roi_invalidContentLength() throws Exception {
+        start(new ReportingService(), 4, 1_000);
+
+        assertThat(rawPost("abc")).startsWith("HTTP/1.1 400");
+        assertThat(rawPost("-1")).startsWith("HTTP/1.1 400");
+    }
+
+    @Test
+    public void roi_bodyTooLarge() throws Exception {
+        server = new ReportServer(new ReportingService(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4, 1_000, 20);
+        server.start();
+
+        assertThat(post("", "application/json", "{\"cash\":200}").statusCode()).isEqualTo(200);
+
+        HttpResponse<String> response = post("", "application/json", "{\"cash\":200,\"transactions\":[]}");
+        assertThat(response.statusCode()).isEqualTo(413);
+        assertThat(response.body()).isEqualTo("{\"error\":\"Request body larger than 20 bytes\"}");
+    }
+
+    @Test
+    public void roi_chunkedBodyTooLarge() throws Exception {
+        server = new ReportServer(new ReportingService(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4, 1_000, 20);
+        server.start();
+
+        byte[] body = "{\"cash\":200,\"transactions\":[]}".getBytes(StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(uri(""))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream(body)))
+            .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode()).isEqualTo(413);
+    }
+
+    private void start(ReportingService service, int maxConcurrent, long queueTimeoutMillis) throws IOException {
+        server = new ReportServer(service, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), maxConcurrent, queueTimeoutMillis);
+        server.start();
+    }
+
+    private HttpResponse<String> post(String query, String contentType, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri(query))
+            .header("Content-Type", contentType)
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * The client doesn't let us set the length of the body, so the request is written by hand.
+     *
+     * @return the status line of the response
+     */
+    private String rawPost(String contentLength) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setSoTimeout(10_000);
+            String request = "POST " + ReportServer.PATH + " HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: " + contentLength + "\r\n"
+                + "Connection: close\r\n"
+                + "\r\n";
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            return String.valueOf(in.readLine());
+        }
+    }
+
+    private HttpRequest request(String query) {
+        return HttpRequest.newBuilder(uri(query))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString("{\"cash\":200}"))
+            .build();
+    }
+
+    private URI uri(String query) {
+        return URI.create("http://localhost:" + server.getPort() + ReportServer.PATH + query);
+    }
+
+    private static BigDecimal expectedRoi() {
+        // Same as ReportingServiceTest: 100$ deposited on 100$ since the beginning of the year
+        return BigDecimal.valueOf((200.0 - 100.0) / 100.0 * 100.0 * 360.0 / LocalDate.now().getDayOfYear())
+            .setScale(2, RoundingMode.HALF_UP);
+    }
+}
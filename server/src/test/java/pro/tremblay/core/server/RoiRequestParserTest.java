@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.server;
+
+import org.junit.jupiter.api.Test;
+import pro.tremblay.core.Security;
+import pro.tremblay.core.SecurityPosition;
+import pro.tremblay.core.Transaction;
+import pro.tremblay.core.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class RoiRequestParserTest {
+
+    @Test
+    public void parseJson() {
+        RoiRequest request = RoiRequestParser.parseJson("{\n" +
+            "  \"cash\": 1000.5,\n" +
+            "  \"positions\": [ { \"security\": \"IBM\", \"quantity\": \"10\" } ],\n" +
+            "  \"transactions\": [\n" +
+            "    { \"type\": \"BUY\", \"date\": \"2023-01-10\", \"cash\": 100, \"security\": \"IBM\", \"quantity\": 1e1 },\n" +
+            "    { \"type\": \"DEPOSIT\", \"date\": \"2023-01-05\", \"cash\": \"0.1\" }\n" +
+            "  ]\n" +
+            "}");
+
+        assertThat(request.position().getCash()).isEqualTo("1000.5");
+        SecurityPosition position = request.position().getSecurityPositions().iterator().next();
+        assertThat(position.getSecurity()).isEqualTo(Security.IBM);
+        assertThat(position.getQuantity()).isEqualTo("10");
+
+        assertThat(request.transactions()).hasSize(2);
+        Transaction buy = request.transactions().get(0);
+        assertThat(buy.getType()).isEqualTo(TransactionType.BUY);
+        assertThat(buy.getDate()).isEqualTo(LocalDate.of(2023, 1, 10));
+        assertThat(buy.getCash()).isEqualTo("100");
+        assertThat(buy.getSecurity()).isEqualTo(Security.IBM);
+        assertThat(buy.getQuantity()).isEqualByComparingTo("10");
+        Transaction deposit = request.transactions().get(1);
+        assertThat(deposit.getCash()).isEqualTo("0.1");
+        assertThat(deposit.getSecurity()).isNull();
+        assertThat(deposit.getQuantity()).isEqualTo(BigDecimal.ZERO);
+    }
+
+    @Test
+    public void parseJson_noPositionOrTransaction() {
+        RoiRequest request = RoiRequestParser.parseJson("{\"cash\":0}");
+        assertThat(request.position().getSecurityPositions()).isEmpty();
+        assertThat(request.transactions()).isEmpty();
+    }
+
+    @Test
+    public void parseJson_escapedString() {
+        RoiRequest request = RoiRequestParser.parseJson("{\"cash\":0,\"positions\":[{\"security\":\"I\\u0042M\",\"quantity\":1}]}");
+        assertThat(request.position().getSecurityPositions().iterator().next().getSecurity()).isEqualTo(Security.IBM);
+    }
+
+    @Test
+    public void parseJson_invalid() {
+        assertThatIllegalArgumentException().isThrownBy(() -> RoiRequestParser.parseJson("{\"cash\":"))
+            .withMessage("Unexpected end of input at offset 8");
+        assertThatIllegalArgumentException().isThrownBy(() -> RoiRequestParser.parseJson("{\"cash\":1} x"))
+            .withMessage("Unexpected content at offset 11");
+        assertThatIllegalArgumentException().isThrownBy(() -> RoiRequestParser.parseJson("[]"))
+            .withMessage("Expected an object for request");
+        assertThatIllegalArgumentException().isThrownBy(() -> RoiRequestParser.parseJson("{}"))
+            .withMessage("Missing cash");
+        assertThatIllegalArgumentException().isThrownBy(() -> RoiRequestParser.parseJson("{\"cash\":0,\"transactions\":[{\"type\":\"GIFT\"}]}"))
+            .withMessage("Unknown transaction type 'GIFT'");
+        assertThatIllegalArgumentException().isThrownBy(() -> RoiRequestParser.parseJson("{\"cash\":0,\"transactions\":[{\"type\":\"BUY\",\"date\":\"2023-01-10\",\"cash\":1}]}"))
+            .withMessage("BUY needs a security and a quantity");
+    }
+
+    @Test
+    public void parseCsv() {
+        RoiRequest request = RoiRequestParser.parseCsv("type,date,cash,security,quantity\r\n" +
+            "CASH,,1000,,\r\n" +
+            "POSITION,,,GOOGL,10\r\n" +
+            "SELL,2023-02-01,50,GOOGL,2\r\n" +
+            "\r\n" +
+            "WITHDRAWAL,2023-02-02,20,,\r\n");
+
+        assertThat(request.position().getCash()).isEqualTo("1000");
+        assertThat(request.position().getSecurityPositions()).hasSize(1);
+        assertThat(request.transactions()).hasSize(2);
+        Transaction sell = request.transactions().get(0);
+        assertThat(sell.getType()).isEqualTo(TransactionType.SELL);
+        assertThat(sell.getSecurity()).isEqualTo(Security.GOOGL);
+        assertThat(sell.getQuantity()).isEqualTo("2");
+        Transaction withdrawal = request.transactions().get(1);
+        assertThat(withdrawal.getType()).isEqualTo(TransactionType.WITHDRAWAL);
+        assertThat(withdrawal.getDate()).isEqualTo(LocalDate.of(2023, 2, 2));
+    }
+
+    @Test
+    public void parseCsv_invalid() {
+        assertThatIllegalArgumentException().isThrownBy(() -> RoiRequestParser.parseCsv("a,b\n"))
+            .withMessage("Expected header 'type,date,cash,security,quantity'");
+        assertThatIllegalArgumentException().isThrownBy(() -> RoiRequestParser.parseCsv("type,date,cash,security,quantity\nPOSITION,,,IBM,1\n"))
+            .withMessage("Missing CASH line");
+        assertThatIllegalArgumentException().isThrownBy(() -> RoiRequestParser.parseCsv("type,date,cash,security,quantity\nCASH,,1\n"))
+            .withMessage("Line 2: expected 5 columns but got 3");
+        assertThatIllegalArgumentException().isThrownBy(() -> RoiRequestParser.parseCsv("type,date,cash,security,quantity\nCASH,,1,,\nDEPOSIT,yesterday,1,,\n"))
+            .withMessage("Line 3: Invalid date 'yesterday'");
+    }
+}